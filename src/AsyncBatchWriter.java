@@ -0,0 +1,247 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Background writer for append-only log rows.
+ *
+ * Callers enqueue records into a bounded queue and return immediately. A single flusher
+ * thread drains the queue and writes it with one JDBC batch INSERT per flush, either when
+ * batchSize rows are waiting or flushIntervalMs after the first one arrived.
+ *
+ * When the queue is full the {@link Backpressure} policy decides what happens. Batches the
+ * database rejects are appended to the spill file (if one is set) so nothing is lost silently.
+ */
+public final class AsyncBatchWriter<T> {
+
+    public enum Backpressure {
+        /** Caller waits for space. */
+        BLOCK,
+        /** Oldest queued record is discarded to make room. */
+        DROP_OLDEST,
+        /** Record goes straight to the spill file. */
+        SPILL
+    }
+
+    /** Binds one record to the INSERT statement's parameters. */
+    @FunctionalInterface
+    public interface Binder<T> {
+        void bind(PreparedStatement ps, T record) throws SQLException;
+    }
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000L;
+
+    private static final int DEFAULT_CAPACITY = 10_000;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 500L;
+
+    private final String name;
+    private final String insertSql;
+    private final Binder<T> binder;
+    private final Function<T, String> spillLine;
+    private final String spillFile;
+    private final Backpressure policy;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private final BlockingQueue<T> queue;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    public AsyncBatchWriter(String name, String insertSql, Binder<T> binder, Function<T, String> spillLine,
+                            int capacity, int batchSize, long flushIntervalMs,
+                            Backpressure policy, String spillFile) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+
+        this.name = name;
+        this.insertSql = insertSql;
+        this.binder = binder;
+        this.spillLine = spillLine;
+        this.spillFile = (spillFile == null || spillFile.isBlank()) ? null : spillFile.trim();
+        this.policy = (policy == Backpressure.SPILL && this.spillFile == null) ? Backpressure.DROP_OLDEST : policy;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = Math.max(10L, flushIntervalMs);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.flusher = new Thread(this::runFlusher, name + "-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Builds a writer from config.properties keys under prefix:
+     *   prefix.queueCapacity, prefix.batchSize, prefix.flushIntervalMs,
+     *   prefix.backpressure (BLOCK, DROP_OLDEST or SPILL), prefix.spillFile
+     */
+    public static <T> AsyncBatchWriter<T> fromConfig(String prefix, String insertSql, Binder<T> binder,
+                                                     Function<T, String> spillLine, String defaultSpillFile) {
+        Properties props = Db.config();
+
+        Backpressure policy;
+        try {
+            policy = Backpressure.valueOf(props.getProperty(prefix + ".backpressure", "DROP_OLDEST").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid value for " + prefix + ".backpressure, using DROP_OLDEST");
+            policy = Backpressure.DROP_OLDEST;
+        }
+
+        return new AsyncBatchWriter<>(
+                prefix,
+                insertSql,
+                binder,
+                spillLine,
+                (int) Db.longProp(props, prefix + ".queueCapacity", DEFAULT_CAPACITY),
+                (int) Db.longProp(props, prefix + ".batchSize", DEFAULT_BATCH_SIZE),
+                Db.longProp(props, prefix + ".flushIntervalMs", DEFAULT_FLUSH_INTERVAL_MS),
+                policy,
+                props.getProperty(prefix + ".spillFile", defaultSpillFile)
+        );
+    }
+
+    /** Queues a record for writing. Never touches the database on the caller's thread. */
+    public void submit(T record) {
+        if (record == null) return;
+        submitted.increment();
+
+        if (closed) {
+            // Late events after shutdown: keep them if we can, never block the caller
+            if (spillFile != null) spill(List.of(record));
+            else dropped.increment();
+            return;
+        }
+
+        if (queue.offer(record)) return;
+
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    // Re-check closed so nobody waits on a queue the flusher has stopped draining
+                    while (!queue.offer(record, flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            dropped.increment();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(record)) {
+                    if (queue.poll() != null) dropped.increment();
+                }
+            }
+            case SPILL -> spill(List.of(record));
+        }
+    }
+
+    /** Stops accepting work, writes whatever is still queued, and waits for the flusher. */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            flusher.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            System.out.println(name + ": writer did not finish within " + SHUTDOWN_TIMEOUT_MS + " ms, "
+                    + queue.size() + " record(s) left unwritten");
+        }
+    }
+
+    public long getSubmittedCount() { return submitted.sum(); }
+    public int getQueuedCount() { return queue.size(); }
+    public long getWrittenCount() { return written.sum(); }
+    public long getDroppedCount() { return dropped.sum(); }
+    public long getSpilledCount() { return spilled.sum(); }
+    public long getFailedBatchCount() { return failedBatches.sum(); }
+
+    // -------------------- Flusher --------------------
+
+    private void runFlusher() {
+        List<T> batch = new ArrayList<>(batchSize);
+
+        while (!closed) {
+            try {
+                T first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushIntervalMs;
+                while (batch.size() < batchSize && !closed) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) break;
+
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) break;
+                    T next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        // Graceful shutdown: drain everything that made it into the queue
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+            batch.clear();
+        }
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<T> batch) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(insertSql)) {
+            for (T record : batch) {
+                binder.bind(ps, record);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            written.add(batch.size());
+        } catch (SQLException e) {
+            failedBatches.increment();
+            System.out.println(name + ": failed to write " + batch.size() + " record(s): " + e.getMessage());
+            if (spillFile != null) spill(batch);
+            else dropped.add(batch.size());
+        }
+    }
+
+    // Called from the flusher and, under SPILL, from submitting threads
+    private synchronized void spill(List<T> records) {
+        try (PrintWriter w = new PrintWriter(new FileWriter(spillFile, true))) {
+            for (T record : records) w.println(spillLine.apply(record));
+            spilled.add(records.size());
+        } catch (IOException e) {
+            System.out.println(name + ": spill to " + spillFile + " failed: " + e.getMessage());
+            dropped.add(records.size());
+        }
+    }
+}
@@ -1,17 +1,49 @@
-import java.io.PrintWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Audit trail for auth, transaction, activity and security events.
+ *
+ * Events are queued and written in batches by a shared {@link AsyncBatchWriter}, so logging
+ * never adds a database round trip to the caller. Call {@link #shutdown()} before the
+ * connection pool closes to flush what is still queued.
+ *
+ * Config (config.properties):
+ *   audit.queueCapacity=10000
+ *   audit.batchSize=100
+ *   audit.flushIntervalMs=500
+ *   audit.backpressure=DROP_OLDEST   (BLOCK, DROP_OLDEST or SPILL)
+ *   audit.spillFile=audit-spill.log  (also receives batches the database rejects)
+ *   audit.bruteForce.threshold=5
+ *   audit.bruteForce.windowMinutes=15
+ */
 public class AuditLogger {
 
-    private final Connection conn;
     private static final int BRUTE_FORCE_THRESHOLD = 5;
     private static final int BRUTE_FORCE_WINDOW_MINUTES = 15;
+    private static final int MAX_DETAILS_LENGTH = 500;
 
-    public AuditLogger(Connection conn) {
-        this.conn = conn;
-    }
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_logs (eventtype, userid, email, category, details, ipaddress, timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private record AuditEvent(String eventType, String userId, String email, String category,
+                              String details, String ipAddress, Timestamp at) {}
+
+    private static volatile AsyncBatchWriter<AuditEvent> writer;
+    private static volatile BruteForceDetector detector;
+
+    public AuditLogger() {}
 
     public void logAuthEvent(String eventType, String userId, String email, String details) {
         logEvent(eventType, userId, email, "AUTH", details);
@@ -30,52 +62,81 @@ public class AuditLogger {
     }
 
     private void logEvent(String eventType, String userId, String email, String category, String details) {
-        if (conn == null) return;
-
-        String sql = "INSERT INTO audit_logs (eventtype, userid, email, category, details, ipaddress) " +
-                     "VALUES (?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, eventType);
-            ps.setString(2, userId);
-            ps.setString(3, email);
-            ps.setString(4, category);
-            ps.setString(5, sanitizeDetails(details));
-            ps.setString(6, "127.0.0.1");
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("✗ Failed to log event: " + e.getMessage());
+        // Desktop client: there is no remote address, so failures are only counted per email
+        String ipAddress = "127.0.0.1";
+        if ("LOGIN_FAILED".equals(eventType)) detector().recordFailure(email, null);
+        writer().submit(new AuditEvent(eventType, userId, email, category, truncate(details), ipAddress,
+                new Timestamp(System.currentTimeMillis())));
+    }
+
+    /** Flushes queued events and stops the writer. Later events go to the spill file, if any. */
+    public static void shutdown() {
+        synchronized (AuditLogger.class) {
+            // Keep the closed writer so late events are spilled instead of restarting it
+            if (writer != null) writer.close();
+            if (detector != null) detector.close();
         }
     }
 
-    public boolean isBruteForceRisk(String email) {
-        if (conn == null || email == null || email.isBlank()) return false;
+    private static AsyncBatchWriter<AuditEvent> writer() {
+        AsyncBatchWriter<AuditEvent> w = writer;
+        if (w != null) return w;
+
+        synchronized (AuditLogger.class) {
+            if (writer == null) writer = createWriter();
+            return writer;
+        }
+    }
 
-        String sql = "SELECT COUNT(*) AS cnt " +
-                     "FROM audit_logs " +
-                     "WHERE eventtype = 'LOGIN_FAILED' AND email = ? " +
-                     "AND timestamp >= DATE_SUB(NOW(), INTERVAL ? MINUTE)";
+    private static BruteForceDetector detector() {
+        BruteForceDetector d = detector;
+        if (d != null) return d;
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, email);
-            ps.setInt(2, BRUTE_FORCE_WINDOW_MINUTES);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getInt("cnt") >= BRUTE_FORCE_THRESHOLD;
+        synchronized (AuditLogger.class) {
+            if (detector == null) {
+                Properties props = Db.config();
+                BruteForceDetector created = new BruteForceDetector(
+                        (int) Db.longProp(props, "audit.bruteForce.threshold", BRUTE_FORCE_THRESHOLD),
+                        Db.longProp(props, "audit.bruteForce.windowMinutes", BRUTE_FORCE_WINDOW_MINUTES) * 60_000L);
+                created.rebuildFromDb();
+                detector = created;
             }
-        } catch (SQLException e) {
-            System.err.println("✗ Brute force check failed: " + e.getMessage());
+            return detector;
         }
-        return false;
+    }
+
+    private static AsyncBatchWriter<AuditEvent> createWriter() {
+        return AsyncBatchWriter.fromConfig(
+                "audit",
+                INSERT_SQL,
+                (ps, e) -> {
+                    ps.setString(1, e.eventType());
+                    ps.setString(2, e.userId());
+                    ps.setString(3, e.email());
+                    ps.setString(4, e.category());
+                    ps.setString(5, e.details());
+                    ps.setString(6, e.ipAddress());
+                    ps.setTimestamp(7, e.at());
+                },
+                e -> String.join("\t", String.valueOf(e.at()), e.category(), e.eventType(),
+                        String.valueOf(e.userId()), String.valueOf(e.email()), flatten(e.details())),
+                "audit-spill.log"
+        );
+    }
+
+    /** True when the email has reached the failed-login threshold inside the window. */
+    public boolean isBruteForceRisk(String email) {
+        if (email == null || email.isBlank()) return false;
+        return detector().isRiskForEmail(email);
     }
 
     public List<String> getRecentLogs(int limit) {
         List<String> out = new ArrayList<>();
-        if (conn == null) return out;
-
         String sql = "SELECT logid, eventtype, userid, email, category, details, ipaddress, timestamp " +
                      "FROM audit_logs ORDER BY timestamp DESC LIMIT ?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -94,47 +155,107 @@ public class AuditLogger {
         return out;
     }
 
+    private static final int EXPORT_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Outcome of an export. lastLogId is the logid of the last row fully written, or the
+     * afterLogId passed in if no row was written; pass it as afterLogId to resume an export that
+     * did not complete (into a new file, since the old one is overwritten).
+     */
+    public record ExportResult(long rows, long lastLogId, boolean complete) {}
+
     public boolean exportLogsToCSV(String filename) {
-        if (conn == null) return false;
+        return exportLogsToCSV(filename, null, null, null, 0L).complete();
+    }
 
-        String sql = "SELECT logid, eventtype, userid, email, category, details, ipaddress, timestamp " +
-                     "FROM audit_logs ORDER BY timestamp DESC";
-
-        try (PrintWriter w = new PrintWriter(filename);
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-
-            w.println("LOG_ID,EVENT_TYPE,USER_ID,EMAIL,CATEGORY,DETAILS,IP_ADDRESS,TIMESTAMP");
-            while (rs.next()) {
-                w.println(
-                        rs.getInt("logid") + "," +
-                        csv(rs.getString("eventtype")) + "," +
-                        csv(rs.getString("userid")) + "," +
-                        csv(rs.getString("email")) + "," +
-                        csv(rs.getString("category")) + "," +
-                        csv(rs.getString("details")) + "," +
-                        csv(rs.getString("ipaddress")) + "," +
-                        rs.getTimestamp("timestamp")
-                );
+    /**
+     * Streams audit rows to a CSV file in logid order, so memory stays flat for any table size.
+     * Filenames ending in ".gz" are gzip-compressed.
+     *
+     * @param from        inclusive lower bound on timestamp, or null
+     * @param to          exclusive upper bound on timestamp, or null
+     * @param category    only this category, or null for all
+     * @param afterLogId  resume point: only rows with a larger logid are exported (0 = from the start)
+     * @return rows written and the last logid written; complete is false if the export failed
+     */
+    public ExportResult exportLogsToCSV(String filename, Timestamp from, Timestamp to, String category, long afterLogId) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT logid, eventtype, userid, email, category, details, ipaddress, timestamp " +
+                "FROM audit_logs WHERE logid > ?");
+        if (from != null) sql.append(" AND timestamp >= ?");
+        if (to != null) sql.append(" AND timestamp < ?");
+        if (category != null && !category.isBlank()) sql.append(" AND category = ?");
+        sql.append(" ORDER BY logid");
+
+        long lastLogId = afterLogId;
+        long rows = 0;
+
+        try (Writer w = openExportWriter(filename);
+             Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            // MySQL Connector/J streams row by row only with this exact fetch size
+            ps.setFetchSize(Integer.MIN_VALUE);
+
+            int i = 1;
+            ps.setLong(i++, afterLogId);
+            if (from != null) ps.setTimestamp(i++, from);
+            if (to != null) ps.setTimestamp(i++, to);
+            if (category != null && !category.isBlank()) ps.setString(i, category.trim());
+
+            w.write("LOG_ID,EVENT_TYPE,USER_ID,EMAIL,CATEGORY,DETAILS,IP_ADDRESS,TIMESTAMP\n");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long logId = rs.getLong(1);
+                    w.write(Long.toString(logId));
+                    for (int col = 2; col <= 7; col++) {
+                        w.write(',');
+                        writeCsv(w, rs.getString(col));
+                    }
+                    w.write(',');
+                    Timestamp ts = rs.getTimestamp(8);
+                    if (ts != null) w.write(ts.toString());
+                    w.write('\n');
+                    lastLogId = logId;
+                    rows++;
+                }
             }
-            System.out.println("✓ Logs exported to " + filename);
-            return true;
+            w.flush();
+            System.out.println("✓ " + rows + " log(s) exported to " + filename + " (last logid " + lastLogId + ")");
+            return new ExportResult(rows, lastLogId, true);
 
         } catch (Exception e) {
-            System.err.println("✗ Export failed: " + e.getMessage());
-            return false;
+            System.err.println("✗ Export failed after " + rows + " row(s), resume from logid " + lastLogId
+                    + ": " + e.getMessage());
+            return new ExportResult(rows, lastLogId, false);
         }
     }
 
-    private String sanitizeDetails(String details) {
-        if (details == null) return null;
-        String cleaned = details.replaceAll("[<>\"'%;()&+]", "");
-        return cleaned.substring(0, Math.min(cleaned.length(), 500));
+    private static Writer openExportWriter(String filename) throws IOException {
+        OutputStream out = new FileOutputStream(filename);
+        if (filename.endsWith(".gz")) out = new GZIPOutputStream(out, EXPORT_BUFFER_BYTES);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_BYTES);
     }
 
-    private String csv(String s) {
-        if (s == null) return "";
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) return "\"" + s.replace("\"", "\"\"") + "\"";
-        return s;
+    // Values are bound as parameters, so only the column length needs enforcing
+    private static String truncate(String details) {
+        if (details == null || details.length() <= MAX_DETAILS_LENGTH) return details;
+        return details.substring(0, MAX_DETAILS_LENGTH);
+    }
+
+    private static String flatten(String s) {
+        return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static void writeCsv(Writer w, String s) throws IOException {
+        if (s == null) return;
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            w.write(s);
+            return;
+        }
+        w.write('"');
+        w.write(s.replace("\"", "\"\""));
+        w.write('"');
     }
 }
\ No newline at end of file
@@ -1,19 +1,24 @@
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.SecureRandom;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
+/**
+ * Registration and login for tourists, guides and hotel managers.
+ *
+ * {@link #login} finds the email in all three account tables with one query and verifies the
+ * password once. An email can be registered in more than one table (a tourist who is also a
+ * manager); then the rows are tried in tourist, guide, manager order and the password is
+ * verified once per row until one matches, so a wrong password for such an email costs one
+ * PBKDF2 check per role. {@link #main} benchmarks this against the old one-table-at-a-time login.
+ */
 public class AuthService {
 
-    private final Connection conn;
-
     private static final Pattern EMAIL_PATTERN =
             Pattern.compile("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
 
@@ -23,11 +28,7 @@ public class AuthService {
     private static final Pattern PASSWORD_PATTERN =
             Pattern.compile("^.{6,}$");
 
-    private static final SecureRandom RAND = new SecureRandom();
-
-    public AuthService(Connection conn) {
-        this.conn = conn;
-    }
+    public AuthService() {}
 
     // -------------------- Tourist --------------------
 
@@ -49,12 +50,12 @@ public class AuthService {
             return false;
         }
 
-        try {
-            if (emailExistsInUsers(email)) {
+        try (Connection conn = Db.getConnection()) {
+            if (emailExistsInUsers(conn, email)) {
                 System.out.println("Email already registered!");
                 return false;
             }
-            if (phoneExistsInUsers(phone)) {
+            if (phoneExistsInUsers(conn, phone)) {
                 System.out.println("Phone already registered!");
                 return false;
             }
@@ -101,15 +102,60 @@ public class AuthService {
     public String getRole(){ return role; }
 }
 
-public LoginResult login(String email, String password) {
-    User u = loginTourist(email, password);
-    if (u != null) return new LoginResult(u.getUserID(), u.getUserName(), "Tourist");
-    Guide g = loginGuide(email, password);
-    if (g != null) return new LoginResult(g.getGuideId(), g.getGuideName(), "Tour Guide");
-    Manager m = loginManager(email, password);
-    if (m != null) return new LoginResult(m.getManagerId(), m.getManagerName(), "Hotel Manager");
-    return null;
-}
+    // One round trip for every role: each branch is a lookup on that table's email index.
+    // Rows come back in tourist, guide, manager order; the same email may exist in several
+    // tables, so each is checked in turn until one password matches.
+    private static final String UNIFIED_LOGIN_SQL =
+            "SELECT 1 AS pri, 'Tourist' AS role, userid AS id, username AS name, userpassword AS pw " +
+            "FROM users WHERE useremail = ? " +
+            "UNION ALL " +
+            "SELECT 2, 'Tour Guide', guideid, guidename, guidepassword " +
+            "FROM guides WHERE guideemail = ? AND (status IS NULL OR status <> 'INACTIVE') " +
+            "UNION ALL " +
+            "SELECT 3, 'Hotel Manager', managerid, managername, managerpassword " +
+            "FROM managers WHERE manageremail = ? AND (status IS NULL OR status <> 'INACTIVE') " +
+            "ORDER BY pri";
+
+    /** One account row found by {@link #login}, copied out so the connection can go back first. */
+    private record LoginRow(String role, String id, String name, String hash) {}
+
+    /**
+     * Looks the email up across tourists, guides and managers in one query; first matching
+     * password wins. The connection is returned before any hash is checked, since PBKDF2 takes
+     * far longer than the query.
+     */
+    public LoginResult login(String email, String password) {
+        email = safeTrim(email);
+        if (email == null || password == null || password.isBlank()) return null;
+
+        List<LoginRow> rows = new ArrayList<>(3);
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UNIFIED_LOGIN_SQL)) {
+            ps.setString(1, email);
+            ps.setString(2, email);
+            ps.setString(3, email);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new LoginRow(rs.getString("role"), rs.getString("id"), rs.getString("name"), rs.getString("pw")));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Login error: " + e.getMessage());
+            return null;
+        }
+
+        for (LoginRow row : rows) {
+            String upgradeSql = switch (row.role()) {
+                case "Tour Guide" -> UPGRADE_GUIDE_SQL;
+                case "Hotel Manager" -> UPGRADE_MANAGER_SQL;
+                default -> UPGRADE_USER_SQL;
+            };
+            if (verifyPassword(password, row.hash(), upgradeSql, row.id())) {
+                return new LoginResult(row.id(), row.name(), row.role());
+            }
+        }
+        return null;
+    }
 
 
     public User loginTourist(String email, String password) {
@@ -117,20 +163,23 @@ public LoginResult login(String email, String password) {
         if (email == null || password == null || password.isBlank()) return null;
 
         String sql = "SELECT userid, username, useremail, userpassword FROM users WHERE useremail = ? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        User user;
+        String stored;
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, email);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
-
-                String stored = rs.getString("userpassword");
-                if (!verifyPassword(password, stored)) return null;
-
-                return new User(rs.getString("userid"), rs.getString("username"), rs.getString("useremail"), "TOURIST");
+                stored = rs.getString("userpassword");
+                user = new User(rs.getString("userid"), rs.getString("username"), rs.getString("useremail"), "TOURIST");
             }
         } catch (SQLException e) {
             System.out.println("Tourist login error: " + e.getMessage());
             return null;
         }
+
+        // Connection is back in the pool before the slow hash check
+        return verifyPassword(password, stored, UPGRADE_USER_SQL, user.getUserID()) ? user : null;
     }
 
     // -------------------- Guide --------------------
@@ -150,8 +199,8 @@ public LoginResult login(String email, String password) {
 
         if (experience < 0) experience = 0;
 
-        try {
-            if (emailExistsInUsers(email) || emailExistsInGuides(email)) {
+        try (Connection conn = Db.getConnection()) {
+            if (emailExistsInUsers(conn, email) || emailExistsInGuides(conn, email)) {
                 System.out.println("Email already registered!");
                 return false;
             }
@@ -178,6 +227,7 @@ public LoginResult login(String email, String password) {
                 ps.setInt(10, experience);
                 ps.executeUpdate();
             }
+            GuideService.indexGuide(guideId, safeTrim(specialization), safeTrim(languages));
 
             System.out.println("Guide registration successful! Guide ID: " + guideId);
             return true;
@@ -193,19 +243,23 @@ public LoginResult login(String email, String password) {
         if (email == null || password == null || password.isBlank()) return null;
 
         String sql = "SELECT guideid, guidename, guideemail, guidepassword, status FROM guides WHERE guideemail = ? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        Guide guide;
+        String stored;
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, email);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
                 if ("INACTIVE".equalsIgnoreCase(rs.getString("status"))) return null;
-                if (!verifyPassword(password, rs.getString("guidepassword"))) return null;
-
-                return new Guide(rs.getString("guideid"), rs.getString("guidename"), rs.getString("guideemail"));
+                stored = rs.getString("guidepassword");
+                guide = new Guide(rs.getString("guideid"), rs.getString("guidename"), rs.getString("guideemail"));
             }
         } catch (SQLException e) {
             System.out.println("Guide login error: " + e.getMessage());
             return null;
         }
+
+        return verifyPassword(password, stored, UPGRADE_GUIDE_SQL, guide.getGuideId()) ? guide : null;
     }
 
     // -------------------- Manager --------------------
@@ -225,8 +279,8 @@ public LoginResult login(String email, String password) {
             return false;
         }
 
-        try {
-            if (emailExistsInUsers(email) || emailExistsInManagers(email)) {
+        try (Connection conn = Db.getConnection()) {
+            if (emailExistsInUsers(conn, email) || emailExistsInManagers(conn, email)) {
                 System.out.println("Email already registered!");
                 return false;
             }
@@ -267,29 +321,31 @@ public LoginResult login(String email, String password) {
         if (email == null || password == null || password.isBlank()) return null;
 
         String sql = "SELECT managerid, managername, manageremail, managerpassword, status FROM managers WHERE manageremail = ? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        Manager m = new Manager();
+        String stored;
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, email);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
                 if ("INACTIVE".equalsIgnoreCase(rs.getString("status"))) return null;
-                if (!verifyPassword(password, rs.getString("managerpassword"))) return null;
-
-                Manager m = new Manager();
+                stored = rs.getString("managerpassword");
                 m.setManagerId(rs.getString("managerid"));
                 m.setManagerName(rs.getString("managername"));
                 m.setManagerEmail(rs.getString("manageremail"));
                 m.setStatus(rs.getString("status"));
-                return m;
             }
         } catch (SQLException e) {
             System.out.println("Manager login error: " + e.getMessage());
             return null;
         }
+
+        return verifyPassword(password, stored, UPGRADE_MANAGER_SQL, m.getManagerId()) ? m : null;
     }
 
     // -------------------- DB checks --------------------
 
-    private boolean emailExistsInUsers(String email) throws SQLException {
+    private boolean emailExistsInUsers(Connection conn, String email) throws SQLException {
         String sql = "SELECT 1 FROM users WHERE useremail = ? LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, email);
@@ -299,7 +355,7 @@ public LoginResult login(String email, String password) {
         }
     }
 
-    private boolean phoneExistsInUsers(String phone) throws SQLException {
+    private boolean phoneExistsInUsers(Connection conn, String phone) throws SQLException {
         String sql = "SELECT 1 FROM users WHERE userphone = ? LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, phone);
@@ -309,7 +365,7 @@ public LoginResult login(String email, String password) {
         }
     }
 
-    private boolean emailExistsInGuides(String email) throws SQLException {
+    private boolean emailExistsInGuides(Connection conn, String email) throws SQLException {
         String sql = "SELECT 1 FROM guides WHERE guideemail = ? LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, email);
@@ -319,7 +375,7 @@ public LoginResult login(String email, String password) {
         }
     }
 
-    private boolean emailExistsInManagers(String email) throws SQLException {
+    private boolean emailExistsInManagers(Connection conn, String email) throws SQLException {
         String sql = "SELECT 1 FROM managers WHERE manageremail = ? LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, email);
@@ -355,33 +411,123 @@ public LoginResult login(String email, String password) {
 
     // -------------------- Password hashing --------------------
 
+    // Conditional on the old hash so a password changed meanwhile is never overwritten
+    private static final String UPGRADE_USER_SQL =
+            "UPDATE users SET userpassword = ? WHERE userid = ? AND userpassword = ?";
+    private static final String UPGRADE_GUIDE_SQL =
+            "UPDATE guides SET guidepassword = ? WHERE guideid = ? AND guidepassword = ?";
+    private static final String UPGRADE_MANAGER_SQL =
+            "UPDATE managers SET managerpassword = ? WHERE managerid = ? AND managerpassword = ?";
+
     private String hashPassword(String password) throws Exception {
-        byte[] salt = new byte[16];
-        RAND.nextBytes(salt);
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        md.update(salt);
-        byte[] hash = md.digest(password.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(salt) + ":" + Base64.getEncoder().encodeToString(hash);
+        return PasswordHasher.shared().hash(password);
+    }
+
+    /** Checks the password; legacy or weaker hashes are replaced in the background on success. */
+    private boolean verifyPassword(String password, String stored, String upgradeSql, String id) {
+        PasswordHasher.Verification v = PasswordHasher.shared().verify(password, stored);
+        if (v.matches() && v.needsRehash()) {
+            PasswordHasher.shared().rehashLater(password, newHash -> {
+                try (Connection conn = Db.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(upgradeSql)) {
+                    ps.setString(1, newHash);
+                    ps.setString(2, id);
+                    ps.setString(3, stored);
+                    ps.executeUpdate();
+                } catch (SQLException e) {
+                    System.out.println("Password hash upgrade failed: " + e.getMessage());
+                }
+            });
+        }
+        return v.matches();
     }
 
-    private boolean verifyPassword(String password, String stored) {
+    // -------------------- Login benchmark --------------------
+
+    /** The login before {@link #login} existed: one table after another, one query each. */
+    private Object loginOneTableAtATime(String email, String password) {
+        User u = loginTourist(email, password);
+        if (u != null) return u;
+        Guide g = loginGuide(email, password);
+        if (g != null) return g;
+        return loginManager(email, password);
+    }
+
+    /**
+     * Login benchmark: java AuthService [iterations]
+     *
+     * Registers a throwaway tourist, guide and manager in the configured database, then logs
+     * each in with {@link #login} and with the old tourist -> guide -> manager sequence. Prints
+     * the queries sent per login (statement cache hits + misses, so db.pool.statementCacheSize
+     * must be above 0) and the time per login. The accounts are deleted afterwards.
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        AuthService auth = new AuthService();
+        String tag = String.format("%08d", System.currentTimeMillis() % 100_000_000L);
+        String password = "bench-" + tag;
+        String[] roles = {"Tourist", "Tour Guide", "Hotel Manager"};
+        String[] emails = {"bench.tourist." + tag + "@example.com",
+                           "bench.guide." + tag + "@example.com",
+                           "bench.manager." + tag + "@example.com"};
+
         try {
-            if (stored == null || !stored.contains(":")) return false;
-            String[] parts = stored.split(":", 2);
-            byte[] salt = Base64.getDecoder().decode(parts[0]);
-            byte[] expected = Base64.getDecoder().decode(parts[1]);
-
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-            byte[] actual = md.digest(password.getBytes(StandardCharsets.UTF_8));
-
-            if (actual.length != expected.length) return false;
-            for (int i = 0; i < actual.length; i++) {
-                if (actual[i] != expected[i]) return false;
+            boolean registered =
+                    auth.registerTourist("Bench Tourist", emails[0], "013" + tag, null, null, null, "Bangladesh", null, password)
+                    && auth.registerGuide("Bench Guide", emails[1], "014" + tag, "Dhaka", "Dhaka", "English", "History", 1, password)
+                    && auth.registerManager("Bench Manager", emails[2], "015" + tag, null, null, null, null, password);
+            if (!registered) {
+                System.out.println("Could not register the benchmark accounts.");
+                return;
             }
-            return true;
-        } catch (Exception e) {
-            return false;
+
+            System.out.printf("%-14s %18s %18s%n", "", "one query", "table by table");
+            for (int r = 0; r < roles.length; r++) {
+                String email = emails[r];
+                auth.login(email, password); // warm up: hash parameters, statement cache
+                auth.loginOneTableAtATime(email, password);
+
+                long q0 = queries();
+                long t0 = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    if (auth.login(email, password) == null) throw new IllegalStateException("login failed for " + email);
+                }
+                long unifiedNs = System.nanoTime() - t0;
+                long unifiedQueries = queries() - q0;
+
+                q0 = queries();
+                t0 = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    if (auth.loginOneTableAtATime(email, password) == null) throw new IllegalStateException("login failed for " + email);
+                }
+                long oldNs = System.nanoTime() - t0;
+                long oldQueries = queries() - q0;
+
+                System.out.printf("%-14s %6.1f q %7.1f ms %6.1f q %7.1f ms%n", roles[r],
+                        (double) unifiedQueries / iterations, unifiedNs / 1e6 / iterations,
+                        (double) oldQueries / iterations, oldNs / 1e6 / iterations);
+            }
+        } finally {
+            try (Connection conn = Db.getConnection()) {
+                String[] cleanup = {"DELETE FROM users WHERE useremail = ?",
+                                    "DELETE FROM guides WHERE guideemail = ?",
+                                    "DELETE FROM managers WHERE manageremail = ?"};
+                for (int r = 0; r < cleanup.length; r++) {
+                    try (PreparedStatement ps = conn.prepareStatement(cleanup[r])) {
+                        ps.setString(1, emails[r]);
+                        ps.executeUpdate();
+                    }
+                }
+            } catch (SQLException e) {
+                System.out.println("Cleanup failed, remove the bench.*." + tag + " accounts by hand: " + e.getMessage());
+            }
+            Db.closeConnection();
         }
     }
-}
\ No newline at end of file
+
+    private static long queries() throws SQLException {
+        ConnectionPool p = Db.pool();
+        return p.getStatementCacheHits() + p.getStatementCacheMisses();
+    }
+}
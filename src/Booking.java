@@ -22,6 +22,7 @@ public class Booking {
     private String bookingStatus = STATUS_PENDING;
     private String paymentId;
 
+    private String hotelId;
     private String hotelName;
     private String hotelLocation;
 
@@ -53,6 +54,9 @@ public class Booking {
     public String getPaymentId() { return paymentId; }
     public void setPaymentId(String paymentId) { this.paymentId = paymentId; }
 
+    public String getHotelId() { return hotelId; }
+    public void setHotelId(String hotelId) { this.hotelId = hotelId; }
+
     public String getHotelName() { return hotelName; }
     public void setHotelName(String hotelName) { this.hotelName = hotelName; }
 
@@ -103,8 +107,8 @@ public class Booking {
             String sql =
                     "INSERT INTO booking " +
                     "(bookingid, userid, checkindate, checkoutdate, totalprice, bookingstatus, paymentid, " +
-                    "hotelname, hotellocation, guidename, guideid, numberofrooms) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                    "hotelname, hotellocation, guidename, guideid, numberofrooms, hotelid) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
             try (PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, bookingId);
@@ -135,6 +139,9 @@ public class Booking {
                 else ps.setString(11, guideId.trim());
 
                 ps.setInt(12, Math.max(0, numberOfRooms));
+
+                if (isBlank(hotelId)) ps.setNull(13, java.sql.Types.VARCHAR);
+                else ps.setString(13, hotelId.trim());
                 return ps.executeUpdate() > 0;
             }
         } catch (SQLException e) {
@@ -168,25 +175,67 @@ public class Booking {
     }
 
     public static List<Booking> getBookingsByUser(String userId, Connection conn) {
-        List<Booking> list = new ArrayList<>();
-        if (conn == null) return list;
-        if (isBlank(userId)) return list;
+        return getBookingsByUser(userId, PageRequest.first(PageRequest.MAX_SIZE), conn).getItems();
+    }
+
+    /** One page of a user's bookings, newest first (keyset on bookingdate, bookingid). */
+    public static Page<Booking> getBookingsByUser(String userId, PageRequest page, Connection conn) {
+        Page.Builder<Booking> out = new Page.Builder<>(page);
+        if (conn == null) return out.build();
+        if (isBlank(userId)) return out.build();
 
         String sql =
-                "SELECT bookingid, userid, checkindate, checkoutdate, totalprice, bookingstatus, paymentid, " +
-                "hotelname, hotellocation, guidename, guideid, numberofrooms " +
-                "FROM booking WHERE userid = ? ORDER BY bookingdate DESC";
+                "SELECT bookingid, userid, bookingdate, checkindate, checkoutdate, totalprice, bookingstatus, paymentid, " +
+                "hotelid, hotelname, hotellocation, guidename, guideid, numberofrooms " +
+                "FROM booking WHERE userid = ? AND " + page.seekDesc("bookingdate", "bookingid") + " " +
+                "ORDER BY bookingdate DESC, bookingid DESC LIMIT ?";
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, userId.trim());
+            int i = page.bindSeek(ps, 2, page.afterTimestamp());
+            ps.setInt(i, out.fetchSize());
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) list.add(map(rs));
+                while (rs.next()) {
+                    String cursor = PageRequest.cursor(rs.getTimestamp("bookingdate"), rs.getString("bookingid"));
+                    if (!out.add(map(rs), cursor)) break;
+                }
             }
         } catch (SQLException e) {
             System.out.println("Fetch bookings failed: " + e.getMessage());
         }
 
-        return list;
+        return out.build();
+    }
+
+    /**
+     * One page of a hotel's bookings, latest check-in first (keyset on checkindate, bookingid).
+     * Database errors are thrown, so an empty page always means there are no more bookings.
+     */
+    public static Page<Booking> getBookingsByHotel(String hotelId, PageRequest page, Connection conn) throws SQLException {
+        Page.Builder<Booking> out = new Page.Builder<>(page);
+        if (conn == null) return out.build();
+        if (isBlank(hotelId)) return out.build();
+
+        // Served by idx_booking_hotel (hotelid, checkindate)
+        String sql =
+                "SELECT bookingid, userid, checkindate, checkoutdate, totalprice, bookingstatus, paymentid, " +
+                "hotelid, hotelname, hotellocation, guidename, guideid, numberofrooms " +
+                "FROM booking WHERE hotelid = ? AND " + page.seekDesc("checkindate", "bookingid") + " " +
+                "ORDER BY checkindate DESC, bookingid DESC LIMIT ?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, hotelId.trim());
+            int i = page.bindSeek(ps, 2, page.afterDate());
+            ps.setInt(i, out.fetchSize());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String cursor = PageRequest.cursor(rs.getDate("checkindate"), rs.getString("bookingid"));
+                    if (!out.add(map(rs), cursor)) break;
+                }
+            }
+        }
+
+        return out.build();
     }
 
     public static Booking getBookingById(String bookingId, Connection conn) {
@@ -195,7 +244,7 @@ public class Booking {
 
         String sql =
                 "SELECT bookingid, userid, checkindate, checkoutdate, totalprice, bookingstatus, paymentid, " +
-                "hotelname, hotellocation, guidename, guideid, numberofrooms " +
+                "hotelid, hotelname, hotellocation, guidename, guideid, numberofrooms " +
                 "FROM booking WHERE bookingid = ? LIMIT 1";
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -223,6 +272,7 @@ public class Booking {
         b.totalPrice = rs.getDouble("totalprice");
         b.bookingStatus = rs.getString("bookingstatus");
         b.paymentId = rs.getString("paymentid");
+        b.hotelId = rs.getString("hotelid");
         b.hotelName = rs.getString("hotelname");
         b.hotelLocation = rs.getString("hotellocation");
         b.guideName = rs.getString("guidename");
@@ -0,0 +1,76 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * One-off migration: fills booking.hotelid for rows written before the column existed, by
+ * matching the old hotelname + hotellocation strings.
+ *
+ * Walks the booking primary key in small autocommitted batches, so each UPDATE only locks a
+ * few hundred rows briefly and the app can keep running. Safe to stop and re-run; rows that
+ * already have a hotelid are skipped.
+ *
+ * Usage: java BookingHotelBackfill [batchSize=500] [pauseMs=50]
+ */
+public final class BookingHotelBackfill {
+
+    private BookingHotelBackfill() {}
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        long pauseMs = args.length > 1 ? Long.parseLong(args[1]) : 50L;
+
+        String boundsSql =
+                "SELECT MAX(bookingid) FROM (" +
+                "  SELECT bookingid FROM booking WHERE bookingid > ? ORDER BY bookingid LIMIT ?" +
+                ") batch";
+        String updateSql =
+                "UPDATE booking b JOIN hotels h " +
+                "  ON h.hotelname = b.hotelname AND h.hotellocation = b.hotellocation " +
+                "SET b.hotelid = h.hotelid " +
+                "WHERE b.bookingid > ? AND b.bookingid <= ? AND b.hotelid IS NULL AND b.hotelname IS NOT NULL";
+
+        long updated = 0;
+        String after = "";
+        try (Connection conn = Db.getConnection()) {
+            conn.setAutoCommit(true);
+            while (true) {
+                String upTo;
+                try (PreparedStatement ps = conn.prepareStatement(boundsSql)) {
+                    ps.setString(1, after);
+                    ps.setInt(2, batchSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        upTo = rs.next() ? rs.getString(1) : null;
+                    }
+                }
+                if (upTo == null) break;
+
+                try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                    ps.setString(1, after);
+                    ps.setString(2, upTo);
+                    updated += ps.executeUpdate();
+                }
+                after = upTo;
+                if (pauseMs > 0) Thread.sleep(pauseMs);
+            }
+
+            System.out.println("Backfilled hotelid on " + updated + " bookings.");
+            printUnmatched(conn);
+        } catch (SQLException e) {
+            System.out.println("Backfill stopped after " + updated + " rows (re-run to continue): " + e.getMessage());
+        } finally {
+            Db.closeConnection();
+        }
+    }
+
+    private static void printUnmatched(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM booking WHERE hotelid IS NULL AND hotelname IS NOT NULL";
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                System.out.println(rs.getLong(1) + " hotel bookings match no hotel by name + location; left as NULL.");
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory sliding-window counter of failed logins, keyed by email and by source address.
+ *
+ * Each key owns a ring of BUCKETS time buckets covering the window. A bucket is one long
+ * packing (bucket number << COUNT_BITS | count) and is updated with CAS, so recording and
+ * checking take no locks and checking allocates nothing. Keys with no failures inside the
+ * window are evicted by a background sweep.
+ *
+ * The database is read once, by {@link #rebuildFromDb()}, to restore recent failures after
+ * a restart. Only emails are restored: audit_logs.ipaddress holds a fixed placeholder, not a
+ * client address, so a caller that has real source addresses must record them itself.
+ */
+public final class BruteForceDetector {
+
+    private static final int BUCKETS = 16;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final int threshold;
+    private final long windowMs;
+    private final long bucketMs;
+
+    private final ConcurrentHashMap<String, Window> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Window> bySource = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    public BruteForceDetector(int threshold, long windowMs) {
+        if (threshold < 1) throw new IllegalArgumentException("threshold must be >= 1");
+        if (windowMs < BUCKETS) throw new IllegalArgumentException("window too small");
+
+        this.threshold = threshold;
+        this.windowMs = windowMs;
+        this.bucketMs = (windowMs + BUCKETS - 1) / BUCKETS;
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "comfygo-bruteforce-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.sweeper.scheduleWithFixedDelay(this::evictIdle, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Counts one failed login. Either key may be null. */
+    public void recordFailure(String email, String source) {
+        recordFailure(email, source, System.currentTimeMillis());
+    }
+
+    public void recordFailure(String email, String source, long atMillis) {
+        long bucket = atMillis / bucketMs;
+        if (email != null && !email.isBlank()) {
+            byEmail.computeIfAbsent(normalize(email), k -> new Window()).add(bucket);
+        }
+        if (source != null && !source.isBlank()) {
+            bySource.computeIfAbsent(source, k -> new Window()).add(bucket);
+        }
+    }
+
+    public boolean isRiskForEmail(String email) {
+        return email != null && over(byEmail.get(normalize(email)));
+    }
+
+    public boolean isRiskForSource(String source) {
+        return source != null && over(bySource.get(source));
+    }
+
+    public int getFailureCount(String email) {
+        if (email == null) return 0;
+        Window w = byEmail.get(normalize(email));
+        return w == null ? 0 : w.count(System.currentTimeMillis() / bucketMs);
+    }
+
+    public int getTrackedKeyCount() {
+        return byEmail.size() + bySource.size();
+    }
+
+    /** Replays LOGIN_FAILED rows from the last window so a restart doesn't reset the counters. */
+    public void rebuildFromDb() {
+        String sql = "SELECT email, timestamp FROM audit_logs " +
+                     "WHERE eventtype = 'LOGIN_FAILED' AND timestamp >= ?";
+
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, new java.sql.Timestamp(System.currentTimeMillis() - windowMs));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    recordFailure(rs.getString("email"), null, rs.getTimestamp("timestamp").getTime());
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Brute force state rebuild failed: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    // -------------------- Internals --------------------
+
+    private boolean over(Window w) {
+        return w != null && w.count(System.currentTimeMillis() / bucketMs) >= threshold;
+    }
+
+    private void evictIdle() {
+        long bucket = System.currentTimeMillis() / bucketMs;
+        // A key that gets a failure right after the check is re-created on its next record
+        byEmail.values().removeIf(w -> w.isIdle(bucket));
+        bySource.values().removeIf(w -> w.isIdle(bucket));
+    }
+
+    // Emails are compared case-insensitively; only allocate when there is something to fold
+    private static String normalize(String email) {
+        for (int i = 0; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (Character.isUpperCase(c) || Character.isWhitespace(c)) return email.trim().toLowerCase();
+        }
+        return email;
+    }
+
+    private static final class Window {
+        private final AtomicLongArray cells = new AtomicLongArray(BUCKETS);
+        private volatile long lastBucket;
+
+        void add(long bucket) {
+            int slot = (int) (bucket % BUCKETS);
+            while (true) {
+                long cell = cells.get(slot);
+                long next = (cell >>> COUNT_BITS) == bucket
+                        ? (cell & COUNT_MASK) == COUNT_MASK ? cell : cell + 1
+                        : (bucket << COUNT_BITS) | 1;
+                // Replayed rows may be older than what the slot already holds
+                if ((cell >>> COUNT_BITS) > bucket) return;
+                if (cells.compareAndSet(slot, cell, next)) break;
+            }
+            if (bucket > lastBucket) lastBucket = bucket;
+        }
+
+        int count(long nowBucket) {
+            long oldest = nowBucket - BUCKETS + 1;
+            int total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long cell = cells.get(i);
+                long b = cell >>> COUNT_BITS;
+                if (b >= oldest && b <= nowBucket) total += (int) (cell & COUNT_MASK);
+            }
+            return total;
+        }
+
+        boolean isIdle(long nowBucket) {
+            return lastBucket <= nowBucket - BUCKETS;
+        }
+    }
+
+    // -------------------- Stress check --------------------
+
+    /**
+     * Stress check: java BruteForceDetector [emails] [threads]
+     *
+     * Records failed logins for many distinct emails from several threads (every tenth email
+     * gets 8 failures, the rest 2), then checks every email. Fails unless exactly the attacked
+     * emails are flagged, lookups allocate nothing, and a short window evicts every key again.
+     * No database is used.
+     */
+    public static void main(String[] args) throws Exception {
+        int emails = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        String[] keys = new String[emails];
+        for (int i = 0; i < emails; i++) keys[i] = "user" + i + "@example.com";
+
+        BruteForceDetector d = new BruteForceDetector(5, 15 * 60_000L);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        long t0 = System.nanoTime();
+        List<Future<?>> parts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            parts.add(pool.submit(() -> {
+                for (int i = first; i < emails; i += threads) {
+                    int failures = i % 10 == 0 ? 8 : 2;
+                    for (int f = 0; f < failures; f++) d.recordFailure(keys[i], null);
+                }
+            }));
+        }
+        for (Future<?> f : parts) f.get();
+        long recordMs = (System.nanoTime() - t0) / 1_000_000L;
+
+        AtomicInteger flagged = new AtomicInteger();
+        t0 = System.nanoTime();
+        parts.clear();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            parts.add(pool.submit(() -> {
+                int mine = 0;
+                for (int i = first; i < emails; i += threads) {
+                    if (d.isRiskForEmail(keys[i])) mine++;
+                }
+                flagged.addAndGet(mine);
+            }));
+        }
+        for (Future<?> f : parts) f.get();
+        long checkMs = (System.nanoTime() - t0) / 1_000_000L;
+        pool.shutdown();
+
+        // Lookup allocation, measured on this thread after the lookups above warmed up the JIT
+        long allocated = -1;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean mx
+                && mx.isThreadAllocatedMemorySupported()) {
+            long tid = Thread.currentThread().getId();
+            int hits = 0;
+            for (String k : keys) if (d.isRiskForEmail(k)) hits++;
+            long before = mx.getThreadAllocatedBytes(tid);
+            for (String k : keys) if (d.isRiskForEmail(k)) hits++;
+            allocated = mx.getThreadAllocatedBytes(tid) - before;
+            if (hits < 0) System.out.println(hits); // keep the loops alive
+        }
+        int tracked = d.getTrackedKeyCount();
+        d.close();
+
+        // Eviction: a 1.6 s window, then nothing recorded for two windows
+        BruteForceDetector shortWindow = new BruteForceDetector(5, 1_600L);
+        for (String k : keys) shortWindow.recordFailure(k, null);
+        int before = shortWindow.getTrackedKeyCount();
+        Thread.sleep(3_300L);
+        shortWindow.evictIdle();
+        int after = shortWindow.getTrackedKeyCount();
+        shortWindow.close();
+
+        int expected = (emails + 9) / 10;
+        boolean ok = flagged.get() == expected && tracked == emails && (allocated < 0 || allocated < 1024)
+                && before == emails && after == 0;
+
+        System.out.printf("%d emails, %d threads: recorded in %d ms, checked in %d ms%n", emails, threads, recordMs, checkMs);
+        System.out.println("Flagged: " + flagged.get() + " (expected " + expected + "), tracked keys: " + tracked);
+        System.out.println("Bytes allocated by " + emails + " lookups: " + (allocated < 0 ? "n/a" : allocated));
+        System.out.println("Short window keys: " + before + " -> " + after + " after eviction");
+        if (!ok) System.exit(1);
+    }
+}
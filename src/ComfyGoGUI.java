@@ -1,10 +1,8 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
-import java.sql.Connection;
 
 public class ComfyGoGUI extends JFrame {
-    private Connection conn;
     private final CardLayout cardLayout = new CardLayout();
     private final JPanel mainPanel = new JPanel(cardLayout);
 
@@ -72,7 +70,6 @@ public class ComfyGoGUI extends JFrame {
 
     private void initDatabaseAndServices() {
         try {
-            conn = Db.getConnection();
             if (!Db.testConnection()) {
                 JOptionPane.showMessageDialog(
                     this,
@@ -83,13 +80,20 @@ public class ComfyGoGUI extends JFrame {
                 System.exit(1);
             }
 
-            authService = new AuthService(conn);
-            hotelService = new HotelService(conn);
-            managerService = new ManagerService(conn);
-            guideService = new GuideService(conn);
-            spotService = new TouristSpotService(conn);
-            transportService = new TransportService(conn);
-            ratingService = new RatingService(conn);
+            authService = new AuthService();
+            hotelService = new HotelService();
+            managerService = new ManagerService();
+            guideService = new GuideService();
+            spotService = new TouristSpotService();
+            transportService = new TransportService();
+            ratingService = new RatingService();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                // Flush queued log rows while the pool is still open
+                AuditLogger.shutdown();
+                SessionManager.shutdown();
+                Db.closeConnection();
+            }, "comfygo-db-shutdown"));
         } catch (Exception e) {
             JOptionPane.showMessageDialog(
                 this,
@@ -287,7 +291,6 @@ public class ComfyGoGUI extends JFrame {
     public TouristSpotService getSpotService() { return spotService; }
     public TransportService getTransportService() { return transportService; }
     public RatingService getRatingService() { return ratingService; }
-    public Connection getConnection() { return conn; }
 
     // Session getters/setters
     public String getCurrentUserId() { return currentUserId; }
@@ -0,0 +1,526 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small bounded JDBC connection pool used behind {@link Db}.
+ *
+ * - At most maxSize connections are leased at once; borrowers wait up to connectionTimeoutMs
+ * - Connections handed out are proxies: close() returns the physical connection to the pool
+ * - Idle connections are validated on borrow, evicted after idleTimeoutMs and retired after maxLifetimeMs
+ * - A connection leased longer than leakDetectionMs is reported once, with the borrow site
+ * - Returned connections are rolled back and reset to autoCommit=true before reuse
+ * - prepareStatement(sql) is served from a per-connection LRU cache keyed by SQL text;
+ *   closing a cached statement only clears its parameters
+ * - A connection-level error (SQLState 08) from the connection or any of its statements marks
+ *   the lease broken, and the physical connection is closed instead of being pooled again
+ */
+public final class ConnectionPool {
+
+    // Connections used within this window are trusted without an isValid() round trip
+    private static final long VALIDATION_SKIP_MS = 500L;
+    private static final int VALIDATION_TIMEOUT_SEC = 2;
+    private static final long HOUSEKEEPING_PERIOD_MS = 30_000L;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final long connectionTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long leakDetectionMs;
+    private final int statementCacheSize;
+
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private final Semaphore leasePermits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledEntry> leased = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password,
+                          int maxSize, int minIdle,
+                          long connectionTimeoutMs, long idleTimeoutMs,
+                          long maxLifetimeMs, long leakDetectionMs,
+                          int statementCacheSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be >= 1");
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.connectionTimeoutMs = Math.max(0L, connectionTimeoutMs);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.leakDetectionMs = leakDetectionMs;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.leasePermits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "comfygo-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_PERIOD_MS, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // -------------------- Lease / return --------------------
+
+    /** Leases a connection. The caller must close() it (try-with-resources) to hand it back. */
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        try {
+            if (!leasePermits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + connectionTimeoutMs + " ms waiting for a connection " +
+                        "(active=" + getActiveCount() + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledEntry entry = takeUsableEntry();
+            entry.leasedAt = System.currentTimeMillis();
+            entry.leakReported = false;
+            entry.leaseSite = leakDetectionMs > 0 ? new Throwable("Connection leased here") : null;
+            leased.add(entry);
+            return entry.newLease(this);
+        } catch (SQLException | RuntimeException e) {
+            leasePermits.release();
+            throw e;
+        }
+    }
+
+    private PooledEntry takeUsableEntry() throws SQLException {
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (entry.isPastLifetime(now, maxLifetimeMs)) {
+                entry.closeQuietly();
+                continue;
+            }
+            if (now - entry.lastReturnedAt > VALIDATION_SKIP_MS && !entry.isValid()) {
+                entry.closeQuietly();
+                continue;
+            }
+            return entry;
+        }
+        return new PooledEntry(DriverManager.getConnection(url, user, password), statementCacheSize);
+    }
+
+    private void giveBack(PooledEntry entry, boolean broken) {
+        if (!leased.remove(entry)) return;
+
+        try {
+            if (closed || broken || entry.isPastLifetime(System.currentTimeMillis(), maxLifetimeMs) || !entry.reset()) {
+                entry.closeQuietly();
+            } else {
+                entry.lastReturnedAt = System.currentTimeMillis();
+                idle.offerFirst(entry); // LIFO keeps the warmest connections in use
+            }
+        } finally {
+            leasePermits.release();
+        }
+    }
+
+    // -------------------- Housekeeping --------------------
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        // Idle eviction (oldest-returned first, i.e. from the tail) while keeping minIdle warm
+        Iterator<PooledEntry> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledEntry e = it.next();
+            boolean expired = e.isPastLifetime(now, maxLifetimeMs);
+            boolean idleTooLong = idleTimeoutMs > 0 && now - e.lastReturnedAt > idleTimeoutMs && idle.size() > minIdle;
+            if ((expired || idleTooLong) && idle.remove(e)) e.closeQuietly();
+        }
+
+        // Leak detection
+        if (leakDetectionMs > 0) {
+            for (PooledEntry e : leased) {
+                if (!e.leakReported && now - e.leasedAt > leakDetectionMs) {
+                    e.leakReported = true;
+                    System.err.println("✗ Possible connection leak: leased for " + (now - e.leasedAt) + " ms");
+                    if (e.leaseSite != null) e.leaseSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // -------------------- Stats / shutdown --------------------
+
+    public int getActiveCount() { return leased.size(); }
+    public int getIdleCount() { return idle.size(); }
+    public int getTotalCount() { return leased.size() + idle.size(); }
+    public int getMaxSize() { return maxSize; }
+
+    public long getStatementCacheHits() { return statementCacheHits.sum(); }
+    public long getStatementCacheMisses() { return statementCacheMisses.sum(); }
+
+    public double getStatementCacheHitRatio() {
+        long hits = getStatementCacheHits();
+        long total = hits + getStatementCacheMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /** Closes idle connections now; leased ones are closed as they are returned. */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledEntry e;
+        while ((e = idle.pollFirst()) != null) e.closeQuietly();
+    }
+
+    // -------------------- Internals --------------------
+
+    private static final class PooledEntry {
+        private final Connection physical;
+        private final StatementCache statements;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastReturnedAt = createdAt;
+        private volatile long leasedAt;
+        private volatile boolean leakReported;
+        private volatile Throwable leaseSite;
+
+        PooledEntry(Connection physical, int statementCacheSize) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+        }
+
+        Connection newLease(ConnectionPool pool) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Lease(pool, this));
+        }
+
+        boolean isPastLifetime(long now, long maxLifetimeMs) {
+            return maxLifetimeMs > 0 && now - createdAt > maxLifetimeMs;
+        }
+
+        boolean isValid() {
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_SEC);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /** Undo anything a borrower left behind (open transaction, autoCommit=false). */
+        boolean reset() {
+            try {
+                if (physical.isClosed()) return false;
+                if (statements != null) statements.evictCheckedOut();
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) physical.setReadOnly(false);
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            if (statements != null) statements.closeAll();
+            try { physical.close(); } catch (SQLException ignored) {}
+        }
+    }
+
+    /**
+     * LRU of physical PreparedStatements for one connection, keyed by SQL text.
+     * Only touched by the thread currently leasing the connection.
+     */
+    private static final class StatementCache {
+        private final Map<String, CachedStatement> bySql;
+
+        StatementCache(int capacity) {
+            this.bySql = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= capacity || eldest.getValue().checkedOut) return false;
+                    eldest.getValue().closeQuietly();
+                    return true;
+                }
+            };
+        }
+
+        /** Returns a free cached statement for sql, or null. */
+        CachedStatement checkOut(String sql) {
+            CachedStatement cs = bySql.get(sql);
+            if (cs == null || cs.checkedOut) return null;
+            cs.checkedOut = true;
+            return cs;
+        }
+
+        /** Caches a freshly prepared statement; false if the slot is taken (same SQL open twice). */
+        boolean add(String sql, CachedStatement cs) {
+            if (bySql.containsKey(sql)) return false;
+            cs.checkedOut = true;
+            bySql.put(sql, cs);
+            return true;
+        }
+
+        void evict(CachedStatement cs) {
+            bySql.values().remove(cs);
+            cs.closeQuietly();
+        }
+
+        // A borrower returned the connection without closing some statements; drop them
+        void evictCheckedOut() {
+            Iterator<CachedStatement> it = bySql.values().iterator();
+            while (it.hasNext()) {
+                CachedStatement cs = it.next();
+                if (cs.checkedOut) {
+                    it.remove();
+                    cs.closeQuietly();
+                }
+            }
+        }
+
+        void closeAll() {
+            for (CachedStatement cs : bySql.values()) cs.closeQuietly();
+            bySql.clear();
+        }
+    }
+
+    private static final class CachedStatement {
+        private final PreparedStatement physical;
+        private boolean checkedOut;
+
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        void closeQuietly() {
+            try { physical.close(); } catch (SQLException ignored) {}
+        }
+    }
+
+    // SQLState class 08 = connection exception; don't recycle such connections
+    private static boolean isFatal(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+
+    /** Proxy handler for one checkout of a cached statement: close() keeps the physical statement. */
+    private static final class StatementLease implements InvocationHandler {
+        private final Lease lease;
+        private final Connection owner;
+        private final StatementCache cache;
+        private final CachedStatement cached;
+        private boolean closed;
+
+        StatementLease(Lease lease, Connection owner, StatementCache cache, CachedStatement cached) {
+            this.lease = lease;
+            this.owner = owner;
+            this.cache = cache;
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            cached.physical.clearParameters();
+                            cached.physical.clearBatch();
+                            cached.checkedOut = false;
+                        } catch (SQLException e) {
+                            cache.evict(cached);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.physical.isClosed();
+                case "getConnection":
+                    return owner;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return true;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if (closed) throw new SQLException("Statement is closed");
+
+            try {
+                return method.invoke(cached.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlEx && isFatal(sqlEx)) lease.broken = true;
+                throw cause;
+            }
+        }
+    }
+
+    /** Proxy handler for a statement that isn't cached: forwards every call, watching for fatal errors. */
+    private static final class StatementWatch implements InvocationHandler {
+        private final Lease lease;
+        private final Connection owner;
+        private final Statement physical;
+
+        StatementWatch(Lease lease, Connection owner, Statement physical) {
+            this.lease = lease;
+            this.owner = owner;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return owner;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return true;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlEx && isFatal(sqlEx)) lease.broken = true;
+                throw cause;
+            }
+        }
+    }
+
+    /** Proxy handler for one lease: close() hands back, every other call is forwarded. */
+    private static final class Lease implements InvocationHandler {
+        private final ConnectionPool pool;
+        private final PooledEntry entry;
+        private boolean returned;
+        private boolean broken;
+
+        Lease(ConnectionPool pool, PooledEntry entry) {
+            this.pool = pool;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        pool.giveBack(entry, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.physical.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return true;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (returned) throw new SQLException("Connection has already been returned to the pool");
+
+            if (entry.statements != null && "prepareStatement".equals(method.getName())
+                    && method.getParameterCount() == 1) {
+                return prepareCached(proxy, (String) args[0]);
+            }
+
+            Object result;
+            try {
+                result = method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlEx && isFatal(sqlEx)) broken = true;
+                throw cause;
+            }
+            // createStatement, prepareCall, prepareStatement(sql, keys)...
+            if (result instanceof Statement st) return watch(proxy, method.getReturnType(), st);
+            return result;
+        }
+
+        private Object watch(Object proxy, Class<?> type, Statement st) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new StatementWatch(this, (Connection) proxy, st));
+        }
+
+        private PreparedStatement prepareCached(Object proxy, String sql) throws SQLException {
+            StatementCache cache = entry.statements;
+            CachedStatement cs = cache.checkOut(sql);
+            if (cs != null) {
+                pool.statementCacheHits.increment();
+            } else {
+                pool.statementCacheMisses.increment();
+                PreparedStatement fresh;
+                try {
+                    fresh = entry.physical.prepareStatement(sql);
+                } catch (SQLException e) {
+                    if (isFatal(e)) broken = true;
+                    throw e;
+                }
+                cs = new CachedStatement(fresh);
+                // Same SQL already open in this lease: hand out an uncached statement
+                if (!cache.add(sql, cs)) return (PreparedStatement) watch(proxy, PreparedStatement.class, fresh);
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementLease(this, (Connection) proxy, cache, cs));
+        }
+    }
+}
@@ -1,73 +1,151 @@
 import java.io.FileInputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
 /**
  * Database Connection Manager (console prototype).
  *
+ * Connections come from a bounded {@link ConnectionPool}. Every caller leases a
+ * connection per unit of work and must close() it (try-with-resources) to return it.
+ *
  * Optional config file: config.properties
  * Keys:
- *   db.url=jdbc:mysql://localhost:3306/comfygo?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC
+ *   db.url=jdbc:mysql://localhost:3306/comfygo?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&rewriteBatchedStatements=true
  *   db.user=root
  *   db.password=
+ *   db.pool.maxSize=10
+ *   db.pool.minIdle=2
+ *   db.pool.connectionTimeoutMs=30000
+ *   db.pool.idleTimeoutMs=600000
+ *   db.pool.maxLifetimeMs=1800000
+ *   db.pool.leakDetectionMs=60000   (0 disables)
+ *   db.pool.statementCacheSize=64   (prepared statements cached per connection, 0 disables)
+ *   id.blockSize=16384               (see IdGenerator)
  */
 public class Db {
 
-    private static Connection connection;
+    private static volatile ConnectionPool pool;
+    private static volatile Properties config;
 
     private static final String CONFIG_FILE = "config.properties";
 
     // Fallback credentials
     private static final String DEFAULT_URL =
-            "jdbc:mysql://localhost:3306/comfygo?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC";
+            "jdbc:mysql://localhost:3306/comfygo?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&rewriteBatchedStatements=true";
     private static final String DEFAULT_USER = "root";
     private static final String DEFAULT_PASSWORD = "";
 
+    // Fallback pool settings
+    private static final int DEFAULT_POOL_MAX_SIZE = 10;
+    private static final int DEFAULT_POOL_MIN_IDLE = 2;
+    private static final long DEFAULT_CONNECTION_TIMEOUT_MS = 30_000L;
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 10L * 60L * 1000L;
+    private static final long DEFAULT_MAX_LIFETIME_MS = 30L * 60L * 1000L;
+    private static final long DEFAULT_LEAK_DETECTION_MS = 60_000L;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    /** Leases a pooled connection. Close it to return it to the pool. */
     public static Connection getConnection() throws SQLException {
-        if (connection != null && !connection.isClosed()) return connection;
+        return pool().borrow();
+    }
+
+    public static ConnectionPool pool() throws SQLException {
+        ConnectionPool p = pool;
+        if (p != null) return p;
+
+        synchronized (Db.class) {
+            if (pool == null) pool = createPool();
+            return pool;
+        }
+    }
 
+    private static ConnectionPool createPool() throws SQLException {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
         } catch (ClassNotFoundException e) {
             throw new SQLException("JDBC Driver not found: " + e.getMessage(), e);
         }
 
-        Properties props = new Properties();
+        Properties props = config();
         String url = DEFAULT_URL;
         String user = DEFAULT_USER;
         String password = DEFAULT_PASSWORD;
 
-        try (FileInputStream fis = new FileInputStream(CONFIG_FILE)) {
-            props.load(fis);
+        if (props.getProperty("db.url") != null) url = props.getProperty("db.url").trim();
+        if (props.getProperty("db.user") != null) user = props.getProperty("db.user").trim();
+        if (props.getProperty("db.password") != null) password = props.getProperty("db.password");
+
+        return new ConnectionPool(
+                url, user, password,
+                (int) longProp(props, "db.pool.maxSize", DEFAULT_POOL_MAX_SIZE),
+                (int) longProp(props, "db.pool.minIdle", DEFAULT_POOL_MIN_IDLE),
+                longProp(props, "db.pool.connectionTimeoutMs", DEFAULT_CONNECTION_TIMEOUT_MS),
+                longProp(props, "db.pool.idleTimeoutMs", DEFAULT_IDLE_TIMEOUT_MS),
+                longProp(props, "db.pool.maxLifetimeMs", DEFAULT_MAX_LIFETIME_MS),
+                longProp(props, "db.pool.leakDetectionMs", DEFAULT_LEAK_DETECTION_MS),
+                (int) longProp(props, "db.pool.statementCacheSize", DEFAULT_STATEMENT_CACHE_SIZE)
+        );
+    }
+
+    /** Contents of config.properties, loaded once; empty if the file is missing. */
+    static Properties config() {
+        Properties p = config;
+        if (p != null) return p;
 
-            if (props.getProperty("db.url") != null) url = props.getProperty("db.url").trim();
-            if (props.getProperty("db.user") != null) user = props.getProperty("db.user").trim();
-            if (props.getProperty("db.password") != null) password = props.getProperty("db.password");
-        } catch (Exception ignored) {
-            System.out.println("Using default database configuration");
+        synchronized (Db.class) {
+            if (config == null) {
+                Properties loaded = new Properties();
+                try (FileInputStream fis = new FileInputStream(CONFIG_FILE)) {
+                    loaded.load(fis);
+                } catch (Exception ignored) {
+                    System.out.println("Using default database configuration");
+                }
+                config = loaded;
+            }
+            return config;
         }
+    }
 
-        connection = DriverManager.getConnection(url, user, password);
-        return connection;
+    static long longProp(Properties props, String key, long fallback) {
+        String v = props.getProperty(key);
+        if (v == null || v.isBlank()) return fallback;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for " + key + ", using " + fallback);
+            return fallback;
+        }
+    }
+
+    /** Prints pool occupancy and prepared statement cache hit/miss counters. */
+    public static void printPoolStats() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            System.out.println("Connection pool not started");
+            return;
+        }
+        System.out.println("Pool: active=" + p.getActiveCount() + ", idle=" + p.getIdleCount() + ", max=" + p.getMaxSize());
+        System.out.printf("Statement cache: hits=%d, misses=%d, hit ratio=%.1f%%%n",
+                p.getStatementCacheHits(), p.getStatementCacheMisses(), p.getStatementCacheHitRatio() * 100.0);
     }
 
     public static boolean testConnection() {
-        try {
-            Connection c = getConnection();
-            return c != null && !c.isClosed();
+        try (Connection c = getConnection()) {
+            return c != null && c.isValid(2);
         } catch (SQLException e) {
             System.out.println("Connection test failed: " + e.getMessage());
             return false;
         }
     }
 
+    /** Shuts the pool down. Leased connections are closed as they are returned. */
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) connection.close();
-        } catch (SQLException e) {
-            System.out.println("Error closing connection: " + e.getMessage());
+        synchronized (Db.class) {
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Guide fee quotes the booking path can trust.
+ *
+ * A quote is the exact total for one guide and a number of days, taken from the daily rate
+ * {@link GuideIndex} keeps per guide (worked out again only when a guide changes). It comes
+ * with a token: guide id, days, total and expiry, signed with HMAC-SHA256. When the tourist
+ * books, {@link #verify} checks the signature and expiry, so the quoted total is charged
+ * without fetching the guide or pricing the tour again.
+ *
+ * Set quotes.secret to share the key between app instances; otherwise each instance signs
+ * with its own random key and only accepts its own quotes.
+ */
+final class FeeQuotes {
+
+    record Quote(String guideId, int days, double dailyRate, double total, long expiresAt, String token) {
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char SEP = '|';
+
+    private final SecretKeySpec key;
+    private final long ttlMs;
+
+    FeeQuotes(String secret, long ttlMs) {
+        byte[] bytes;
+        if (secret == null || secret.isBlank()) {
+            bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+        } else {
+            bytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(bytes, ALGORITHM);
+        this.ttlMs = ttlMs;
+    }
+
+    long getTtlMs() { return ttlMs; }
+
+    /** Signed quote for days of guideId at dailyRate. */
+    Quote issue(String guideId, int days, double dailyRate) {
+        long rateCents = Math.round(dailyRate * 100);
+        long expiresAt = System.currentTimeMillis() + ttlMs;
+        String payload = guideId + SEP + days + SEP + rateCents + SEP + expiresAt;
+        String token = encode(payload.getBytes(StandardCharsets.UTF_8)) + "." + encode(sign(payload));
+        return new Quote(guideId, days, rateCents / 100.0, rateCents * days / 100.0, expiresAt, token);
+    }
+
+    /** The quote token stands for, or null if it was tampered with, malformed or expired. */
+    Quote verify(String token) {
+        if (token == null) return null;
+        int dot = token.indexOf('.');
+        if (dot <= 0) return null;
+
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) return null;
+
+            String[] parts = payload.split("\\|");
+            if (parts.length != 4) return null;
+            int days = Integer.parseInt(parts[1]);
+            long rateCents = Long.parseLong(parts[2]);
+            long expiresAt = Long.parseLong(parts[3]);
+
+            Quote q = new Quote(parts[0], days, rateCents / 100.0, rateCents * days / 100.0, expiresAt, token);
+            return q.isExpired() ? null : q;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -26,6 +26,23 @@ public class Guide {
         this.status = "ACTIVE";
     }
 
+    public Guide(Guide other) {
+        this.guideId = other.guideId;
+        this.guideName = other.guideName;
+        this.guideEmail = other.guideEmail;
+        this.guidePhone = other.guidePhone;
+        this.guidePassword = other.guidePassword;
+        this.guideDivision = other.guideDivision;
+        this.guideDistrict = other.guideDistrict;
+        this.guideLanguage = other.guideLanguage;
+        this.specialization = other.specialization;
+        this.rating = other.rating;
+        this.totalRatings = other.totalRatings;
+        this.isAvailable = other.isAvailable;
+        this.yearExperience = other.yearExperience;
+        this.status = other.status;
+    }
+
     public Guide(String guideId, String guideName, String guideEmail) {
         this();
         this.guideId = guideId;
@@ -150,29 +167,7 @@ public class Guide {
      * NEW METHOD: Calculate daily fee based on specialization, experience, and rating
      */
     public double getDailyFee() {
-        double base = 2500.0;
-        
-        // Base adjustment by specialization
-        String spec = (specialization != null ? specialization.toLowerCase() : "");
-        if (spec.contains("adventure")) {
-            base += 800;
-        } else if (spec.contains("history")) {
-            base += 500;
-        } else if (spec.contains("nature")) {
-            base += 400;
-        } else if (spec.contains("beach")) {
-            base += 300;
-        }
-        
-        // Experience premium (capped at 2000)
-        int exp = Math.max(0, yearExperience);
-        base += Math.min(2000.0, exp * 150.0);
-        
-        // Rating premium
-        base += rating * 200.0;
-        
-        // Round to nearest 50
-        return Math.round(base / 50.0) * 50.0;
+        return GuideService.dailyFee(this);
     }
 
     // -------------------- Optional DB helpers --------------------
@@ -188,6 +183,7 @@ public class Guide {
             boolean ok = ps.executeUpdate() > 0;
             if (ok) {
                 this.isAvailable = available;
+                GuideService.guideIndex().setAvailable(guideId, available);
             }
             return ok;
         } catch (SQLException e) {
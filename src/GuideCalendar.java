@@ -0,0 +1,305 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Day-level booking calendar for tour guides.
+ *
+ * A guide is busy on the days of their PENDING/CONFIRMED tours and free on every other day, so
+ * a tour next month no longer blocks tomorrow. The guides.isavailable flag is left to mean only
+ * "taking bookings at all".
+ *
+ * Busy days are stored in guide_calendar, one row per guide and month, with a bitmask where bit
+ * d - 1 is day d. {@link #reserve} takes a range with a guarded UPDATE per month inside the
+ * caller's transaction. In memory every guide has a BitSet over a rolling horizon starting
+ * today, so "which of these guides are free from D for N days" is a range check per guide with
+ * no queries. Memory is updated after commit and reloaded (all guides, one query) after a TTL.
+ *
+ * Tours booked before tours had dates (tourstartdate NULL) are brought onto the calendar by the
+ * first load in each process: a PENDING/CONFIRMED one gets its booking date as its start and its
+ * days are marked busy, so it blocks new bookings and is freed again when it is cancelled.
+ */
+final class GuideCalendar {
+
+    private static final class Snapshot {
+        final long baseDay;
+        final long expiresAt;
+        final Map<String, BitSet> busy;
+
+        Snapshot(long baseDay, long expiresAt, Map<String, BitSet> busy) {
+            this.baseDay = baseDay;
+            this.expiresAt = expiresAt;
+            this.busy = busy;
+        }
+    }
+
+    private final int horizonDays;
+    private final long ttlMs;
+    private volatile Snapshot snapshot;
+    private boolean undatedAdopted; // guarded by this
+
+    GuideCalendar(int horizonDays, long ttlMs) {
+        this.horizonDays = Math.max(1, horizonDays);
+        this.ttlMs = ttlMs;
+    }
+
+    int getHorizonDays() { return horizonDays; }
+
+    // -------------------- Reads (memory) --------------------
+
+    /** True if [start, start + days) starts today or later and ends inside the horizon. */
+    boolean inHorizon(LocalDate start, int days) {
+        long today = LocalDate.now().toEpochDay();
+        return days > 0 && start.toEpochDay() >= today && start.toEpochDay() + days <= today + horizonDays;
+    }
+
+    boolean isFree(String guideId, LocalDate start, int days) {
+        Snapshot s = current();
+        return s != null && isFree(s, guideId, start, days);
+    }
+
+    /** The guides among guideIds with no tour in [start, start + days), in the given order. */
+    List<String> freeGuides(Collection<String> guideIds, LocalDate start, int days) {
+        List<String> out = new ArrayList<>();
+        Snapshot s = current();
+        if (s == null) return out;
+
+        for (String id : guideIds) {
+            if (isFree(s, id, start, days)) out.add(id);
+        }
+        return out;
+    }
+
+    private boolean isFree(Snapshot s, String guideId, LocalDate start, int days) {
+        int from = (int) (start.toEpochDay() - s.baseDay);
+        int to = from + days;
+        if (guideId == null || from < 0 || to > horizonDays || days <= 0) return false;
+
+        BitSet bits = s.busy.get(guideId.trim());
+        if (bits == null) return true;
+        synchronized (bits) {
+            int next = bits.nextSetBit(from);
+            return next < 0 || next >= to;
+        }
+    }
+
+    // -------------------- Writes (database, inside the caller's transaction) --------------------
+
+    /**
+     * Marks [start, start + days) busy, or nothing: false means at least one day is already
+     * taken and the caller must roll back.
+     */
+    boolean reserve(Connection conn, String guideId, LocalDate start, int days) throws SQLException {
+        if (days <= 0) return false;
+
+        Map<LocalDate, Long> masks = masks(start, days);
+        String seedSql = "INSERT IGNORE INTO guide_calendar (guideid, month, busydays) VALUES (?, ?, 0)";
+        try (PreparedStatement ps = conn.prepareStatement(seedSql)) {
+            for (LocalDate month : masks.keySet()) {
+                ps.setString(1, guideId);
+                ps.setDate(2, Date.valueOf(month));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        String sql = "UPDATE guide_calendar SET busydays = busydays | ? " +
+                     "WHERE guideid = ? AND month = ? AND (busydays & ?) = 0";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Map.Entry<LocalDate, Long> e : masks.entrySet()) {
+                ps.setLong(1, e.getValue());
+                ps.setString(2, guideId);
+                ps.setDate(3, Date.valueOf(e.getKey()));
+                ps.setLong(4, e.getValue());
+                if (ps.executeUpdate() != 1) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks [start, start + days) busy whatever is there already; only for tours that were sold
+     * before the calendar existed.
+     */
+    private static void occupy(Connection conn, String guideId, LocalDate start, int days) throws SQLException {
+        Map<LocalDate, Long> masks = masks(start, days);
+        String sql = "INSERT INTO guide_calendar (guideid, month, busydays) VALUES (?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE busydays = busydays | VALUES(busydays)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Map.Entry<LocalDate, Long> e : masks.entrySet()) {
+                ps.setString(1, guideId);
+                ps.setDate(2, Date.valueOf(e.getKey()));
+                ps.setLong(3, e.getValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Frees [start, start + days). */
+    void release(Connection conn, String guideId, LocalDate start, int days) throws SQLException {
+        if (days <= 0) return;
+
+        String sql = "UPDATE guide_calendar SET busydays = busydays & ~? WHERE guideid = ? AND month = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Map.Entry<LocalDate, Long> e : masks(start, days).entrySet()) {
+                ps.setLong(1, e.getValue());
+                ps.setString(2, guideId);
+                ps.setDate(3, Date.valueOf(e.getKey()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** First day of each month the range touches, with the bits of its days in that month. */
+    private static Map<LocalDate, Long> masks(LocalDate start, int days) {
+        Map<LocalDate, Long> masks = new LinkedHashMap<>();
+        LocalDate end = start.plusDays(days);
+        for (LocalDate d = start; d.isBefore(end); d = d.plusDays(1)) {
+            masks.merge(d.withDayOfMonth(1), 1L << (d.getDayOfMonth() - 1), (a, b) -> a | b);
+        }
+        return masks;
+    }
+
+    // -------------------- Memory updates (after commit) --------------------
+
+    void applyReserved(String guideId, LocalDate start, int days) {
+        adjust(guideId, start, days, true);
+    }
+
+    void applyReleased(String guideId, LocalDate start, int days) {
+        adjust(guideId, start, days, false);
+    }
+
+    private void adjust(String guideId, LocalDate start, int days, boolean busy) {
+        Snapshot s = snapshot;
+        if (s == null || guideId == null) return; // not loaded; the next load reads it from the database
+
+        int from = (int) Math.max(0, start.toEpochDay() - s.baseDay);
+        int to = (int) Math.min(horizonDays, start.toEpochDay() + days - s.baseDay);
+        if (from >= to) return;
+
+        BitSet bits = s.busy.computeIfAbsent(guideId.trim(), k -> new BitSet(horizonDays));
+        synchronized (bits) {
+            bits.set(from, to, busy);
+        }
+    }
+
+    // -------------------- Loading --------------------
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        long today = LocalDate.now().toEpochDay();
+        if (s != null && System.currentTimeMillis() < s.expiresAt && s.baseDay == today) return s;
+
+        synchronized (this) {
+            s = snapshot;
+            if (s != null && System.currentTimeMillis() < s.expiresAt && s.baseDay == today) return s;
+
+            Snapshot fresh = load(today);
+            if (fresh == null) return s; // keep serving the old one if the database is unreachable
+            snapshot = fresh;
+            return fresh;
+        }
+    }
+
+    private Snapshot load(long today) {
+        LocalDate first = LocalDate.ofEpochDay(today);
+        LocalDate last = LocalDate.ofEpochDay(today + horizonDays - 1);
+        String sql = "SELECT guideid, month, busydays FROM guide_calendar " +
+                     "WHERE month >= ? AND month <= ? AND busydays <> 0";
+
+        Map<String, BitSet> busy = new ConcurrentHashMap<>();
+        try (Connection conn = Db.getConnection()) {
+            if (!undatedAdopted) {
+                adoptUndatedTours(conn);
+                undatedAdopted = true;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setDate(1, Date.valueOf(first.withDayOfMonth(1)));
+                ps.setDate(2, Date.valueOf(last.withDayOfMonth(1)));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        LocalDate month = rs.getDate("month").toLocalDate();
+                        long mask = rs.getLong("busydays");
+                        BitSet bits = busy.computeIfAbsent(rs.getString("guideid"), k -> new BitSet(horizonDays));
+                        for (int d = 0; d < month.lengthOfMonth(); d++) {
+                            if ((mask & (1L << d)) == 0) continue;
+                            long i = month.plusDays(d).toEpochDay() - today;
+                            if (i >= 0 && i < horizonDays) bits.set((int) i);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to load guide calendar: " + e.getMessage());
+            return null;
+        }
+
+        return new Snapshot(today, System.currentTimeMillis() + ttlMs, busy);
+    }
+
+    /**
+     * Dates the active tours that have no start date yet (start = booking date) and marks their
+     * days busy, one short transaction per tour. The guarded UPDATE makes this safe to run from
+     * several instances at once: only the one that dates a tour marks its days.
+     */
+    private static void adoptUndatedTours(Connection conn) throws SQLException {
+        String findSql = "SELECT bookingid, guideid, DATE(bookingdate) AS startdate, tourdurationdays FROM guidebooking " +
+                         "WHERE tourstatus IN (?, ?) AND tourstartdate IS NULL AND guideid IS NOT NULL " +
+                         "AND bookingdate IS NOT NULL AND tourdurationdays > 0";
+        List<Object[]> undated = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(findSql)) {
+            ps.setString(1, GuideService.TOUR_STATUS_PENDING);
+            ps.setString(2, GuideService.TOUR_STATUS_CONFIRMED);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    undated.add(new Object[]{rs.getString("bookingid"), rs.getString("guideid"),
+                                             rs.getDate("startdate").toLocalDate(), rs.getInt("tourdurationdays")});
+                }
+            }
+        }
+        if (undated.isEmpty()) return;
+
+        String dateSql = "UPDATE guidebooking SET tourstartdate = ? " +
+                         "WHERE bookingid = ? AND tourstartdate IS NULL AND tourstatus IN (?, ?)";
+        int adopted = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (Object[] t : undated) {
+                LocalDate start = (LocalDate) t[2];
+                try (PreparedStatement ps = conn.prepareStatement(dateSql)) {
+                    ps.setDate(1, Date.valueOf(start));
+                    ps.setString(2, (String) t[0]);
+                    ps.setString(3, GuideService.TOUR_STATUS_PENDING);
+                    ps.setString(4, GuideService.TOUR_STATUS_CONFIRMED);
+                    if (ps.executeUpdate() != 1) {
+                        conn.rollback(); // dated elsewhere or no longer active
+                        continue;
+                    }
+                }
+                occupy(conn, (String) t[1], start, (Integer) t[3]);
+                conn.commit();
+                adopted++;
+            }
+        } catch (SQLException e) {
+            try { conn.rollback(); } catch (SQLException ignored) {}
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        if (adopted > 0) System.out.println("Put " + adopted + " undated guide tour(s) on the guide calendar");
+    }
+}
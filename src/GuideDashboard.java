@@ -4,15 +4,17 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.util.List;
 
 public class GuideDashboard extends JPanel {
     private final ComfyGoGUI mainFrame;
     private final JPanel contentPanel;
     private final CardLayout contentLayout;
+    // Database work for this screen; cancelled when the dashboard is closed
+    private final UiTasks tasks;
 
     public GuideDashboard(ComfyGoGUI mainFrame) {
         this.mainFrame = mainFrame;
+        this.tasks = new UiTasks(this);
         setLayout(new BorderLayout());
         setBackground(ComfyGoGUI.BACKGROUND);
 
@@ -91,6 +93,9 @@ public class GuideDashboard extends JPanel {
 
         sidebar.add(Box.createVerticalGlue());
 
+        sidebar.add(tasks.indicator());
+        sidebar.add(Box.createRigidArea(new Dimension(0, 12)));
+
         JButton logout = ComfyGoGUI.createStyledButton("Logout", ComfyGoGUI.DANGER);
         logout.setAlignmentX(Component.CENTER_ALIGNMENT);
         logout.setMaximumSize(new Dimension(240, 50));
@@ -162,32 +167,41 @@ public class GuideDashboard extends JPanel {
             new EmptyBorder(25, 25, 25, 25)
         ));
 
-        Guide guide = Guide.getGuideById(mainFrame.getConnection(), mainFrame.getCurrentUserId());
-
-        if (guide == null) {
-            JLabel msg = new JLabel("Guide profile not found.");
-            msg.setFont(new Font("Segoe UI", Font.PLAIN, 15));
-            msg.setForeground(ComfyGoGUI.TEXT_SECONDARY);
-            info.add(msg);
-        } else {
-            info.add(infoRow("Guide ID", guide.getGuideId()));
-            info.add(infoRow("Name", guide.getGuideName()));
-            info.add(infoRow("Email", guide.getGuideEmail()));
-            info.add(infoRow("Phone", guide.getGuidePhone()));
-            info.add(infoRow("Division", guide.getGuideDivision()));
-            info.add(infoRow("District", guide.getGuideDistrict()));
-            info.add(infoRow("Languages", guide.getGuideLanguage()));
-            info.add(infoRow("Specialization", guide.getSpecialization()));
-            info.add(infoRow("Experience", guide.getYearExperience() + " years"));
-            info.add(infoRow("Rating", guide.getRating() + " / 5"));
-            info.add(infoRow("Status", guide.isAvailable() ? "AVAILABLE" : "NOT AVAILABLE"));
-        }
+        info.add(messageLabel("Loading profile..."));
+
+        tasks.run("profile", () -> mainFrame.getGuideService().getGuideById(mainFrame.getCurrentUserId()), guide -> {
+            info.removeAll();
+            if (guide == null) {
+                info.add(messageLabel("Guide profile not found."));
+            } else {
+                info.add(infoRow("Guide ID", guide.getGuideId()));
+                info.add(infoRow("Name", guide.getGuideName()));
+                info.add(infoRow("Email", guide.getGuideEmail()));
+                info.add(infoRow("Phone", guide.getGuidePhone()));
+                info.add(infoRow("Division", guide.getGuideDivision()));
+                info.add(infoRow("District", guide.getGuideDistrict()));
+                info.add(infoRow("Languages", guide.getGuideLanguage()));
+                info.add(infoRow("Specialization", guide.getSpecialization()));
+                info.add(infoRow("Experience", guide.getYearExperience() + " years"));
+                info.add(infoRow("Rating", guide.getRating() + " / 5"));
+                info.add(infoRow("Status", guide.isAvailable() ? "AVAILABLE" : "NOT AVAILABLE"));
+            }
+            info.revalidate();
+            info.repaint();
+        });
 
         body.add(ComfyGoGUI.scrollWrap(info), BorderLayout.CENTER);
         shell.add(body, BorderLayout.CENTER);
         return shell;
     }
 
+    private JLabel messageLabel(String text) {
+        JLabel msg = new JLabel(text);
+        msg.setFont(new Font("Segoe UI", Font.PLAIN, 15));
+        msg.setForeground(ComfyGoGUI.TEXT_SECONDARY);
+        return msg;
+    }
+
     private JPanel infoRow(String k, String v) {
         JPanel row = new JPanel(new BorderLayout(15, 0));
         row.setOpaque(false);
@@ -221,20 +235,20 @@ public class GuideDashboard extends JPanel {
             }
         };
 
-        List<GuideService.GuideBookingInfo> bookings =
-            mainFrame.getGuideService().getBookingsForGuide(mainFrame.getCurrentUserId());
-
-        for (GuideService.GuideBookingInfo b : bookings) {
-            model.addRow(new Object[]{
-                b.getBookingId(),
-                b.getTouristName(),
-                b.getTourDurationDays(),
-                "BDT " + b.getGuideFee(),
-                b.getTourStatus(),
-                b.getPaymentStatus(),
-                b.getTourLocation()
-            });
-        }
+        tasks.run("bookings", () -> mainFrame.getGuideService().getBookingsForGuide(mainFrame.getCurrentUserId()), bookings -> {
+            model.setRowCount(0);
+            for (GuideService.GuideBookingInfo b : bookings) {
+                model.addRow(new Object[]{
+                    b.getBookingId(),
+                    b.getTouristName(),
+                    b.getTourDurationDays(),
+                    "BDT " + b.getGuideFee(),
+                    b.getTourStatus(),
+                    b.getPaymentStatus(),
+                    b.getTourLocation()
+                });
+            }
+        });
 
         JTable table = createStyledTable(model);
         JScrollPane sp = new JScrollPane(table);
@@ -257,7 +271,7 @@ public class GuideDashboard extends JPanel {
             }
 
             String bookingId = String.valueOf(model.getValueAt(row, 0));
-            showUpdateStatusDialog(bookingId);
+            showUpdateStatusDialog(bookingId, updateBtn);
         });
 
         actions.add(updateBtn);
@@ -268,7 +282,7 @@ public class GuideDashboard extends JPanel {
         return shell;
     }
 
-    private void showUpdateStatusDialog(String bookingId) {
+    private void showUpdateStatusDialog(String bookingId, JButton updateBtn) {
         String[] statuses = {"PENDING", "CONFIRMED", "REJECTED", "COMPLETED", "CANCELLED"};
         String status = (String) JOptionPane.showInputDialog(
             mainFrame,
@@ -282,13 +296,14 @@ public class GuideDashboard extends JPanel {
 
         if (status == null) return;
 
-        boolean ok = mainFrame.getGuideService().updateTourStatusForGuide(mainFrame.getCurrentUserId(), bookingId, status);
-        if (ok) {
-            JOptionPane.showMessageDialog(mainFrame, "Status updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            mainFrame.showPanel("GUIDE_DASHBOARD");
-        } else {
-            JOptionPane.showMessageDialog(mainFrame, "Failed to update status!", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        tasks.runChange(() -> mainFrame.getGuideService().updateTourStatusForGuide(mainFrame.getCurrentUserId(), bookingId, status), ok -> {
+            if (ok) {
+                JOptionPane.showMessageDialog(mainFrame, "Status updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                if (!tasks.isClosed()) mainFrame.showPanel("GUIDE_DASHBOARD");
+            } else {
+                JOptionPane.showMessageDialog(mainFrame, "Failed to update status!", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, updateBtn);
     }
 
     private JPanel createAvailabilityPanel() {
@@ -310,44 +325,48 @@ public class GuideDashboard extends JPanel {
         statusLabel.setFont(new Font("Segoe UI", Font.BOLD, 22));
         statusLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
+        JButton setAvail = ComfyGoGUI.createStyledButton("Set AVAILABLE", ComfyGoGUI.SUCCESS);
+        JButton setUnavail = ComfyGoGUI.createStyledButton("Set NOT AVAILABLE", ComfyGoGUI.DANGER);
+
         // Method to refresh status display
-        Runnable refreshStatus = () -> {
-            Guide guide = Guide.getGuideById(mainFrame.getConnection(), mainFrame.getCurrentUserId());
-            boolean available = guide != null && guide.isAvailable();
-            statusLabel.setText("Current Status: " + (available ? "AVAILABLE" : "NOT AVAILABLE"));
-            statusLabel.setForeground(available ? ComfyGoGUI.SUCCESS : ComfyGoGUI.DANGER);
-        };
+        Runnable refreshStatus = () -> tasks.run("availability",
+            () -> mainFrame.getGuideService().getGuideById(mainFrame.getCurrentUserId()),
+            guide -> {
+                boolean available = guide != null && guide.isAvailable();
+                statusLabel.setText("Current Status: " + (available ? "AVAILABLE" : "NOT AVAILABLE"));
+                statusLabel.setForeground(available ? ComfyGoGUI.SUCCESS : ComfyGoGUI.DANGER);
+            });
 
         // Initial status load
+        statusLabel.setText("Current Status: ...");
         refreshStatus.run();
 
-        JButton setAvail = ComfyGoGUI.createStyledButton("Set AVAILABLE", ComfyGoGUI.SUCCESS);
-        JButton setUnavail = ComfyGoGUI.createStyledButton("Set NOT AVAILABLE", ComfyGoGUI.DANGER);
-
         setAvail.setAlignmentX(Component.LEFT_ALIGNMENT);
         setUnavail.setAlignmentX(Component.LEFT_ALIGNMENT);
         setAvail.setMaximumSize(new Dimension(300, 50));
         setUnavail.setMaximumSize(new Dimension(300, 50));
 
-        setAvail.addActionListener(e -> {
-            boolean ok = mainFrame.getGuideService().setGuideAvailability(mainFrame.getCurrentUserId(), true);
-            if (ok) {
-                refreshStatus.run(); // REFRESH STATUS IMMEDIATELY
-                JOptionPane.showMessageDialog(mainFrame, "You are now AVAILABLE for bookings!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                JOptionPane.showMessageDialog(mainFrame, "Cannot set AVAILABLE! You may have active tours.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        });
-
-        setUnavail.addActionListener(e -> {
-            boolean ok = mainFrame.getGuideService().setGuideAvailability(mainFrame.getCurrentUserId(), false);
-            if (ok) {
-                refreshStatus.run(); // REFRESH STATUS IMMEDIATELY
-                JOptionPane.showMessageDialog(mainFrame, "You are now NOT AVAILABLE for bookings!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                JOptionPane.showMessageDialog(mainFrame, "Failed to update availability!", "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        });
+        setAvail.addActionListener(e -> tasks.runChange(
+            () -> mainFrame.getGuideService().setGuideAvailability(mainFrame.getCurrentUserId(), true),
+            ok -> {
+                if (ok) {
+                    refreshStatus.run(); // REFRESH STATUS IMMEDIATELY
+                    JOptionPane.showMessageDialog(mainFrame, "You are now AVAILABLE for bookings!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(mainFrame, "Failed to update availability!", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, setAvail, setUnavail));
+
+        setUnavail.addActionListener(e -> tasks.runChange(
+            () -> mainFrame.getGuideService().setGuideAvailability(mainFrame.getCurrentUserId(), false),
+            ok -> {
+                if (ok) {
+                    refreshStatus.run(); // REFRESH STATUS IMMEDIATELY
+                    JOptionPane.showMessageDialog(mainFrame, "You are now NOT AVAILABLE for bookings!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(mainFrame, "Failed to update availability!", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, setAvail, setUnavail));
 
         card.add(statusLabel);
         card.add(Box.createRigidArea(new Dimension(0, 25)));
@@ -373,14 +392,16 @@ public class GuideDashboard extends JPanel {
         area.setBackground(ComfyGoGUI.SURFACE);
         area.setBorder(new EmptyBorder(20, 20, 20, 20));
 
-        Guide guide = Guide.getGuideById(mainFrame.getConnection(), mainFrame.getCurrentUserId());
-        if (guide != null) {
-            area.setText("Current Rating: " + guide.getRating() + " / 5\n"
-                + "Total Ratings: " + guide.getTotalRatings() + "\n\n"
-                + "Detailed reviews can be displayed here (if stored in DB).");
-        } else {
-            area.setText("No rating data found.");
-        }
+        area.setText("Loading ratings...");
+        tasks.run("ratings", () -> mainFrame.getGuideService().getGuideById(mainFrame.getCurrentUserId()), guide -> {
+            if (guide != null) {
+                area.setText("Current Rating: " + guide.getRating() + " / 5\n"
+                    + "Total Ratings: " + guide.getTotalRatings() + "\n\n"
+                    + "Detailed reviews can be displayed here (if stored in DB).");
+            } else {
+                area.setText("No rating data found.");
+            }
+        });
 
         JPanel card = new JPanel(new BorderLayout());
         card.setBackground(ComfyGoGUI.CARD_BG);
@@ -0,0 +1,301 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the guides table for tourist-side browsing and filtering.
+ *
+ * Every guide gets a slot (a bit position). Division, district, each language and each word of
+ * the specialization map to a BitSet of slots, as do "available" and "active". A combined filter
+ * is the AND of those sets, and the matches are ranked by rating, then experience, then the
+ * daily fee a tourist would pay. That fee is worked out once per guide, when it is indexed,
+ * and is what {@link FeeQuotes} quotes.
+ *
+ * Registration, availability changes and new ratings made through the app update one slot in
+ * place. The whole index is reloaded after a TTL to pick up edits from elsewhere. Guides handed
+ * to callers are copies.
+ */
+final class GuideIndex {
+
+    /** What tourists are shown first: best rated, then most experienced, then cheapest. */
+    private static final Comparator<Entry> RANKING = (a, b) -> {
+        int c = Double.compare(b.guide().getRating(), a.guide().getRating());
+        if (c != 0) return c;
+        c = Integer.compare(b.guide().getYearExperience(), a.guide().getYearExperience());
+        if (c != 0) return c;
+        c = Double.compare(a.fee(), b.fee());
+        return c != 0 ? c : a.guide().getGuideId().compareTo(b.guide().getGuideId());
+    };
+
+    /** Attribute filters; a null or blank field matches every guide. */
+    record Filter(String division, String district, String language, String specialization) {
+        static final Filter ALL = new Filter(null, null, null, null);
+    }
+
+    private record Entry(Guide guide, double fee) {}
+
+    private static final long RETRY_AFTER_FAILURE_MS = 5_000L;
+
+    private final long ttlMs;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    // Guarded by lock
+    private final List<Entry> slots = new ArrayList<>();
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final Map<String, BitSet> byDivision = new HashMap<>();
+    private final Map<String, BitSet> byDistrict = new HashMap<>();
+    private final Map<String, BitSet> byLanguage = new HashMap<>();
+    private final Map<String, BitSet> bySpecialization = new HashMap<>();
+    private final BitSet available = new BitSet();
+    private final BitSet active = new BitSet();
+
+    private volatile boolean loaded;
+    private volatile long expiresAt;
+
+    GuideIndex(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    // -------------------- Reads --------------------
+
+    /** Copies of the available, active guides matching every field of filter, ranked. */
+    List<Guide> find(Filter filter) {
+        ensureFresh();
+
+        List<Entry> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet bits = (BitSet) available.clone();
+            bits.and(active);
+            and(bits, byDivision, List.of(key(filter.division())));
+            and(bits, byDistrict, List.of(key(filter.district())));
+            and(bits, byLanguage, tokens(filter.language()));
+            and(bits, bySpecialization, tokens(filter.specialization()));
+
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) matches.add(slots.get(i));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return copies(matches);
+    }
+
+    /** Copies of the available, active guides among ids, in the given order. */
+    List<Guide> available(Collection<String> ids) {
+        ensureFresh();
+
+        List<Guide> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String id : ids) {
+                Integer slot = slotById.get(id);
+                if (slot != null && available.get(slot) && active.get(slot)) out.add(new Guide(slots.get(slot).guide()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    /** Copy of one indexed guide, or null if unknown. */
+    Guide byId(String guideId) {
+        ensureFresh();
+        if (guideId == null) return null;
+
+        lock.readLock().lock();
+        try {
+            Integer slot = slotById.get(guideId.trim());
+            return slot == null ? null : new Guide(slots.get(slot).guide());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** The guide's daily fee as computed when it was last indexed; -1 if unknown. */
+    double dailyRate(String guideId) {
+        ensureFresh();
+        if (guideId == null) return -1;
+
+        lock.readLock().lock();
+        try {
+            Integer slot = slotById.get(guideId.trim());
+            return slot == null ? -1 : slots.get(slot).fee();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void and(BitSet bits, Map<String, BitSet> index, List<String> keys) {
+        for (String k : keys) {
+            if (k.isEmpty()) continue;
+            BitSet match = index.get(k);
+            if (match == null) bits.clear();
+            else bits.and(match);
+        }
+    }
+
+    private static List<Guide> copies(List<Entry> entries) {
+        entries.sort(RANKING);
+        List<Guide> out = new ArrayList<>(entries.size());
+        for (Entry e : entries) out.add(new Guide(e.guide()));
+        return out;
+    }
+
+    // -------------------- Writes --------------------
+
+    /** Adds or replaces one guide, e.g. after registration. */
+    void put(Guide guide) {
+        if (guide == null || guide.getGuideId() == null) return;
+        Guide copy = new Guide(guide);
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.get(copy.getGuideId());
+            if (slot == null) {
+                slot = slots.size();
+                slots.add(null);
+                slotById.put(copy.getGuideId(), slot);
+            } else {
+                unindex(slot, slots.get(slot).guide());
+            }
+            slots.set(slot, new Entry(copy, GuideService.dailyFee(copy)));
+            index(slot, copy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void setAvailable(String guideId, boolean isAvailable) {
+        if (guideId == null) return;
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.get(guideId.trim());
+            if (slot == null) return; // the next load picks it up
+            slots.get(slot).guide().setAvailable(isAvailable);
+            available.set(slot, isAvailable);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(int slot, Guide g) {
+        if (g.isAvailable()) available.set(slot);
+        if ("ACTIVE".equalsIgnoreCase(g.getStatus())) active.set(slot);
+        file(byDivision, List.of(key(g.getGuideDivision())), slot, true);
+        file(byDistrict, List.of(key(g.getGuideDistrict())), slot, true);
+        file(byLanguage, tokens(g.getGuideLanguage()), slot, true);
+        file(bySpecialization, tokens(g.getSpecialization()), slot, true);
+    }
+
+    private void unindex(int slot, Guide g) {
+        available.clear(slot);
+        active.clear(slot);
+        file(byDivision, List.of(key(g.getGuideDivision())), slot, false);
+        file(byDistrict, List.of(key(g.getGuideDistrict())), slot, false);
+        file(byLanguage, tokens(g.getGuideLanguage()), slot, false);
+        file(bySpecialization, tokens(g.getSpecialization()), slot, false);
+    }
+
+    /** Sets or clears slot under each key of one attribute index. */
+    private static void file(Map<String, BitSet> index, List<String> keys, int slot, boolean on) {
+        for (String k : keys) {
+            if (k.isEmpty()) continue;
+            if (on) {
+                index.computeIfAbsent(k, x -> new BitSet()).set(slot);
+                continue;
+            }
+            BitSet bits = index.get(k);
+            if (bits == null) continue;
+            bits.clear(slot);
+            if (bits.isEmpty()) index.remove(k);
+        }
+    }
+
+    private static String key(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Lower-case words of a free-text field ("Bangla, English" -> bangla, english). */
+    private static List<String> tokens(String s) {
+        List<String> out = new ArrayList<>();
+        for (String t : key(s).split("[^\\p{L}\\p{N}]+")) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    // -------------------- Loading --------------------
+
+    private void ensureFresh() {
+        if (loaded && System.currentTimeMillis() < expiresAt) return;
+
+        // One thread reloads; the rest keep using the current index if there is one
+        if (loaded) {
+            if (!reloadLock.tryLock()) return;
+        } else {
+            reloadLock.lock();
+        }
+        try {
+            if (loaded && System.currentTimeMillis() < expiresAt) return;
+            reload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void reload() {
+        List<Guide> guides = new ArrayList<>();
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT * FROM guides");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) guides.add(GuideService.mapGuide(rs));
+        } catch (SQLException e) {
+            System.out.println("Failed to load guide index: " + e.getMessage());
+            expiresAt = System.currentTimeMillis() + Math.min(ttlMs, RETRY_AFTER_FAILURE_MS);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            slotById.clear();
+            byDivision.clear();
+            byDistrict.clear();
+            byLanguage.clear();
+            bySpecialization.clear();
+            available.clear();
+            active.clear();
+            for (Guide g : guides) {
+                int slot = slots.size();
+                slots.add(new Entry(g, GuideService.dailyFee(g)));
+                slotById.put(g.getGuideId(), slot);
+                index(slot, g);
+            }
+            loaded = true;
+            expiresAt = System.currentTimeMillis() + ttlMs;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
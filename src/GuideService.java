@@ -2,10 +2,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * GuideService
@@ -31,10 +34,78 @@ public class GuideService {
     public static final String PAY_STATUS_FAILED = "FAILED";
     public static final String PAY_STATUS_REFUNDED = "REFUNDED";
 
-    private final Connection conn;
+    // Specialization/language search is answered from memory; see TableTextIndex
+    private static final int SEARCH_LIMIT = 200;
+    private static volatile TableTextIndex searchIndex;
 
-    public GuideService(Connection conn) {
-        this.conn = conn;
+    public GuideService() {}
+
+    static TableTextIndex searchIndex() {
+        TableTextIndex idx = searchIndex;
+        if (idx != null) return idx;
+
+        synchronized (GuideService.class) {
+            if (searchIndex == null) {
+                searchIndex = new TableTextIndex("guide",
+                        "SELECT guideid, specialization, guidelanguage FROM guides",
+                        Db.longProp(Db.config(), "search.guides.ttlMs", 60_000L));
+            }
+            return searchIndex;
+        }
+    }
+
+    // Which days each guide is booked; see GuideCalendar
+    private static volatile GuideCalendar calendar;
+
+    static GuideCalendar calendar() {
+        GuideCalendar c = calendar;
+        if (c != null) return c;
+
+        synchronized (GuideService.class) {
+            if (calendar == null) {
+                calendar = new GuideCalendar(
+                        (int) Db.longProp(Db.config(), "guides.calendar.horizonDays", 365L),
+                        Db.longProp(Db.config(), "guides.calendar.ttlMs", 30_000L));
+            }
+            return calendar;
+        }
+    }
+
+    // Browse/filter is answered from memory; see GuideIndex
+    private static volatile GuideIndex guideIndex;
+
+    static GuideIndex guideIndex() {
+        GuideIndex idx = guideIndex;
+        if (idx != null) return idx;
+
+        synchronized (GuideService.class) {
+            if (guideIndex == null) {
+                guideIndex = new GuideIndex(Db.longProp(Db.config(), "guides.index.ttlMs", 60_000L));
+            }
+            return guideIndex;
+        }
+    }
+
+    // Signed fee quotes checked at booking; see FeeQuotes
+    private static volatile FeeQuotes quotes;
+
+    static FeeQuotes quotes() {
+        FeeQuotes q = quotes;
+        if (q != null) return q;
+
+        synchronized (GuideService.class) {
+            if (quotes == null) {
+                quotes = new FeeQuotes(Db.config().getProperty("quotes.secret"),
+                        Db.longProp(Db.config(), "quotes.ttlMs", 15 * 60_000L));
+            }
+            return quotes;
+        }
+    }
+
+    /** Makes a newly written guide searchable without waiting for the next rebuild. */
+    static void indexGuide(String guideId, String specialization, String language) {
+        searchIndex().put(guideId, specialization, language);
+        guideIndex().put(new GuideService().getGuideById(guideId));
     }
 
     // -------------------- Public DTO --------------------
@@ -44,6 +115,7 @@ public class GuideService {
         private String userId;
         private String touristName;
         private String guideId;
+        private String guideName;
         private Timestamp bookingDate;
         private int tourDurationDays;
         private String tourPurpose;
@@ -57,6 +129,7 @@ public class GuideService {
         public String getUserId() { return userId; }
         public String getTouristName() { return touristName; }
         public String getGuideId() { return guideId; }
+        public String getGuideName() { return guideName; }
         public Timestamp getBookingDate() { return bookingDate; }
         public int getTourDurationDays() { return tourDurationDays; }
         public String getTourPurpose() { return tourPurpose; }
@@ -69,60 +142,59 @@ public class GuideService {
 
     // -------------------- Tourist: Guide browse/search --------------------
 
+    /** Available guides, best first (rating, then experience, then lower fee). */
     public List<Guide> getAvailableGuides() {
-        List<Guide> guides = new ArrayList<>();
-        String sql = "SELECT * FROM guides WHERE isavailable = TRUE AND status = 'ACTIVE' " +
-                     "ORDER BY rating DESC";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                guides.add(mapGuide(rs));
-            }
-        } catch (SQLException e) {
-            System.out.println("Failed to fetch guides: " + e.getMessage());
-        }
-        return guides;
+        return guideIndex().find(GuideIndex.Filter.ALL);
     }
 
     public List<Guide> searchGuidesByDivision(String division) {
-        List<Guide> guides = new ArrayList<>();
-        String sql = "SELECT * FROM guides WHERE guidedivision = ? " +
-                     "AND isavailable = TRUE AND status = 'ACTIVE' ORDER BY rating DESC";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, normalize(division));
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    guides.add(mapGuide(rs));
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Search failed: " + e.getMessage());
-        }
-        return guides;
+        return guideIndex().find(new GuideIndex.Filter(normalize(division), null, null, null));
+    }
+
+    /**
+     * Available guides matching every given attribute (null/blank = any). Languages and
+     * specialization match whole words, e.g. "english" matches "Bangla, English".
+     */
+    public List<Guide> findGuides(String division, String district, String language, String specialization) {
+        return guideIndex().find(new GuideIndex.Filter(division, district, language, specialization));
     }
 
+    /**
+     * Available guides whose specialization or languages match (typos allowed), best match
+     * first and higher rating first among equal matches.
+     */
     public List<Guide> searchGuidesBySpecialization(String specialization) {
-        List<Guide> guides = new ArrayList<>();
-        String sql = "SELECT * FROM guides WHERE specialization LIKE ? " +
-                     "AND isavailable = TRUE AND status = 'ACTIVE' ORDER BY rating DESC";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, "%" + normalize(specialization) + "%");
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    guides.add(mapGuide(rs));
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Search failed: " + e.getMessage());
-        }
+        List<TrigramIndex.Hit> hits = searchIndex().search(normalize(specialization), SEARCH_LIMIT);
+        if (hits.isEmpty()) return new ArrayList<>();
+
+        Map<String, Double> scores = new HashMap<>(hits.size() * 2);
+        for (TrigramIndex.Hit hit : hits) scores.put(hit.key(), hit.score());
+
+        List<Guide> guides = guideIndex().available(scores.keySet());
+        guides.sort((a, b) -> {
+            int byScore = Double.compare(scores.getOrDefault(b.getGuideId(), 0.0), scores.getOrDefault(a.getGuideId(), 0.0));
+            return byScore != 0 ? byScore : Double.compare(b.getRating(), a.getRating());
+        });
         return guides;
     }
 
+    /** Available guides with no tour in [start, start + days), best rated first. */
+    public List<Guide> getGuidesFreeFor(LocalDate start, int days) {
+        List<Guide> free = new ArrayList<>();
+        if (start == null || !calendar().inHorizon(start, days)) return free;
+
+        for (Guide g : getAvailableGuides()) {
+            if (calendar().isFree(g.getGuideId(), start, days)) free.add(g);
+        }
+        return free;
+    }
+
     public Guide getGuideById(String guideId) {
         if (isBlank(guideId)) return null;
 
         String sql = "SELECT * FROM guides WHERE guideid = ? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, guideId.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -135,34 +207,68 @@ public class GuideService {
         return null;
     }
 
+    // -------------------- Tourist: Fee quotes --------------------
+
+    /**
+     * The exact fee for hiring guideId for days, at the daily rate cached in {@link GuideIndex},
+     * with a signed token to book it by. Null if the guide is unknown or not taking bookings.
+     */
+    public FeeQuotes.Quote quoteFee(String guideId, int days) {
+        if (isBlank(guideId) || days <= 0) return null;
+
+        Guide g = guideIndex().byId(guideId);
+        if (g == null || !g.isAvailable() || !"ACTIVE".equalsIgnoreCase(safe(g.getStatus()))) return null;
+
+        return quotes().issue(g.getGuideId(), days, guideIndex().dailyRate(g.getGuideId()));
+    }
+
     // -------------------- Tourist: Hire guide --------------------
 
+    /** Hires a guide for a tour starting today. */
+    public boolean hireGuide(String userId, String guideId, String location, int days, String purpose) {
+        return hireGuide(userId, guideId, location, LocalDate.now(), days, purpose);
+    }
+
     /**
-     * Creates a row in guidebooking.
+     * Creates a row in guidebooking and books the guide's calendar for [start, start + days).
      * Payment is tracked inside guidebooking.paymentstatus per your schema,
      * so this method sets it to PENDING (you can later mark it COMPLETED/FAILED).
      */
-    public boolean hireGuide(String userId, String guideId, String location, int days, String purpose) {
-        if (isBlank(userId)) {
-            System.out.println("User ID required!");
-            return false;
-        }
+    public boolean hireGuide(String userId, String guideId, String location, LocalDate start, int days, String purpose) {
         if (isBlank(guideId)) {
             System.out.println("Guide ID required!");
             return false;
         }
+        Guide g = getGuideById(guideId);
+        if (g == null) {
+            System.out.println("Guide not found!");
+            return false;
+        }
+        // Fee model (non-prototype): derive from experience + rating
+        return hire(userId, g, location, start, days, purpose, dailyFee(g));
+    }
+
+    private boolean hire(String userId, Guide g, String location, LocalDate start, int days, String purpose,
+                         double dailyFee) {
+        if (isBlank(userId)) {
+            System.out.println("User ID required!");
+            return false;
+        }
         if (days <= 0) {
             System.out.println("Tour duration must be at least 1 day!");
             return false;
         }
-
-        Guide g = getGuideById(guideId);
-        if (g == null) {
-            System.out.println("Guide not found!");
+        if (start == null || !calendar().inHorizon(start, days)) {
+            System.out.println("Tours can start from today and must end within " + calendar().getHorizonDays() + " days!");
             return false;
         }
+
         if (!g.isAvailable()) {
-            System.out.println("Guide is not available right now!");
+            System.out.println("Guide is not taking bookings right now!");
+            return false;
+        }
+        if (!calendar().isFree(g.getGuideId(), start, days)) {
+            System.out.println("Guide is already booked on some of those days!");
             return false;
         }
         if (!"ACTIVE".equalsIgnoreCase(safe(g.getStatus()))) {
@@ -170,76 +276,105 @@ public class GuideService {
             return false;
         }
 
-        // Fee model (non-prototype): derive from experience + rating
-        double dailyFee = calculateDailyFee(g);
         double guideFee = dailyFee * days;
 
-        String bookingId;
-        try {
-            bookingId = IdGenerator.uniqueNumericId(conn, "guidebooking", "bookingid", 12, 60);
-        } catch (SQLException e) {
-            System.out.println("Booking ID generation failed: " + e.getMessage());
-            return false;
-        }
-
-        boolean oldAutoCommit = true;
-        try {
-            oldAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-
-            String sql = "INSERT INTO guidebooking " +
-                         "(bookingid, userid, guideid, tourdurationdays, tourpurpose, tourlocation, " +
-                         " tourstatus, guidefee, paymentstatus) " +
-                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, bookingId);
-                ps.setString(2, userId.trim());
-                ps.setString(3, guideId.trim());
-                ps.setInt(4, days);
-                ps.setString(5, nullableTrim(purpose));
-                ps.setString(6, nullableTrim(location));
-                ps.setString(7, TOUR_STATUS_PENDING);
-                ps.setDouble(8, guideFee);
-                ps.setString(9, PAY_STATUS_PENDING);
-                ps.executeUpdate();
+        try (Connection conn = Db.getConnection()) {
+            String bookingId;
+            try {
+                bookingId = IdGenerator.uniqueNumericId(conn, "guidebooking", "bookingid", 12, 60);
+            } catch (SQLException e) {
+                System.out.println("Booking ID generation failed: " + e.getMessage());
+                return false;
             }
 
-            // Optional: mark guide as unavailable when they have a pending booking
-            setGuideAvailabilityInternal(guideId, false);
+            conn.setAutoCommit(false);
+            try {
+                // Whoever takes the days first wins; the loser rolls back here
+                if (!calendar().reserve(conn, g.getGuideId(), start, days)) {
+                    conn.rollback();
+                    System.out.println("Guide is already booked on some of those days!");
+                    return false;
+                }
 
-            conn.commit();
-            System.out.println("Guide hiring request created!");
-            System.out.println("Booking ID: " + bookingId);
-            System.out.println("Estimated fee: BDT " + guideFee + " (" + days + " days @ BDT " + dailyFee + "/day)");
-            System.out.println("Tour status: " + TOUR_STATUS_PENDING + ", Payment: " + PAY_STATUS_PENDING);
-            return true;
+                String sql = "INSERT INTO guidebooking " +
+                             "(bookingid, userid, guideid, tourstartdate, tourdurationdays, tourpurpose, tourlocation, " +
+                             " tourstatus, guidefee, paymentstatus) " +
+                             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, bookingId);
+                    ps.setString(2, userId.trim());
+                    ps.setString(3, g.getGuideId());
+                    ps.setDate(4, java.sql.Date.valueOf(start));
+                    ps.setInt(5, days);
+                    ps.setString(6, nullableTrim(purpose));
+                    ps.setString(7, nullableTrim(location));
+                    ps.setString(8, TOUR_STATUS_PENDING);
+                    ps.setDouble(9, guideFee);
+                    ps.setString(10, PAY_STATUS_PENDING);
+                    ps.executeUpdate();
+                }
 
+                conn.commit();
+                calendar().applyReserved(g.getGuideId(), start, days);
+                System.out.println("Guide hiring request created!");
+                System.out.println("Booking ID: " + bookingId);
+                System.out.println("Estimated fee: BDT " + guideFee + " (" + days + " days @ BDT " + dailyFee + "/day)");
+                System.out.println("Tour status: " + TOUR_STATUS_PENDING + ", Payment: " + PAY_STATUS_PENDING);
+                return true;
+
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+                System.out.println("Hiring failed: " + e.getMessage());
+                return false;
+            }
         } catch (SQLException e) {
-            try { conn.rollback(); } catch (SQLException ignored) {}
             System.out.println("Hiring failed: " + e.getMessage());
             return false;
-        } finally {
-            try { conn.setAutoCommit(oldAutoCommit); } catch (SQLException ignored) {}
         }
     }
 
     /**
-     * NEW METHOD: Book guide with payment validation
+     * Books a guide at the fee of a quote from {@link #quoteFee}. The quote has to be for this
+     * guide and duration and not expired; its total is what is charged.
      */
     public boolean bookGuideWithPayment(String userId, String guideId, String location,
-                                        int duration, String startDate, double totalFee,
+                                        int duration, String startDate, String quoteToken,
                                         String paymentMethod, double paymentAmount) {
+        FeeQuotes.Quote quote = quotes().verify(quoteToken);
+        if (quote == null) {
+            System.out.println("Fee quote is invalid or has expired, please calculate the fee again!");
+            return false;
+        }
+        if (!quote.guideId().equals(normalize(guideId)) || quote.days() != duration) {
+            System.out.println("Fee quote does not match this booking!");
+            return false;
+        }
+
         // Validate payment amount
-        if (paymentAmount < totalFee) {
-            System.out.println("Payment amount insufficient! Required: BDT " + totalFee +
+        if (paymentAmount < quote.total()) {
+            System.out.println("Payment amount insufficient! Required: BDT " + quote.total() +
                              ", Provided: BDT " + paymentAmount);
             return false;
         }
 
-        // Use the existing hireGuide method which creates the booking
-        boolean success = hireGuide(userId, guideId, location, duration,
-                                   "Booking starting " + startDate + " via " + paymentMethod);
+        LocalDate start;
+        try {
+            start = LocalDate.parse(normalize(startDate));
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid start date: " + startDate);
+            return false;
+        }
+
+        Guide g = guideIndex().byId(quote.guideId());
+        if (g == null) g = getGuideById(quote.guideId());
+        if (g == null) {
+            System.out.println("Guide not found!");
+            return false;
+        }
+
+        boolean success = hire(userId, g, location, start, duration,
+                               "Booking starting " + startDate + " via " + paymentMethod, quote.dailyRate());
 
         if (success) {
             System.out.println("Payment processed: " + paymentMethod + " - BDT " + paymentAmount);
@@ -253,36 +388,46 @@ public class GuideService {
     // -------------------- Guide Availability --------------------
 
     /**
-     * Safer availability update:
-     * - Prevents setting available=TRUE if guide still has PENDING/CONFIRMED tours.
+     * Turns taking new bookings on or off. Days already booked stay booked either way; which
+     * days are free is tracked per day in {@link GuideCalendar}.
      */
     public boolean setGuideAvailability(String guideId, boolean isAvailable) {
         if (isBlank(guideId)) return false;
 
-        if (isAvailable && hasActiveTours(guideId)) {
-            System.out.println("Cannot set AVAILABLE while you have active tours (PENDING/CONFIRMED).");
+        try (Connection conn = Db.getConnection()) {
+            if (!setGuideAvailabilityInternal(conn, guideId, isAvailable)) return false;
+            guideIndex().setAvailable(guideId, isAvailable);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Availability update failed: " + e.getMessage());
             return false;
         }
-
-        return setGuideAvailabilityInternal(guideId, isAvailable);
     }
 
     // -------------------- Guide: View bookings --------------------
 
     public List<GuideBookingInfo> getBookingsForGuide(String guideId) {
-        List<GuideBookingInfo> list = new ArrayList<>();
-        if (isBlank(guideId)) return list;
+        return getBookingsForGuide(guideId, PageRequest.first(PageRequest.MAX_SIZE)).getItems();
+    }
+
+    /** One page of a guide's bookings, newest first (keyset on bookingdate, bookingid). */
+    public Page<GuideBookingInfo> getBookingsForGuide(String guideId, PageRequest page) {
+        Page.Builder<GuideBookingInfo> out = new Page.Builder<>(page);
+        if (isBlank(guideId)) return out.build();
 
         String sql = "SELECT gb.bookingid, gb.userid, u.username AS touristname, gb.guideid, " +
                      "       gb.bookingdate, gb.tourdurationdays, gb.tourpurpose, gb.tourlocation, " +
                      "       gb.tourstatus, gb.guidefee, gb.paymentstatus, gb.specialrequest " +
                      "FROM guidebooking gb " +
                      "LEFT JOIN users u ON gb.userid = u.userid " +
-                     "WHERE gb.guideid = ? " +
-                     "ORDER BY gb.bookingdate DESC";
+                     "WHERE gb.guideid = ? AND " + page.seekDesc("gb.bookingdate", "gb.bookingid") + " " +
+                     "ORDER BY gb.bookingdate DESC, gb.bookingid DESC LIMIT ?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, guideId.trim());
+            int i = page.bindSeek(ps, 2, page.afterTimestamp());
+            ps.setInt(i, out.fetchSize());
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     GuideBookingInfo b = new GuideBookingInfo();
@@ -298,6 +443,45 @@ public class GuideService {
                     b.guideFee = rs.getDouble("guidefee");
                     b.paymentStatus = rs.getString("paymentstatus");
                     b.specialRequest = rs.getString("specialrequest");
+                    if (!out.add(b, PageRequest.cursor(b.bookingDate, b.bookingId))) break;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to fetch guide bookings: " + e.getMessage());
+        }
+        return out.build();
+    }
+
+    // -------------------- Tourist: My guide bookings --------------------
+
+    /** A tourist's guide bookings with the guide's name, newest first. */
+    public List<GuideBookingInfo> getBookingsForTourist(String userId) {
+        List<GuideBookingInfo> list = new ArrayList<>();
+        if (isBlank(userId)) return list;
+
+        String sql = "SELECT gb.bookingid, gb.userid, gb.guideid, g.guidename, gb.bookingdate, " +
+                     "       gb.tourlocation, gb.tourdurationdays, gb.guidefee, gb.tourstatus, gb.paymentstatus " +
+                     "FROM guidebooking gb " +
+                     "LEFT JOIN guides g ON gb.guideid = g.guideid " +
+                     "WHERE gb.userid = ? " +
+                     "ORDER BY gb.bookingdate DESC";
+
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, userId.trim());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    GuideBookingInfo b = new GuideBookingInfo();
+                    b.bookingId = rs.getString("bookingid");
+                    b.userId = rs.getString("userid");
+                    b.guideId = rs.getString("guideid");
+                    b.guideName = rs.getString("guidename");
+                    b.bookingDate = rs.getTimestamp("bookingdate");
+                    b.tourLocation = rs.getString("tourlocation");
+                    b.tourDurationDays = rs.getInt("tourdurationdays");
+                    b.guideFee = rs.getDouble("guidefee");
+                    b.tourStatus = rs.getString("tourstatus");
+                    b.paymentStatus = rs.getString("paymentstatus");
                     list.add(b);
                 }
             }
@@ -307,6 +491,40 @@ public class GuideService {
         return list;
     }
 
+    public boolean cancelGuideBookingForUser(String userId, String bookingId) {
+        if (isBlank(userId) || isBlank(bookingId)) return false;
+
+        String sql = "UPDATE guidebooking SET tourstatus = 'CANCELLED', paymentstatus = 'CANCELLED' " +
+                     "WHERE bookingid = ? AND userid = ?";
+        try (Connection conn = Db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                TourSlot tour = lockTour(conn, "userid", userId, bookingId);
+                if (tour == null) {
+                    conn.rollback();
+                    return false;
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, bookingId.trim());
+                    ps.setString(2, userId.trim());
+                    ps.executeUpdate();
+                }
+                boolean freed = freeDays(conn, tour, TOUR_STATUS_CANCELLED);
+
+                conn.commit();
+                if (freed) calendar().applyReleased(tour.guideId(), tour.start(), tour.days());
+                return true;
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("Error cancelling guide booking: " + e.getMessage());
+            return false;
+        }
+    }
+
     public void displayGuideBookings(String guideId) {
         List<GuideBookingInfo> list = getBookingsForGuide(guideId);
         System.out.println("=".repeat(110));
@@ -349,51 +567,51 @@ public class GuideService {
         if (isBlank(guideId) || isBlank(bookingId) || isBlank(newStatus)) return false;
         newStatus = newStatus.trim().toUpperCase();
 
-        boolean oldAutoCommit = true;
-        try {
-            oldAutoCommit = conn.getAutoCommit();
+        try (Connection conn = Db.getConnection()) {
             conn.setAutoCommit(false);
+            try {
+                TourSlot tour = lockTour(conn, "guideid", guideId, bookingId);
+                String current = tour == null ? null : tour.status();
+                if (current == null) {
+                    conn.rollback();
+                    System.out.println("Booking not found for this guide!");
+                    return false;
+                }
 
-            String current = getCurrentTourStatusForGuide(guideId, bookingId);
-            if (current == null) {
-                conn.rollback();
-                System.out.println("Booking not found for this guide!");
-                return false;
-            }
-
-            if (!isValidTourStatusTransition(current, newStatus)) {
-                conn.rollback();
-                System.out.println("Invalid tour status transition: " + current + " -> " + newStatus);
-                return false;
-            }
-
-            String sql = "UPDATE guidebooking SET tourstatus = ? WHERE bookingid = ? AND guideid = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, newStatus);
-                ps.setString(2, bookingId.trim());
-                ps.setString(3, guideId.trim());
-                if (ps.executeUpdate() == 0) {
+                if (!isValidTourStatusTransition(current, newStatus)) {
                     conn.rollback();
-                    System.out.println("Failed to update tour status!");
+                    System.out.println("Invalid tour status transition: " + current + " -> " + newStatus);
                     return false;
                 }
-            }
 
-            // If no more active tours after complete/cancel/reject, allow guide to become available again
-            if (!hasActiveTours(guideId)) {
-                setGuideAvailabilityInternal(guideId, true);
-            }
+                String sql = "UPDATE guidebooking SET tourstatus = ? WHERE bookingid = ? AND guideid = ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, newStatus);
+                    ps.setString(2, bookingId.trim());
+                    ps.setString(3, guideId.trim());
+                    if (ps.executeUpdate() == 0) {
+                        conn.rollback();
+                        System.out.println("Failed to update tour status!");
+                        return false;
+                    }
+                }
 
-            conn.commit();
-            System.out.println("Tour status updated to: " + newStatus);
-            return true;
+                // Rejected/cancelled tours give their days back
+                boolean freed = freeDays(conn, tour, newStatus);
+
+                conn.commit();
+                if (freed) calendar().applyReleased(tour.guideId(), tour.start(), tour.days());
+                System.out.println("Tour status updated to: " + newStatus);
+                return true;
 
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+                System.out.println("Tour status update failed: " + e.getMessage());
+                return false;
+            }
         } catch (SQLException e) {
-            try { conn.rollback(); } catch (SQLException ignored) {}
             System.out.println("Tour status update failed: " + e.getMessage());
             return false;
-        } finally {
-            try { conn.setAutoCommit(oldAutoCommit); } catch (SQLException ignored) {}
         }
     }
 
@@ -410,7 +628,8 @@ public class GuideService {
         }
 
         String sql = "UPDATE guidebooking SET paymentstatus = ? WHERE bookingid = ? AND guideid = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, newPaymentStatus);
             ps.setString(2, bookingId.trim());
             ps.setString(3, guideId.trim());
@@ -432,7 +651,7 @@ public class GuideService {
             System.out.println("Guide not found!");
             return;
         }
-        double dailyFee = calculateDailyFee(guide);
+        double dailyFee = dailyFee(guide);
         System.out.println("=".repeat(60));
         System.out.println("GUIDE PROFILE");
         System.out.println("=".repeat(60));
@@ -452,7 +671,7 @@ public class GuideService {
 
     // -------------------- Internal helpers --------------------
 
-    private Guide mapGuide(ResultSet rs) throws SQLException {
+    static Guide mapGuide(ResultSet rs) throws SQLException {
         Guide guide = new Guide();
         guide.setGuideId(rs.getString("guideid"));
         guide.setGuideName(rs.getString("guidename"));
@@ -470,7 +689,7 @@ public class GuideService {
         return guide;
     }
 
-    private boolean setGuideAvailabilityInternal(String guideId, boolean isAvailable) {
+    private boolean setGuideAvailabilityInternal(Connection conn, String guideId, boolean isAvailable) throws SQLException {
         String sql = "UPDATE guides SET isavailable = ? WHERE guideid = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setBoolean(1, isAvailable);
@@ -480,38 +699,37 @@ public class GuideService {
                 System.out.println("Availability updated to: " + (isAvailable ? "AVAILABLE" : "NOT AVAILABLE"));
             }
             return ok;
-        } catch (SQLException e) {
-            System.out.println("Availability update failed: " + e.getMessage());
-            return false;
         }
     }
 
-    private boolean hasActiveTours(String guideId) {
-        String sql = "SELECT 1 FROM guidebooking WHERE guideid = ? " +
-                     "AND tourstatus IN ('PENDING', 'CONFIRMED') LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, guideId.trim());
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        } catch (SQLException e) {
-            // fail-open to avoid blocking guide usage due to a transient read error
-            return false;
-        }
-    }
+    /** A guide booking's calendar slot; start is null for bookings made before tours had dates. */
+    private record TourSlot(String guideId, String status, LocalDate start, int days) {}
 
-    private String getCurrentTourStatusForGuide(String guideId, String bookingId) throws SQLException {
-        String sql = "SELECT tourstatus FROM guidebooking WHERE bookingid = ? AND guideid = ? LIMIT 1";
+    /** Locks a booking owned by ownerId (ownerColumn is "guideid" or "userid"); null if not found. */
+    private TourSlot lockTour(Connection conn, String ownerColumn, String ownerId, String bookingId) throws SQLException {
+        String sql = "SELECT guideid, tourstatus, tourstartdate, tourdurationdays FROM guidebooking " +
+                     "WHERE bookingid = ? AND " + ownerColumn + " = ? LIMIT 1 FOR UPDATE";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, bookingId.trim());
-            ps.setString(2, guideId.trim());
+            ps.setString(2, ownerId.trim());
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("tourstatus");
-                }
+                if (!rs.next()) return null;
+                java.sql.Date start = rs.getDate("tourstartdate");
+                return new TourSlot(rs.getString("guideid"), rs.getString("tourstatus"),
+                        start == null ? null : start.toLocalDate(), rs.getInt("tourdurationdays"));
             }
         }
-        return null;
+    }
+
+    /** Frees the tour's days if it leaves PENDING/CONFIRMED for a status that no longer needs them. */
+    private boolean freeDays(Connection conn, TourSlot tour, String newStatus) throws SQLException {
+        String from = safe(tour.status()).toUpperCase();
+        boolean wasActive = from.equals(TOUR_STATUS_PENDING) || from.equals(TOUR_STATUS_CONFIRMED);
+        boolean endsActive = newStatus.equals(TOUR_STATUS_REJECTED) || newStatus.equals(TOUR_STATUS_CANCELLED);
+        if (!wasActive || !endsActive || tour.start() == null || tour.guideId() == null) return false;
+
+        calendar().release(conn, tour.guideId(), tour.start(), tour.days());
+        return true;
     }
 
     private boolean isValidTourStatusTransition(String from, String to) {
@@ -538,7 +756,7 @@ public class GuideService {
      * - Adds experience premium
      * - Adds rating premium
      */
-    private double calculateDailyFee(Guide g) {
+    static double dailyFee(Guide g) {
         double base = 2500.0;
 
         String spec = safe(g.getSpecialization()).toLowerCase();
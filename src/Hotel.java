@@ -19,6 +19,20 @@ public class Hotel {
 
     public Hotel() {}
 
+    public Hotel(Hotel other) {
+        this.hotelId = other.hotelId;
+        this.hotelName = other.hotelName;
+        this.hotelLocation = other.hotelLocation;
+        this.pricePerNight = other.pricePerNight;
+        this.rating = other.rating;
+        this.roomAvailability = other.roomAvailability;
+        this.roomCategory = other.roomCategory;
+        this.totalRooms = other.totalRooms;
+        this.features = other.features;
+        this.description = other.description;
+        this.managerId = other.managerId;
+    }
+
     public String getHotelId() { return hotelId; }
     public void setHotelId(String hotelId) { this.hotelId = hotelId; }
 
@@ -134,16 +148,23 @@ public class Hotel {
         throw new UnsupportedOperationException("Unimplemented method 'getAmenities'");
     }
 
-    public class Room {
-
-        public String getRoomType() {
-            // TODO Auto-generated method stub
-            throw new UnsupportedOperationException("Unimplemented method 'getRoomType'");
+    /** One room type of a hotel and how many of its rooms are free for a given stay. */
+    public static class Room {
+        private final String roomType;
+        private final double pricePerNight;
+        private final int totalRooms;
+        private final int availableRooms;
+
+        public Room(String roomType, double pricePerNight, int totalRooms, int availableRooms) {
+            this.roomType = roomType;
+            this.pricePerNight = pricePerNight;
+            this.totalRooms = totalRooms;
+            this.availableRooms = availableRooms;
         }
 
-        public Object getPricePerNight() {
-            // TODO Auto-generated method stub
-            throw new UnsupportedOperationException("Unimplemented method 'getPricePerNight'");
-        }
+        public String getRoomType() { return roomType; }
+        public double getPricePerNight() { return pricePerNight; }
+        public int getTotalRooms() { return totalRooms; }
+        public int getAvailableRooms() { return availableRooms; }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,343 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Read-mostly, in-memory copy of the hotels table.
+ *
+ * Readers get a {@link Snapshot} from an AtomicReference and never lock. A local write that
+ * keeps the hotel's place in rating order (rooms, price, text) swaps that one slot in place and
+ * bumps the version; only a rating change builds a new list, moving the hotel by binary search.
+ * Writes made by other app instances show up when the snapshot's TTL runs out and it is
+ * reloaded. Hotels handed to callers are copies, so nobody can edit the cached ones.
+ *
+ * Name and location are also kept in a {@link TrigramIndex} for fuzzy search; it is rebuilt
+ * with each reload and updated by patch.
+ */
+final class HotelCatalog {
+
+    /** Catalog order: rating high to low, then hotel id high to low so the order is total. */
+    static final Comparator<Hotel> BY_RATING = (a, b) -> {
+        int byRating = Double.compare(b.getRating(), a.getRating());
+        return byRating != 0 ? byRating : b.getHotelId().compareTo(a.getHotelId());
+    };
+
+    /**
+     * All hotels, in {@link #BY_RATING} order. In-place patches share the slots and id map with
+     * the snapshot they replace, so an older snapshot still held by a reader may see them too;
+     * each slot is a volatile write, so a reader sees either the old hotel or the whole new one.
+     */
+    static final class Snapshot {
+        final long version;
+        final long expiresAt;
+        final List<Hotel> byRating;
+        final Map<String, Hotel> byId;
+        private final Slots slots;
+        private final ConcurrentHashMap<String, Hotel> ids;
+
+        Snapshot(long version, long expiresAt, List<Hotel> byRating) {
+            this(version, expiresAt, new Slots(byRating), index(byRating));
+        }
+
+        private Snapshot(long version, long expiresAt, Slots slots, ConcurrentHashMap<String, Hotel> ids) {
+            this.version = version;
+            this.expiresAt = expiresAt;
+            this.slots = slots;
+            this.ids = ids;
+            this.byRating = Collections.unmodifiableList(slots);
+            this.byId = Collections.unmodifiableMap(ids);
+        }
+
+        Snapshot withExpiry(long expiresAt) {
+            return new Snapshot(version + 1, expiresAt, slots, ids);
+        }
+
+        private static ConcurrentHashMap<String, Hotel> index(List<Hotel> hotels) {
+            ConcurrentHashMap<String, Hotel> ids = new ConcurrentHashMap<>(hotels.size() * 2);
+            for (Hotel h : hotels) ids.put(h.getHotelId(), h);
+            return ids;
+        }
+    }
+
+    /** Fixed-size list whose slots can be replaced one at a time with a volatile write. */
+    private static final class Slots extends AbstractList<Hotel> implements RandomAccess {
+        private final AtomicReferenceArray<Hotel> items;
+
+        Slots(List<Hotel> hotels) {
+            items = new AtomicReferenceArray<>(hotels.toArray(new Hotel[0]));
+        }
+
+        @Override public Hotel get(int index) { return items.get(index); }
+        @Override public int size() { return items.length(); }
+
+        void replace(int index, Hotel hotel) { items.set(index, hotel); }
+    }
+
+    private static final long RETRY_AFTER_FAILURE_MS = 5_000L;
+
+    private final long ttlMs;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    /** Held while publishing a snapshot, so an in-place patch never races another write. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final TrigramIndex text = new TrigramIndex();
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    HotelCatalog(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    // -------------------- Reads --------------------
+
+    /** Copies of the hotels that pass filter, in rating order, at most limit of them. */
+    List<Hotel> find(Predicate<Hotel> filter, int limit) {
+        List<Hotel> out = new ArrayList<>();
+        Snapshot s = snapshot();
+        if (s == null) return out;
+
+        for (Hotel h : s.byRating) {
+            if (out.size() >= limit) break;
+            if (filter.test(h)) out.add(new Hotel(h));
+        }
+        return out;
+    }
+
+    /**
+     * Copies of the hotels whose name or location matches query, best match first and
+     * higher rating first among equal matches, at most limit of them.
+     */
+    List<Hotel> search(String query, int limit) {
+        List<Hotel> out = new ArrayList<>();
+        for (Ranked r : rank(query, limit)) out.add(new Hotel(r.hotel()));
+        return out;
+    }
+
+    /** One page of all hotels in catalog order, starting right after the cursor's hotel. */
+    Page<Hotel> page(PageRequest request) {
+        Page.Builder<Hotel> out = new Page.Builder<>(request);
+        Snapshot s = snapshot();
+        if (s == null) return out.build();
+
+        int from = 0;
+        if (!request.isFirst()) {
+            // The cursor's hotel may be gone or re-rated since; seeking by (rating, id) still works
+            Hotel probe = new Hotel();
+            probe.setHotelId(request.afterId());
+            probe.setRating(request.afterDouble() == null ? 0.0 : request.afterDouble());
+            int at = Collections.binarySearch(s.byRating, probe, BY_RATING);
+            from = at >= 0 ? at + 1 : -at - 1;
+        }
+        for (int i = from; i < s.byRating.size(); i++) {
+            Hotel h = s.byRating.get(i);
+            if (!out.add(new Hotel(h), PageRequest.cursor(h.getRating(), h.getHotelId()))) break;
+        }
+        return out.build();
+    }
+
+    /**
+     * One page of {@link #search} results (at most limit ranked hits in total). The ranking is
+     * recomputed per page, so the next page starts after the cursor's hotel in the new ranking,
+     * or after the last hit scoring at least the cursor's score if that hotel dropped out.
+     */
+    Page<Hotel> searchPage(String query, int limit, PageRequest request) {
+        Page.Builder<Hotel> out = new Page.Builder<>(request);
+        List<Ranked> ranked = rank(query, limit);
+
+        int from = 0;
+        if (!request.isFirst()) {
+            from = ranked.size();
+            for (int i = 0; i < ranked.size(); i++) {
+                if (ranked.get(i).hotel().getHotelId().equals(request.afterId())) {
+                    from = i + 1;
+                    break;
+                }
+            }
+            if (from == ranked.size() && request.afterDouble() != null) {
+                double after = request.afterDouble();
+                from = 0;
+                while (from < ranked.size() && ranked.get(from).score() >= after) from++;
+            }
+        }
+        for (int i = from; i < ranked.size(); i++) {
+            Ranked r = ranked.get(i);
+            if (!out.add(new Hotel(r.hotel()), PageRequest.cursor(r.score(), r.hotel().getHotelId()))) break;
+        }
+        return out.build();
+    }
+
+    private record Ranked(Hotel hotel, double score) {}
+
+    private List<Ranked> rank(String query, int limit) {
+        List<Ranked> out = new ArrayList<>();
+        Snapshot s = snapshot();
+        if (s == null) return out;
+
+        for (TrigramIndex.Hit hit : text.search(query, limit)) {
+            Hotel h = s.byId.get(hit.key());
+            if (h == null) continue; // indexed after this snapshot was taken
+            out.add(new Ranked(h, hit.score()));
+        }
+        out.sort((a, b) -> {
+            int byScore = Double.compare(b.score(), a.score());
+            return byScore != 0 ? byScore : BY_RATING.compare(a.hotel(), b.hotel());
+        });
+        return out;
+    }
+
+    Hotel byId(String hotelId) {
+        Snapshot s = snapshot();
+        if (s == null || hotelId == null) return null;
+        Hotel h = s.byId.get(hotelId.trim());
+        return h == null ? null : new Hotel(h);
+    }
+
+    // -------------------- Writes --------------------
+
+    /**
+     * Applies change once to a copy of one hotel and publishes it under a new version. The
+     * hotel keeps its slot unless its rating changed, in which case it is moved.
+     */
+    void patch(String hotelId, Consumer<Hotel> change) {
+        if (hotelId == null) return;
+        String id = hotelId.trim();
+
+        writeLock.lock();
+        try {
+            Snapshot s = current.get();
+            Hotel old = s == null ? null : s.ids.get(id);
+            if (old == null) return; // next load picks it up
+
+            Hotel changed = new Hotel(old);
+            change.accept(changed);
+
+            int at = Collections.binarySearch(s.slots, old, BY_RATING);
+            if (at >= 0 && BY_RATING.compare(old, changed) == 0) {
+                s.slots.replace(at, changed);
+                s.ids.put(id, changed);
+                current.set(new Snapshot(s.version + 1, s.expiresAt, s.slots, s.ids));
+            } else {
+                List<Hotel> hotels = new ArrayList<>(s.slots);
+                if (at >= 0) hotels.remove(at);
+                else hotels.removeIf(h -> h.getHotelId().equals(id));
+                int to = Collections.binarySearch(hotels, changed, BY_RATING);
+                hotels.add(to >= 0 ? to : -to - 1, changed);
+                current.set(new Snapshot(s.version + 1, s.expiresAt, hotels));
+            }
+            // Most patches are bookings; only a new name or location needs re-indexing
+            if (!Objects.equals(old.getHotelName(), changed.getHotelName())
+                    || !Objects.equals(old.getHotelLocation(), changed.getHotelLocation())) {
+                text.put(id, changed.getHotelName(), changed.getHotelLocation());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Marks the snapshot stale; the next read reloads it. */
+    void invalidate() {
+        writeLock.lock();
+        try {
+            Snapshot s = current.get();
+            if (s != null) current.set(s.withExpiry(0L));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    long getVersion() {
+        Snapshot s = current.get();
+        return s == null ? 0L : s.version;
+    }
+
+    long getReadCount() { return reads.sum(); }
+    long getReloadCount() { return reloads.sum(); }
+
+    // -------------------- Loading --------------------
+
+    private Snapshot snapshot() {
+        reads.increment();
+        Snapshot s = current.get();
+        if (s != null && System.currentTimeMillis() < s.expiresAt) return s;
+
+        // One thread reloads; the rest keep serving the stale snapshot if there is one
+        if (s != null) {
+            if (!reloadLock.tryLock()) return s;
+        } else {
+            reloadLock.lock();
+        }
+        try {
+            Snapshot latest = current.get();
+            if (latest != null && System.currentTimeMillis() < latest.expiresAt) return latest;
+            return reload(latest);
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private Snapshot reload(Snapshot stale) {
+        String sql = "SELECT * FROM hotels ORDER BY hotelrating DESC, hotelid DESC";
+        List<Hotel> hotels = new ArrayList<>();
+
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) hotels.add(HotelService.mapHotel(rs));
+            // Same order as patch and page() use, whatever the column collation
+            hotels.sort(BY_RATING);
+        } catch (SQLException e) {
+            System.out.println("Failed to load hotel catalog: " + e.getMessage());
+            if (stale == null) return null;
+            // Keep serving what we have and back off instead of retrying on every read
+            writeLock.lock();
+            try {
+                if (current.get() != stale) return stale;
+                Snapshot retryLater = stale.withExpiry(System.currentTimeMillis() + Math.min(ttlMs, RETRY_AFTER_FAILURE_MS));
+                current.set(retryLater);
+                return retryLater;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        reloads.increment();
+
+        Map<String, String> docs = new HashMap<>(hotels.size() * 2);
+        for (Hotel h : hotels) {
+            docs.put(h.getHotelId(), (h.getHotelName() == null ? "" : h.getHotelName()) + " "
+                    + (h.getHotelLocation() == null ? "" : h.getHotelLocation()));
+        }
+        text.replaceAll(docs);
+
+        long startVersion = stale == null ? 0L : stale.version;
+        writeLock.lock();
+        try {
+            Snapshot s = current.get();
+            long version = s == null ? 1L : s.version + 1;
+            // Patched while we were reading: our rows may predate that write, so reload again soon
+            long expiresAt = (s != null && s.version != startVersion) ? 0L : System.currentTimeMillis() + ttlMs;
+            Snapshot fresh = new Snapshot(version, expiresAt, hotels);
+            current.set(fresh);
+            return fresh;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
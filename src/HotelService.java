@@ -3,9 +3,15 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.SQLTransactionRollbackException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class HotelService {
 
@@ -20,53 +26,103 @@ public class HotelService {
     public static final String PAY_COMPLETED = "COMPLETED";
     public static final String PAY_CANCELLED = "CANCELLED";
 
-    private final Connection conn;
+    // Browse/search/lookup are served from memory; see HotelCatalog
+    private static final int BROWSE_LIMIT = 50;
+    private static final int SEARCH_LIMIT = 200;
+    private static volatile HotelCatalog catalog;
 
-    public HotelService(Connection conn) {
-        this.conn = conn;
+    public HotelService() {}
+
+    static HotelCatalog catalog() {
+        HotelCatalog c = catalog;
+        if (c != null) return c;
+
+        synchronized (HotelService.class) {
+            if (catalog == null) {
+                catalog = new HotelCatalog(Db.longProp(Db.config(), "catalog.hotels.ttlMs", 30_000L));
+            }
+            return catalog;
+        }
     }
 
-    // -------------------- Tourist: Browse/Search --------------------
+    // Date-ranged availability for hotels that list their rooms; see RoomInventory
+    private static volatile RoomInventory inventory;
 
-    public List<Hotel> searchHotelsByLocation(String location) {
-        List<Hotel> hotels = new ArrayList<>();
-        String sql = "SELECT * FROM hotels WHERE hotellocation LIKE ? ORDER BY hotelrating DESC";
+    static RoomInventory inventory() {
+        RoomInventory inv = inventory;
+        if (inv != null) return inv;
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, "%" + normalize(location) + "%");
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) hotels.add(mapHotel(rs));
+        synchronized (HotelService.class) {
+            if (inventory == null) {
+                inventory = new RoomInventory(
+                        (int) Db.longProp(Db.config(), "inventory.horizonDays", 365L),
+                        Db.longProp(Db.config(), "inventory.ttlMs", 30_000L));
             }
-        } catch (SQLException e) {
-            System.out.println("Search failed: " + e.getMessage());
+            return inventory;
         }
-        return hotels;
     }
 
-    public List<Hotel> getAllHotels() {
-        List<Hotel> hotels = new ArrayList<>();
-        String sql = "SELECT * FROM hotels ORDER BY hotelrating DESC LIMIT 50";
+    private static volatile RoomHolds holds;
 
-        try (Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) hotels.add(mapHotel(rs));
-        } catch (SQLException e) {
-            System.out.println("Failed to fetch hotels: " + e.getMessage());
+    static RoomHolds holds() {
+        RoomHolds h = holds;
+        if (h != null) return h;
+
+        synchronized (HotelService.class) {
+            if (holds == null) {
+                holds = new RoomHolds(Db.longProp(Db.config(), "holds.ttlMs", 10L * 60L * 1000L));
+            }
+            return holds;
         }
-        return hotels;
+    }
+
+    /** Drops the cached hotel catalog, e.g. after a write made outside HotelService. */
+    public static void invalidateCatalog() {
+        catalog().invalidate();
+    }
+
+    /** Catalog reads vs. database reloads since start. */
+    public static void printCatalogStats() {
+        HotelCatalog c = catalog();
+        System.out.println("Hotel catalog: reads=" + c.getReadCount() + ", reloads=" + c.getReloadCount()
+                + ", version=" + c.getVersion());
+    }
+
+    // -------------------- Tourist: Browse/Search --------------------
+
+    /** Fuzzy match on hotel location and name (typos allowed), best match first. */
+    public List<Hotel> searchHotelsByLocation(String location) {
+        if (isBlank(location)) return catalog().find(h -> true, Integer.MAX_VALUE);
+        return catalog().search(normalize(location), SEARCH_LIMIT);
+    }
+
+    /** One page of search results; a blank query pages through all hotels by rating. */
+    public Page<Hotel> searchHotelsByLocation(String location, PageRequest page) {
+        if (isBlank(location)) return catalog().page(page);
+        return catalog().searchPage(normalize(location), SEARCH_LIMIT, page);
+    }
+
+    public List<Hotel> getAllHotels() {
+        return getAllHotels(PageRequest.first(BROWSE_LIMIT)).getItems();
+    }
+
+    /** One page of all hotels, highest rated first. */
+    public Page<Hotel> getAllHotels(PageRequest page) {
+        return catalog().page(page);
     }
 
     public Hotel getHotelById(String hotelId) {
         if (isBlank(hotelId)) return null;
+        return catalog().byId(hotelId);
+    }
 
+    private Hotel getHotelById(Connection conn, String hotelId) throws SQLException {
         String sql = "SELECT * FROM hotels WHERE hotelid = ? LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, hotelId.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return mapHotel(rs);
             }
-        } catch (SQLException e) {
-            System.out.println("Hotel fetch failed: " + e.getMessage());
         }
         return null;
     }
@@ -77,7 +133,8 @@ public class HotelService {
         if (isBlank(managerId)) return null;
 
         String sql = "SELECT * FROM hotels WHERE managerid = ? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, managerId.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return mapHotel(rs);
@@ -98,10 +155,19 @@ public class HotelService {
     }
 
     // -------------------- Booking + Payment (Tourist) --------------------
+
+    // Deadlocks / lock wait timeouts (SQLState class 40) are retried this many times in total
+    private static final int BOOKING_ATTEMPTS = 3;
+
     /**
      * Rules implemented:
      * - If paidAmount < totalPrice: create payment as CANCELLED, do NOT create booking
      * - If paidAmount >= totalPrice: create payment COMPLETED, create booking COMPLETED, reduce rooms
+     *
+     * Rooms are taken with one guarded UPDATE (see reserveRooms) in the same transaction as the
+     * payment and booking rows, so concurrent bookings can never oversell. Hotels that list
+     * their rooms book per night instead (see RoomInventory); the cheapest type with enough
+     * free rooms for the whole stay is used.
      */
     public boolean bookHotelWithPayment(
             String userId,
@@ -112,20 +178,179 @@ public class HotelService {
             double totalPrice,
             String paymentMethod,
             double paidAmount
+    ) {
+        return bookHotelWithPayment(userId, hotelId, checkIn, checkOut, numRooms, totalPrice,
+                paymentMethod, paidAmount, null);
+    }
+
+    /** As above, for a specific room type (null = cheapest type that fits). */
+    public boolean bookHotelWithPayment(
+            String userId,
+            String hotelId,
+            String checkIn,
+            String checkOut,
+            int numRooms,
+            double totalPrice,
+            String paymentMethod,
+            double paidAmount,
+            String roomType
     ) {
         if (isBlank(userId)) { System.out.println("Login required to book a hotel!"); return false; }
         if (isBlank(hotelId)) { System.out.println("Hotel ID is required!"); return false; }
         if (numRooms <= 0) { System.out.println("Number of rooms must be at least 1!"); return false; }
         if (totalPrice <= 0) { System.out.println("Total price must be > 0!"); return false; }
 
-        Hotel hotel = getHotelById(hotelId);
-        if (hotel == null) { System.out.println("Hotel not found!"); return false; }
+        Date[] stay = parseStay(checkIn, checkOut);
+        if (stay == null) return false;
+
+        // Loads the room calendar on its own connection, so do it before leasing ours
+        RoomChoice choice = chooseRooms(hotelId, roomType, stay[0], stay[1], numRooms);
+        if (choice == null) return false;
 
-        if (hotel.getRoomAvailability() < numRooms) {
-            System.out.println("Not enough rooms available! Available: " + hotel.getRoomAvailability());
+        return book(userId.trim(), hotelId, choice.roomType(), stay[0], stay[1], numRooms,
+                totalPrice, paymentMethod, paidAmount, null);
+    }
+
+    /** Shared by direct and held bookings: one leased connection, retried on deadlock. */
+    private boolean book(String userId, String hotelId, String roomType, Date ci, Date co, int numRooms,
+                         double totalPrice, String paymentMethod, double paidAmount, RoomHolds.Hold hold) {
+        // One leased connection for the whole unit of work (read + payment + booking + rooms)
+        try (Connection conn = Db.getConnection()) {
+            Hotel hotel = getHotelById(conn, hotelId);
+            if (hotel == null) { System.out.println("Hotel not found!"); return false; }
+
+            // Cheap early exit only; the guarded UPDATE in bookOnce is what actually decides
+            if (hold == null && roomType == null && hotel.getRoomAvailability() < numRooms) {
+                System.out.println("Not enough rooms available! Available: " + hotel.getRoomAvailability());
+                return false;
+            }
+
+            conn.setAutoCommit(false);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return bookOnce(conn, userId, hotel, roomType, ci, co, numRooms, totalPrice, paymentMethod, paidAmount, hold);
+                } catch (SQLException e) {
+                    try { conn.rollback(); } catch (SQLException ignored) {}
+                    if (attempt < BOOKING_ATTEMPTS && isRetryable(e)) continue;
+                    System.out.println("Booking/payment failed: " + e.getMessage());
+                    return false;
+                } catch (Exception e) {
+                    try { conn.rollback(); } catch (SQLException ignored) {}
+                    System.out.println("Booking/payment failed: " + e.getMessage());
+                    return false;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Booking/payment failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * One attempt at the booking transaction; commits or rolls back before returning normally.
+     * The rooms come from hold if given, otherwise from the hotel's single room counter
+     * (roomType null) or its room calendar.
+     */
+    private boolean bookOnce(Connection conn, String userId, Hotel hotel, String roomType, Date ci, Date co,
+                             int numRooms, double totalPrice, String paymentMethod, double paidAmount,
+                             RoomHolds.Hold hold) throws Exception {
+        boolean fullyPaid = paidAmount >= totalPrice;
+        String paymentStatus = fullyPaid ? PAY_COMPLETED : PAY_CANCELLED;
+
+        // Take the rooms first: it locks the rows and fails fast before anything is inserted
+        if (fullyPaid && hold != null && !holds().consume(conn, hold)) {
+            conn.rollback();
+            System.out.println("Your room hold has expired. Please check availability again.");
+            return false;
+        }
+        if (fullyPaid && hold == null && !(roomType == null
+                ? reserveRooms(conn, hotel.getHotelId(), numRooms)
+                : inventory().reserve(conn, hotel.getHotelId(), roomType, ci.toLocalDate(), co.toLocalDate(), numRooms))) {
+            conn.rollback();
+            System.out.println("Not enough rooms available! Someone else just booked them.");
+            return false;
+        }
+
+        String paymentId = createPayment(
+                conn,
+                totalPrice,
+                paymentMethod,
+                "Hotel booking: " + hotel.getHotelName(),
+                paymentStatus
+        );
+
+        if (paymentId == null) {
+            conn.rollback();
+            System.out.println("Payment record creation failed!");
             return false;
         }
 
+        if (!fullyPaid) {
+            conn.commit();
+            System.out.println("Payment not completed. Payment saved as CANCELLED. Booking not created.");
+            System.out.println("Payment ID: " + paymentId);
+            return false;
+        }
+
+        String bookingId = createHotelBooking(
+                conn,
+                userId,
+                ci,
+                co,
+                totalPrice,
+                BOOKING_COMPLETED,
+                paymentId,
+                hotel,
+                numRooms,
+                roomType
+        );
+
+        if (bookingId == null) {
+            conn.rollback();
+            System.out.println("Booking insert failed!");
+            return false;
+        }
+
+        conn.commit();
+        if (hold != null) {
+            holds().forget(hold); // rooms were already taken from the caches when the hold was placed
+        } else if (roomType == null) {
+            catalog().patch(hotel.getHotelId(), h -> h.setRoomAvailability(clampRooms(h, h.getRoomAvailability() - numRooms)));
+        } else {
+            inventory().applyReserved(hotel.getHotelId(), roomType, ci.toLocalDate(), co.toLocalDate(), numRooms);
+        }
+        if (roomType != null) System.out.println("Room type: " + roomType);
+        System.out.println("Hotel booking saved!");
+        System.out.println("Booking ID: " + bookingId);
+        System.out.println("Payment ID: " + paymentId);
+        System.out.println("Payment Status: " + paymentStatus);
+        System.out.println("Booking Status: " + BOOKING_COMPLETED);
+        return true;
+    }
+
+    /** What a stay books from: roomType null means the hotel's single room counter. */
+    private record RoomChoice(String roomType) {}
+
+    /** Picks the room type for a stay; prints why and returns null when nothing fits. */
+    private static RoomChoice chooseRooms(String hotelId, String roomType, Date ci, Date co, int numRooms) {
+        RoomInventory inv = inventory();
+        if (!inv.isManaged(hotelId)) return new RoomChoice(null);
+
+        if (!inv.inHorizon(ci.toLocalDate(), co.toLocalDate())) {
+            System.out.println("Bookings are open from today up to " + inv.getHorizonDays() + " days ahead.");
+            return null;
+        }
+        String type = inv.pickType(hotelId, isBlank(roomType) ? null : roomType.trim(),
+                ci.toLocalDate(), co.toLocalDate(), numRooms);
+        if (type == null) {
+            System.out.println("Not enough rooms available for those dates!");
+            return null;
+        }
+        return new RoomChoice(type);
+    }
+
+    /** [check-in, check-out] from YYYY-MM-DD strings; prints why and returns null if invalid. */
+    private static Date[] parseStay(String checkIn, String checkOut) {
         Date ci;
         Date co;
         try {
@@ -133,78 +358,104 @@ public class HotelService {
             co = Date.valueOf(checkOut);
         } catch (IllegalArgumentException e) {
             System.out.println("Invalid date format (use YYYY-MM-DD).");
-            return false;
+            return null;
         }
 
         if (!co.after(ci)) {
             System.out.println("Check-out date must be after check-in date!");
-            return false;
+            return null;
         }
+        return new Date[] { ci, co };
+    }
 
-        boolean oldAutoCommit = true;
-        try {
-            oldAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
+    // -------------------- Room holds (checkout) --------------------
 
-            boolean fullyPaid = paidAmount >= totalPrice;
-            String paymentStatus = fullyPaid ? PAY_COMPLETED : PAY_CANCELLED;
+    /**
+     * Holds numRooms for the stay while the tourist pays; they expire on their own after
+     * holds.ttlMs (default 10 minutes). Returns the hold token, or null if the rooms are gone.
+     */
+    public String placeRoomHold(String userId, String hotelId, String checkIn, String checkOut, int numRooms) {
+        return placeRoomHold(userId, hotelId, checkIn, checkOut, numRooms, null);
+    }
 
-            String paymentId = createPayment(
-                    totalPrice,
-                    paymentMethod,
-                    "Hotel booking: " + hotel.getHotelName(),
-                    paymentStatus
-            );
+    public String placeRoomHold(String userId, String hotelId, String checkIn, String checkOut,
+                                int numRooms, String roomType) {
+        if (isBlank(userId)) { System.out.println("Login required to book a hotel!"); return null; }
+        if (isBlank(hotelId)) { System.out.println("Hotel ID is required!"); return null; }
+        if (numRooms <= 0) { System.out.println("Number of rooms must be at least 1!"); return null; }
 
-            if (paymentId == null) {
-                conn.rollback();
-                System.out.println("Payment record creation failed!");
-                return false;
-            }
+        Date[] stay = parseStay(checkIn, checkOut);
+        if (stay == null) return null;
 
-            if (!fullyPaid) {
-                conn.commit();
-                System.out.println("Payment not completed. Payment saved as CANCELLED. Booking not created.");
-                System.out.println("Payment ID: " + paymentId);
-                return false;
-            }
+        RoomChoice choice = chooseRooms(hotelId, roomType, stay[0], stay[1], numRooms);
+        if (choice == null) return null;
 
-            String bookingId = createHotelBooking(
-                    userId.trim(),
-                    ci,
-                    co,
-                    totalPrice,
-                    BOOKING_COMPLETED,
-                    paymentId,
-                    hotel.getHotelName(),
-                    hotel.getHotelLocation(),
-                    numRooms
-            );
-
-            if (bookingId == null) {
-                conn.rollback();
-                System.out.println("Booking insert failed!");
-                return false;
+        try {
+            RoomHolds.Hold hold = holds().place(userId.trim(), hotelId.trim(), choice.roomType(),
+                    stay[0].toLocalDate(), stay[1].toLocalDate(), numRooms);
+            if (hold == null) {
+                System.out.println("Not enough rooms available for those dates!");
+                return null;
             }
+            return hold.token();
+        } catch (SQLException e) {
+            System.out.println("Room hold failed: " + e.getMessage());
+            return null;
+        }
+    }
 
-            int newAvail = hotel.getRoomAvailability() - numRooms;
-            updateRoomAvailability(hotel.getHotelId(), newAvail);
+    /** Gives held rooms back early, e.g. when the tourist changes their selection. */
+    public boolean releaseRoomHold(String holdToken) {
+        RoomHolds.Hold hold = holds().get(holdToken);
+        return hold != null && holds().release(hold);
+    }
 
-            conn.commit();
-            System.out.println("Hotel booking saved!");
-            System.out.println("Booking ID: " + bookingId);
-            System.out.println("Payment ID: " + paymentId);
-            System.out.println("Payment Status: " + paymentStatus);
-            System.out.println("Booking Status: " + BOOKING_COMPLETED);
-            return true;
+    /** Books exactly what the hold covers; the hold is used up only if the booking commits. */
+    public boolean bookHeldRooms(String userId, String holdToken, double totalPrice,
+                                 String paymentMethod, double paidAmount) {
+        if (isBlank(userId)) { System.out.println("Login required to book a hotel!"); return false; }
+        if (totalPrice <= 0) { System.out.println("Total price must be > 0!"); return false; }
 
-        } catch (Exception e) {
-            try { conn.rollback(); } catch (SQLException ignored) {}
-            System.out.println("Booking/payment failed: " + e.getMessage());
+        RoomHolds.Hold hold = holds().get(holdToken);
+        if (hold == null) {
+            System.out.println("Your room hold has expired. Please check availability again.");
             return false;
-        } finally {
-            try { conn.setAutoCommit(oldAutoCommit); } catch (SQLException ignored) {}
         }
+        if (!hold.userId().equals(userId.trim())) {
+            System.out.println("Permission denied: this hold belongs to another user.");
+            return false;
+        }
+
+        return book(hold.userId(), hold.hotelId(), hold.roomType(),
+                Date.valueOf(hold.checkIn()), Date.valueOf(hold.checkOut()), hold.numRooms(),
+                totalPrice, paymentMethod, paidAmount, hold);
+    }
+
+    /** Takes numRooms in a single guarded decrement; false if fewer are left. */
+    static boolean reserveRooms(Connection conn, String hotelId, int numRooms) throws SQLException {
+        String sql = "UPDATE hotels SET roomavailability = roomavailability - ? " +
+                     "WHERE hotelid = ? AND roomavailability >= ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, numRooms);
+            ps.setString(2, hotelId.trim());
+            ps.setInt(3, numRooms);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    /** Gives numRooms back to the hotel's single room counter. */
+    static void releaseRooms(Connection conn, String hotelId, int numRooms) throws SQLException {
+        String sql = "UPDATE hotels SET roomavailability = roomavailability + ? WHERE hotelid = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, numRooms);
+            ps.setString(2, hotelId.trim());
+            ps.executeUpdate();
+        }
+    }
+
+    private static boolean isRetryable(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransactionRollbackException || (state != null && state.startsWith("40"));
     }
 
     // -------------------- Tourist: View bookings --------------------
@@ -224,7 +475,8 @@ public class HotelService {
         System.out.println("=".repeat(90));
 
         boolean foundAny = false;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, userId.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 System.out.printf("%-12s | %-22s | %-14s | %-5s | %-10s | %-10s | %-12s%n",
@@ -276,7 +528,7 @@ public class HotelService {
                 "b.totalprice, b.bookingstatus, b.paymentid, b.bookingdate " +
                 "FROM booking b " +
                 "LEFT JOIN users u ON b.userid = u.userid " +
-                "WHERE b.hotelname = ? AND b.hotellocation = ? " +
+                "WHERE b.hotelid = ? " +
                 "ORDER BY b.bookingdate DESC";
 
         System.out.println("=".repeat(120));
@@ -284,9 +536,9 @@ public class HotelService {
         System.out.println("=".repeat(120));
 
         boolean foundAny = false;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, h.getHotelName());
-            ps.setString(2, h.getHotelLocation());
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, h.getHotelId());
             try (ResultSet rs = ps.executeQuery()) {
 
                 System.out.printf("%-3s | %-12s | %-18s | %-10s | %-10s | %-5s | %-10s | %-10s | %-12s%n",
@@ -338,13 +590,13 @@ public class HotelService {
 
         String sql =
                 "UPDATE booking SET bookingstatus = ? " +
-                "WHERE bookingid = ? AND hotelname = ? AND hotellocation = ?";
+                "WHERE bookingid = ? AND hotelid = ?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, newStatus);
             ps.setString(2, bookingId.trim());
-            ps.setString(3, h.getHotelName());
-            ps.setString(4, h.getHotelLocation());
+            ps.setString(3, h.getHotelId());
             boolean ok = ps.executeUpdate() > 0;
             if (ok) System.out.println("Booking status updated to " + newStatus);
             else System.out.println("Booking not found for your hotel (or update failed).");
@@ -390,11 +642,22 @@ public class HotelService {
     public boolean updateRoomAvailability(String hotelId, int newAvailability) {
         if (isBlank(hotelId)) return false;
 
-        Hotel h = getHotelById(hotelId);
-        if (h == null) return false;
+        try (Connection conn = Db.getConnection()) {
+            Hotel h = getHotelById(conn, hotelId);
+            if (h == null) return false;
+            if (!updateRoomAvailability(conn, h, newAvailability)) return false;
 
-        int max = h.getTotalRooms() > 0 ? h.getTotalRooms() : Integer.MAX_VALUE;
-        int clamped = Math.max(0, Math.min(newAvailability, max));
+            int clamped = clampRooms(h, newAvailability);
+            catalog().patch(h.getHotelId(), c -> c.setRoomAvailability(clamped));
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Update failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean updateRoomAvailability(Connection conn, Hotel h, int newAvailability) throws SQLException {
+        int clamped = clampRooms(h, newAvailability);
         if (clamped != newAvailability) {
             System.out.println("Room availability adjusted to valid range: " + clamped);
         }
@@ -402,11 +665,8 @@ public class HotelService {
         String sql = "UPDATE hotels SET roomavailability = ? WHERE hotelid = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, clamped);
-            ps.setString(2, hotelId.trim());
+            ps.setString(2, h.getHotelId().trim());
             return ps.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.out.println("Update failed: " + e.getMessage());
-            return false;
         }
     }
 
@@ -418,11 +678,15 @@ public class HotelService {
         }
 
         String sql = "UPDATE hotels SET hotelpricepernight = ? WHERE hotelid = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setDouble(1, newPrice);
             ps.setString(2, hotelId.trim());
             boolean ok = ps.executeUpdate() > 0;
-            if (ok) System.out.println("Price updated to BDT " + newPrice);
+            if (ok) {
+                catalog().patch(hotelId, h -> h.setPricePerNight(newPrice));
+                System.out.println("Price updated to BDT " + newPrice);
+            }
             return ok;
         } catch (SQLException e) {
             System.out.println("Update failed: " + e.getMessage());
@@ -437,7 +701,8 @@ public class HotelService {
         if (isBlank(hotelId)) return menu;
 
         String sql = "SELECT foodname, foodprice, fooddescription FROM foodmenu WHERE hotelid = ? AND isavailable = TRUE";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, hotelId.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -467,7 +732,8 @@ public class HotelService {
         System.out.println("FOOD MENU (" + h.getHotelName() + ")");
         System.out.println("=".repeat(80));
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, h.getHotelId());
             try (ResultSet rs = ps.executeQuery()) {
                 System.out.printf("%-10s | %-22s | %-12s | %-10s | %-10s%n",
@@ -501,7 +767,7 @@ public class HotelService {
         if (h == null) { System.out.println("No hotel found for this manager!"); return false; }
         if (isBlank(foodName) || price <= 0) { System.out.println("Food name + valid price required!"); return false; }
 
-        try {
+        try (Connection conn = Db.getConnection()) {
             String menuId = IdGenerator.uniqueNumericId(conn, "foodmenu", "menuid", 12, 60);
             String sql = "INSERT INTO foodmenu (menuid, hotelid, foodname, foodcategory, foodprice, fooddescription, isavailable) " +
                          "VALUES (?, ?, ?, ?, ?, ?, ?)";
@@ -535,7 +801,8 @@ public class HotelService {
         String sql = "UPDATE foodmenu SET foodname=?, foodcategory=?, foodprice=?, fooddescription=?, isavailable=? " +
                      "WHERE menuid=? AND hotelid=?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, foodName.trim());
             ps.setString(2, isBlank(category) ? "General" : category.trim());
             ps.setDouble(3, price);
@@ -560,7 +827,8 @@ public class HotelService {
         if (isBlank(menuId)) return false;
 
         String sql = "DELETE FROM foodmenu WHERE menuid=? AND hotelid=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, menuId.trim());
             ps.setString(2, h.getHotelId());
 
@@ -607,7 +875,7 @@ public class HotelService {
 
     // ===================== Internal helpers =====================
 
-    private String createPayment(double amount, String method, String description, String status) throws SQLException {
+    private String createPayment(Connection conn, double amount, String method, String description, String status) throws SQLException {
         String paymentId = IdGenerator.uniqueNumericId(conn, "payment", "paymentid", 12, 60);
 
         String transactionId = "TXN" + System.currentTimeMillis() + "-" +
@@ -633,15 +901,16 @@ public class HotelService {
     }
 
     private String createHotelBooking(
+            Connection conn,
             String userId,
             Date checkIn,
             Date checkOut,
             double totalPrice,
             String bookingStatus,
             String paymentId,
-            String hotelName,
-            String hotelLocation,
-            int rooms
+            Hotel hotel,
+            int rooms,
+            String roomType
     ) throws SQLException {
 
         String bookingId = IdGenerator.uniqueNumericId(conn, "booking", "bookingid", 12, 60);
@@ -649,8 +918,8 @@ public class HotelService {
         String sql =
                 "INSERT INTO booking " +
                 "(bookingid, userid, checkindate, checkoutdate, totalprice, bookingstatus, paymentid, " +
-                "hotelname, hotellocation, numberofrooms) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                "hotelid, hotelname, hotellocation, numberofrooms, roomtype) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, bookingId);
@@ -660,9 +929,11 @@ public class HotelService {
             ps.setDouble(5, totalPrice);
             ps.setString(6, bookingStatus);
             ps.setString(7, paymentId);
-            ps.setString(8, hotelName);
-            ps.setString(9, hotelLocation);
-            ps.setInt(10, rooms);
+            ps.setString(8, hotel.getHotelId());
+            ps.setString(9, hotel.getHotelName());
+            ps.setString(10, hotel.getHotelLocation());
+            ps.setInt(11, rooms);
+            ps.setString(12, roomType);
 
             int rows = ps.executeUpdate();
             return rows > 0 ? bookingId : null;
@@ -672,7 +943,7 @@ public class HotelService {
     /**
      * Cancellation core:
      * - If userId is non-null => must match booking.userid
-     * - If managerHotel is non-null => must match booking.hotelname+hotellocation
+     * - If managerHotel is non-null => must match booking.hotelid
      * - Always sets bookingstatus=CANCELLED
      * - Always sets paymentstatus=CANCELLED (only 2 statuses)
      * - Restores rooms if old booking reserved rooms (COMPLETED/CONFIRMED)
@@ -683,105 +954,113 @@ public class HotelService {
             return false;
         }
 
-        boolean oldAutoCommit = true;
-        try {
-            oldAutoCommit = conn.getAutoCommit();
+        try (Connection conn = Db.getConnection()) {
             conn.setAutoCommit(false);
-
-            String readSql =
-                    "SELECT bookingstatus, paymentid, hotelname, hotellocation, numberofrooms, userid " +
-                    "FROM booking WHERE bookingid = ? LIMIT 1";
-
-            String bookingStatus;
-            String paymentId;
-            String hotelName;
-            String hotelLocation;
-            int rooms;
-            String bookedUserId;
-
-            try (PreparedStatement ps = conn.prepareStatement(readSql)) {
-                ps.setString(1, bookingId.trim());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        conn.rollback();
-                        System.out.println("Booking not found!");
-                        return false;
+            try {
+                String readSql =
+                        "SELECT bookingstatus, paymentid, hotelid, numberofrooms, userid, " +
+                        "checkindate, checkoutdate, roomtype " +
+                        "FROM booking WHERE bookingid = ? LIMIT 1";
+
+                String bookingStatus;
+                String paymentId;
+                String bookedHotelId;
+                int rooms;
+                String bookedUserId;
+                Date checkIn;
+                Date checkOut;
+                String roomType;
+
+                try (PreparedStatement ps = conn.prepareStatement(readSql)) {
+                    ps.setString(1, bookingId.trim());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            System.out.println("Booking not found!");
+                            return false;
+                        }
+
+                        bookingStatus = rs.getString("bookingstatus");
+                        paymentId = rs.getString("paymentid");
+                        bookedHotelId = rs.getString("hotelid");
+                        rooms = rs.getInt("numberofrooms");
+                        bookedUserId = rs.getString("userid");
+                        checkIn = rs.getDate("checkindate");
+                        checkOut = rs.getDate("checkoutdate");
+                        roomType = rs.getString("roomtype");
                     }
-
-                    bookingStatus = rs.getString("bookingstatus");
-                    paymentId = rs.getString("paymentid");
-                    hotelName = rs.getString("hotelname");
-                    hotelLocation = rs.getString("hotellocation");
-                    rooms = rs.getInt("numberofrooms");
-                    bookedUserId = rs.getString("userid");
                 }
-            }
 
-            if (userId != null && !safe(userId).equals(safe(bookedUserId))) {
-                conn.rollback();
-                System.out.println("Permission denied: booking does not belong to this user.");
-                return false;
-            }
-
-            if (managerHotel != null) {
-                if (!safe(managerHotel.getHotelName()).equals(safe(hotelName)) ||
-                    !safe(managerHotel.getHotelLocation()).equals(safe(hotelLocation))) {
+                if (userId != null && !safe(userId).equals(safe(bookedUserId))) {
                     conn.rollback();
-                    System.out.println("Permission denied: booking does not belong to your hotel.");
+                    System.out.println("Permission denied: booking does not belong to this user.");
                     return false;
                 }
-            }
 
-            if (BOOKING_CANCELLED.equalsIgnoreCase(bookingStatus)) {
-                conn.rollback();
-                System.out.println("Booking already cancelled!");
-                return false;
-            }
+                if (managerHotel != null) {
+                    if (!safe(managerHotel.getHotelId()).equals(safe(bookedHotelId))) {
+                        conn.rollback();
+                        System.out.println("Permission denied: booking does not belong to your hotel.");
+                        return false;
+                    }
+                }
 
-            // 1) Cancel booking
-            String cancelSql = "UPDATE booking SET bookingstatus = ? WHERE bookingid = ?";
-            try (PreparedStatement ps = conn.prepareStatement(cancelSql)) {
-                ps.setString(1, BOOKING_CANCELLED);
-                ps.setString(2, bookingId.trim());
-                if (ps.executeUpdate() <= 0) {
+                if (BOOKING_CANCELLED.equalsIgnoreCase(bookingStatus)) {
                     conn.rollback();
-                    System.out.println("Failed to cancel booking!");
+                    System.out.println("Booking already cancelled!");
                     return false;
                 }
-            }
 
-            // 2) Payment -> CANCELLED
-            if (!isBlank(paymentId)) {
-                String cancelPaySql = "UPDATE payment SET paymentstatus = 'CANCELLED' WHERE paymentid = ?";
-                try (PreparedStatement ps = conn.prepareStatement(cancelPaySql)) {
-                    ps.setString(1, paymentId.trim());
-                    ps.executeUpdate();
+                // 1) Cancel booking
+                // Guarded on the status we read, so two concurrent cancels cannot both restore rooms
+                String cancelSql = "UPDATE booking SET bookingstatus = ? WHERE bookingid = ? AND bookingstatus <=> ?";
+                try (PreparedStatement ps = conn.prepareStatement(cancelSql)) {
+                    ps.setString(1, BOOKING_CANCELLED);
+                    ps.setString(2, bookingId.trim());
+                    ps.setString(3, bookingStatus);
+                    if (ps.executeUpdate() <= 0) {
+                        conn.rollback();
+                        System.out.println("Failed to cancel booking!");
+                        return false;
+                    }
                 }
-            }
 
-            // 3) Restore rooms if old booking reserved rooms
-            if (rooms > 0 && (BOOKING_COMPLETED.equalsIgnoreCase(bookingStatus) || BOOKING_CONFIRMED.equalsIgnoreCase(bookingStatus))) {
-                String restoreSql =
-                        "UPDATE hotels SET roomavailability = roomavailability + ? " +
-                        "WHERE hotelname = ? AND hotellocation = ?";
-                try (PreparedStatement ps = conn.prepareStatement(restoreSql)) {
-                    ps.setInt(1, rooms);
-                    ps.setString(2, hotelName);
-                    ps.setString(3, hotelLocation);
-                    ps.executeUpdate();
+                // 2) Payment -> CANCELLED
+                if (!isBlank(paymentId)) {
+                    String cancelPaySql = "UPDATE payment SET paymentstatus = 'CANCELLED' WHERE paymentid = ?";
+                    try (PreparedStatement ps = conn.prepareStatement(cancelPaySql)) {
+                        ps.setString(1, paymentId.trim());
+                        ps.executeUpdate();
+                    }
                 }
-            }
 
-            conn.commit();
-            System.out.println("Booking cancelled successfully!");
-            return true;
+                // 3) Restore rooms if old booking reserved rooms
+                boolean heldRooms = rooms > 0 && bookedHotelId != null &&
+                        (BOOKING_COMPLETED.equalsIgnoreCase(bookingStatus) || BOOKING_CONFIRMED.equalsIgnoreCase(bookingStatus));
+                boolean perNight = heldRooms && roomType != null && checkIn != null && checkOut != null;
+                if (perNight) {
+                    inventory().release(conn, bookedHotelId, roomType, checkIn.toLocalDate(), checkOut.toLocalDate(), rooms);
+                } else if (heldRooms) {
+                    releaseRooms(conn, bookedHotelId, rooms);
+                }
 
+                conn.commit();
+                if (perNight) {
+                    inventory().applyReleased(bookedHotelId, roomType, checkIn.toLocalDate(), checkOut.toLocalDate(), rooms);
+                } else if (heldRooms) {
+                    catalog().patch(bookedHotelId, h -> h.setRoomAvailability(clampRooms(h, h.getRoomAvailability() + rooms)));
+                }
+                System.out.println("Booking cancelled successfully!");
+                return true;
+
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+                System.out.println("Cancel failed: " + e.getMessage());
+                return false;
+            }
         } catch (SQLException e) {
-            try { conn.rollback(); } catch (SQLException ignored) {}
             System.out.println("Cancel failed: " + e.getMessage());
             return false;
-        } finally {
-            try { conn.setAutoCommit(oldAutoCommit); } catch (SQLException ignored) {}
         }
     }
 
@@ -794,7 +1073,7 @@ public class HotelService {
                BOOKING_CANCELLED.equals(s);
     }
 
-    private Hotel mapHotel(ResultSet rs) throws SQLException {
+    static Hotel mapHotel(ResultSet rs) throws SQLException {
         Hotel hotel = new Hotel();
         hotel.setHotelId(rs.getString("hotelid"));
         hotel.setHotelName(rs.getString("hotelname"));
@@ -810,6 +1089,11 @@ public class HotelService {
         return hotel;
     }
 
+    private static int clampRooms(Hotel h, int rooms) {
+        int max = h.getTotalRooms() > 0 ? h.getTotalRooms() : Integer.MAX_VALUE;
+        return Math.max(0, Math.min(rooms, max));
+    }
+
     private static boolean isBlank(String s) {
         return s == null || s.trim().isEmpty();
     }
@@ -828,8 +1112,126 @@ public class HotelService {
         return s.length() <= max ? s : s.substring(0, max - 3) + "...";
     }
 
+    /** Free rooms per room type for tonight; empty if the hotel does not list its rooms. */
     public List<Hotel.Room> getAvailableRoomCount(String hotelId) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'getAvailableRoomCount'");
+        LocalDate today = LocalDate.now();
+        return getAvailableRoomCount(hotelId, today.toString(), today.plusDays(1).toString());
+    }
+
+    /** Free rooms per room type for every night of the stay (YYYY-MM-DD, check-out exclusive). */
+    public List<Hotel.Room> getAvailableRoomCount(String hotelId, String checkIn, String checkOut) {
+        if (isBlank(hotelId)) return new ArrayList<>();
+        try {
+            LocalDate ci = LocalDate.parse(checkIn.trim());
+            LocalDate co = LocalDate.parse(checkOut.trim());
+            if (!co.isAfter(ci)) return new ArrayList<>();
+            return inventory().availability(hotelId, ci, co);
+        } catch (RuntimeException e) {
+            System.out.println("Invalid date format (use YYYY-MM-DD).");
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Oversell check against the configured database: a throwaway hotel with the last few rooms
+     * on its single counter, booked one room at a time from many threads through the normal
+     * booking path. Exactly that many bookings must succeed and the counter must end at 0.
+     * Args: [threads=200] [rooms=10]. The bench hotel, user, bookings and payments are removed.
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        String tag = String.format("%07d", System.currentTimeMillis() % 10_000_000L);
+        String userId = "bench" + tag;
+        String hotelId = "bench" + tag;
+        String checkIn = LocalDate.now().plusDays(30).toString();
+        String checkOut = LocalDate.now().plusDays(31).toString();
+        boolean ok = false;
+
+        try {
+            try (Connection conn = Db.getConnection()) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO users (userid, username, useremail, userpassword) VALUES (?, ?, ?, ?)")) {
+                    ps.setString(1, userId);
+                    ps.setString(2, "Bench Tourist");
+                    ps.setString(3, "bench.booking." + tag + "@example.com");
+                    ps.setString(4, "-");
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO hotels (hotelid, hotelname, hotellocation, hotelpricepernight, roomavailability, totalrooms) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)")) {
+                    ps.setString(1, hotelId);
+                    ps.setString(2, "Bench Hotel " + tag);
+                    ps.setString(3, "Bench");
+                    ps.setDouble(4, 100.0);
+                    ps.setInt(5, rooms);
+                    ps.setInt(6, rooms);
+                    ps.executeUpdate();
+                }
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger booked = new AtomicInteger();
+            List<Future<?>> parts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                parts.add(pool.submit(() -> {
+                    start.await();
+                    if (new HotelService().bookHotelWithPayment(userId, hotelId, checkIn, checkOut,
+                            1, 100.0, "CASH", 100.0)) {
+                        booked.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            long t0 = System.nanoTime();
+            start.countDown();
+            for (Future<?> f : parts) f.get();
+            long ms = (System.nanoTime() - t0) / 1_000_000L;
+            pool.shutdown();
+
+            int left;
+            int rows;
+            try (Connection conn = Db.getConnection()) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT roomavailability FROM hotels WHERE hotelid = ?")) {
+                    ps.setString(1, hotelId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        left = rs.next() ? rs.getInt(1) : -1;
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM booking WHERE hotelid = ?")) {
+                    ps.setString(1, hotelId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rows = rs.next() ? rs.getInt(1) : -1;
+                    }
+                }
+            }
+
+            System.out.printf("%d threads, %d rooms: %d booked, %d booking rows, %d rooms left, %d ms%n",
+                    threads, rooms, booked.get(), rows, left, ms);
+            ok = booked.get() == rooms && rows == rooms && left == 0;
+            System.out.println(ok ? "OK" : "FAILED: expected " + rooms + " bookings and 0 rooms left");
+        } finally {
+            try (Connection conn = Db.getConnection()) {
+                String[] cleanup = {
+                        "DELETE FROM payment WHERE paymentid IN (SELECT paymentid FROM " +
+                                "(SELECT paymentid FROM booking WHERE hotelid = ?) b)",
+                        "DELETE FROM booking WHERE hotelid = ?",
+                        "DELETE FROM hotels WHERE hotelid = ?",
+                        "DELETE FROM users WHERE userid = ?"};
+                for (int i = 0; i < cleanup.length; i++) {
+                    try (PreparedStatement ps = conn.prepareStatement(cleanup[i])) {
+                        ps.setString(1, i < 3 ? hotelId : userId);
+                        ps.executeUpdate();
+                    }
+                }
+            } catch (SQLException e) {
+                System.out.println("Cleanup failed, remove hotel and user " + hotelId + " by hand: " + e.getMessage());
+            }
+            Db.closeConnection();
+        }
+        if (!ok) System.exit(1);
     }
-}
\ No newline at end of file
+}
@@ -3,10 +3,37 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Numeric ID generator (digits only).
- * Optionally checks DB uniqueness for a given table/column.
+ *
+ * Each running app leases blocks of numbers from the id_blocks table (one UPDATE per block)
+ * and hands them out from memory:
+ *   id = 10^(digits-1) + block * blockSize + n      (0 <= n < blockSize)
+ *
+ * A block belongs to one process only, so IDs are unique across instances without any
+ * per-instance config, and a restarted process leases a fresh block instead of repeating
+ * numbers. Handing out an ID is one atomic increment; no caller ever waits on the clock.
+ * Only the caller that finds its block used up goes to the database, on its own connection
+ * (never the caller's transaction), once per blockSize IDs.
+ *
+ * Rows written before this generator carry random IDs from anywhere in the range, so
+ * {@link #uniqueNumericId} checks each table once per block: one indexed range query lists the
+ * old IDs that fall inside the block (almost always none), and those numbers are skipped.
+ *
+ * Config (config.properties):
+ *   id.blockSize=16384   IDs per lease
  *
  * NOTE: table/column are concatenated into SQL. Only pass trusted constants.
  */
@@ -14,6 +41,57 @@ public final class IdGenerator {
 
     private static final SecureRandom RAND = new SecureRandom();
 
+    private static final String LEASE_NAME = "default";
+
+    /** Source of block numbers; each call must return a number nobody has had before. */
+    interface BlockSource {
+        long lease() throws SQLException;
+    }
+
+    /** Hands out the numbers of one leased block at a time. Lock-free until a block runs out. */
+    static final class Allocator {
+        private static final class Block {
+            final long first;
+            final AtomicInteger used = new AtomicInteger();
+
+            Block(long first) {
+                this.first = first;
+            }
+        }
+
+        private final BlockSource source;
+        private final int blockSize;
+        private volatile Block current;
+
+        Allocator(BlockSource source, int blockSize) {
+            this.source = source;
+            this.blockSize = blockSize;
+        }
+
+        /** Next number, 0-based; unique among every allocator sharing the block source. */
+        long next() throws SQLException {
+            for (;;) {
+                Block b = current;
+                if (b != null) {
+                    int n = b.used.getAndIncrement();
+                    if (n < blockSize) return b.first + n;
+                }
+                synchronized (this) {
+                    if (current == b) current = new Block(source.lease() * blockSize);
+                }
+            }
+        }
+    }
+
+    /** IDs already present in one table inside one block, found by a single range query. */
+    private record TakenInBlock(long block, Set<String> ids) {}
+
+    private static final int BLOCK_SIZE = (int) Math.max(1, Math.min(1 << 24,
+            Db.longProp(Db.config(), "id.blockSize", 16_384L)));
+    private static final Allocator IDS = new Allocator(IdGenerator::leaseFromDb, BLOCK_SIZE);
+    // "table.column:digits" -> the block last checked for that table
+    private static final ConcurrentHashMap<String, TakenInBlock> CHECKED = new ConcurrentHashMap<>();
+
     private IdGenerator() {}
 
     /** Returns a numeric string with exactly {@code digits} digits. */
@@ -29,9 +107,15 @@ public final class IdGenerator {
         return String.valueOf(value);
     }
 
+    /** Returns the next leased ID with exactly {@code digits} digits (12..18). */
+    public static String nextNumericId(int digits) throws SQLException {
+        return format(IDS.next(), digits);
+    }
+
     /**
-     * Generates a numeric ID and checks DB uniqueness against table(column).
-     * Falls back to a random numeric ID if maxAttempts is exhausted.
+     * Returns a new ID for table(column), skipping numbers an older row of that table already
+     * uses. The table is queried once per leased block, not per ID. An SQLException is thrown
+     * if no free ID turns up in maxAttempts tries.
      */
     public static String uniqueNumericId(Connection conn, String table, String column,
                                          int digits, int maxAttempts) throws SQLException {
@@ -40,21 +124,71 @@ public final class IdGenerator {
         if (column == null || column.trim().isEmpty()) throw new IllegalArgumentException("column cannot be empty");
         if (maxAttempts < 1) maxAttempts = 1;
 
-        String sql = "SELECT 1 FROM " + table + " WHERE " + column + " = ? LIMIT 1";
-
+        String key = table + "." + column + ":" + digits;
         for (int i = 0; i < maxAttempts; i++) {
-            String id = randomNumericId(digits);
+            long n = IDS.next();
+            String id = format(n, digits);
 
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) return id; // unique
-                }
+            long block = n / BLOCK_SIZE;
+            TakenInBlock taken = CHECKED.get(key);
+            if (taken == null || taken.block() != block) {
+                taken = new TakenInBlock(block, takenInRange(conn, table, column,
+                        format(block * BLOCK_SIZE, digits), format(block * BLOCK_SIZE + BLOCK_SIZE - 1, digits)));
+                CHECKED.put(key, taken);
+            }
+            if (!taken.ids().contains(id)) return id;
+            System.out.println("Skipping ID already used in " + table + "." + column + ": " + id);
+        }
+
+        throw new SQLException("No free ID for " + table + "." + column + " after " + maxAttempts + " attempts");
+    }
+
+    /** IDs in [first, last] that table already has; same-length digit strings sort like numbers. */
+    private static Set<String> takenInRange(Connection conn, String table, String column,
+                                            String first, String last) throws SQLException {
+        Set<String> ids = new HashSet<>();
+        String sql = "SELECT " + column + " FROM " + table + " WHERE " + column + " >= ? AND " + column + " <= ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, first);
+            ps.setString(2, last);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getString(1));
             }
         }
+        return ids;
+    }
+
+    private static String format(long n, int digits) throws SQLException {
+        if (digits < 12 || digits > 18) {
+            throw new IllegalArgumentException("digits must be between 12 and 18");
+        }
+        long min = pow10(digits - 1);
+        if (n >= pow10(digits) - min) throw new SQLException("ID space for " + digits + " digits is used up");
+        return String.valueOf(min + n);
+    }
+
+    // -------------------- Leases --------------------
 
-        // Fallback still returns valid digits
-        return randomNumericId(digits);
+    /** Takes the next block number from id_blocks, on a connection of its own. */
+    private static long leaseFromDb() throws SQLException {
+        try (Connection conn = Db.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT IGNORE INTO id_blocks (name, nextblock) VALUES (?, 0)")) {
+                ps.setString(1, LEASE_NAME);
+                ps.executeUpdate();
+            }
+            // LAST_INSERT_ID(expr) hands this connection the value it wrote, atomically
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE id_blocks SET nextblock = LAST_INSERT_ID(nextblock + 1) WHERE name = ?")) {
+                ps.setString(1, LEASE_NAME);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("SELECT LAST_INSERT_ID()");
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("ID lease failed");
+                return rs.getLong(1) - 1;
+            }
+        }
     }
 
     private static long pow10(int exp) {
@@ -84,4 +218,63 @@ public final class IdGenerator {
 
         return origin + r;
     }
-}
\ No newline at end of file
+
+    // -------------------- Collision check --------------------
+
+    /**
+     * Collision check: java IdGenerator [ids] [threads] [instances]
+     *
+     * Simulates several app instances (one Allocator each, sharing one lease counter like
+     * id_blocks) with small blocks so leases change hands often, restarts one instance halfway
+     * through, and fails if any two of the generated IDs are equal.
+     */
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int instances = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int perThread = total / threads;
+
+        AtomicLong idBlocks = new AtomicLong();
+        BlockSource shared = idBlocks::getAndIncrement;
+        Allocator[] apps = new Allocator[instances];
+        for (int i = 0; i < instances; i++) apps[i] = new Allocator(shared, 256);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> parts = new ArrayList<>();
+        long t0 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int app = t % instances;
+            boolean restarts = t == 0;
+            parts.add(pool.submit(() -> {
+                long[] out = new long[perThread];
+                Allocator a = apps[app];
+                for (int i = 0; i < perThread; i++) {
+                    if (restarts && i == perThread / 2) a = new Allocator(shared, 256); // process restart
+                    out[i] = Long.parseLong(format(a.next(), 12));
+                }
+                return out;
+            }));
+        }
+
+        long[] all = new long[perThread * threads];
+        int k = 0;
+        for (Future<long[]> f : parts) {
+            long[] part = f.get();
+            System.arraycopy(part, 0, all, k, part.length);
+            k += part.length;
+        }
+        long elapsedMs = (System.nanoTime() - t0) / 1_000_000L;
+        pool.shutdown();
+
+        Arrays.sort(all);
+        int duplicates = 0;
+        for (int i = 1; i < all.length; i++) {
+            if (all[i] == all[i - 1]) duplicates++;
+        }
+        boolean twelveDigits = all[0] >= 100_000_000_000L && all[all.length - 1] < 1_000_000_000_000L;
+
+        System.out.printf("%d IDs from %d threads on %d instances in %d ms%n", all.length, threads, instances, elapsedMs);
+        System.out.println("Duplicates: " + duplicates + ", all 12 digits: " + twelveDigits);
+        if (duplicates > 0 || !twelveDigits) System.exit(1);
+    }
+}
@@ -1,43 +1,68 @@
 import java.sql.Connection;
+import java.sql.SQLException;
 
 public class ManagerActivities {
 
-    private final Connection conn;
-
-    public ManagerActivities(Connection conn) {
-        this.conn = conn;
-    }
+    public ManagerActivities() {}
 
     public boolean confirmBooking(Booking booking) {
         if (booking == null) return false;
-        return booking.updateBookingStatus(conn, Booking.STATUS_CONFIRMED);
+        try (Connection conn = Db.getConnection()) {
+            return booking.updateBookingStatus(conn, Booking.STATUS_CONFIRMED);
+        } catch (SQLException e) {
+            System.out.println("Confirm booking failed: " + e.getMessage());
+            return false;
+        }
     }
 
     public boolean cancelBooking(Booking booking) {
         if (booking == null) return false;
-        return booking.updateBookingStatus(conn, Booking.STATUS_CANCELLED);
+        try (Connection conn = Db.getConnection()) {
+            return booking.updateBookingStatus(conn, Booking.STATUS_CANCELLED);
+        } catch (SQLException e) {
+            System.out.println("Cancel booking failed: " + e.getMessage());
+            return false;
+        }
     }
 
     public boolean updatePaymentStatus(Payment payment, String newStatus) {
         if (payment == null) return false;
-        return payment.updatePaymentStatus(conn, newStatus);
+        try (Connection conn = Db.getConnection()) {
+            return payment.updatePaymentStatus(conn, newStatus);
+        } catch (SQLException e) {
+            System.out.println("Payment status update failed: " + e.getMessage());
+            return false;
+        }
     }
 
     // With your "2 statuses only" rule: cancellation is the closest to "refund"
     public boolean refundPayment(Payment payment) {
-        if (payment == null) return false;
-        return payment.updatePaymentStatus(conn, Payment.STATUS_CANCELLED);
+        return updatePaymentStatus(payment, Payment.STATUS_CANCELLED);
     }
 
     public boolean updateHotelAvailability(Hotel hotel, int newAvailability) {
         if (hotel == null) return false;
         hotel.setRoomAvailability(newAvailability);
-        return hotel.updateRoomAvailability(conn, newAvailability);
+        try (Connection conn = Db.getConnection()) {
+            boolean ok = hotel.updateRoomAvailability(conn, newAvailability);
+            if (ok) HotelService.invalidateCatalog();
+            return ok;
+        } catch (SQLException e) {
+            System.out.println("Error updating room availability: " + e.getMessage());
+            return false;
+        }
     }
 
     public boolean updateHotelPrice(Hotel hotel, double newPrice) {
         if (hotel == null) return false;
         hotel.setPricePerNight(newPrice);
-        return hotel.updatePrice(conn, newPrice);
+        try (Connection conn = Db.getConnection()) {
+            boolean ok = hotel.updatePrice(conn, newPrice);
+            if (ok) HotelService.invalidateCatalog();
+            return ok;
+        } catch (SQLException e) {
+            System.out.println("Error updating price: " + e.getMessage());
+            return false;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,20 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
+import javax.swing.table.TableModel;
 import java.awt.*;
-import java.util.List;
 
 public class ManagerDashboard extends JPanel {
     private final ComfyGoGUI mainFrame;
     private final JPanel contentPanel;
     private final CardLayout contentLayout;
+    // Database work for this screen; cancelled when the dashboard is closed
+    private final UiTasks tasks;
 
     public ManagerDashboard(ComfyGoGUI mainFrame) {
         this.mainFrame = mainFrame;
+        this.tasks = new UiTasks(this);
         setLayout(new BorderLayout());
         setBackground(ComfyGoGUI.BACKGROUND);
 
@@ -91,6 +93,9 @@ public class ManagerDashboard extends JPanel {
 
         sidebar.add(Box.createVerticalGlue());
 
+        sidebar.add(tasks.indicator());
+        sidebar.add(Box.createRigidArea(new Dimension(0, 12)));
+
         JButton logoutBtn = ComfyGoGUI.createStyledButton("Logout", ComfyGoGUI.DANGER);
         logoutBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
         logoutBtn.setMaximumSize(new Dimension(240, 50));
@@ -154,8 +159,23 @@ public class ManagerDashboard extends JPanel {
         body.setOpaque(false);
         body.setBorder(new EmptyBorder(20, 0, 0, 0));
 
-        Hotel hotel = mainFrame.getHotelService().getHotelByManagerId(mainFrame.getCurrentUserId());
+        JLabel loading = new JLabel("Loading hotel...");
+        loading.setFont(new Font("Segoe UI", Font.PLAIN, 15));
+        loading.setForeground(ComfyGoGUI.TEXT_SECONDARY);
+        body.add(loading, BorderLayout.NORTH);
+
+        tasks.run("hotel", () -> mainFrame.getHotelService().getHotelByManagerId(mainFrame.getCurrentUserId()), hotel -> {
+            body.removeAll();
+            showHotel(body, hotel);
+            body.revalidate();
+            body.repaint();
+        });
+
+        shell.add(body, BorderLayout.CENTER);
+        return shell;
+    }
 
+    private void showHotel(JPanel body, Hotel hotel) {
         if (hotel == null) {
             JPanel card = new JPanel();
             card.setBackground(ComfyGoGUI.CARD_BG);
@@ -187,8 +207,7 @@ public class ManagerDashboard extends JPanel {
             card.add(addHotelBtn);
 
             body.add(card, BorderLayout.NORTH);
-            shell.add(body, BorderLayout.CENTER);
-            return shell;
+            return;
         }
 
         JPanel infoCard = new JPanel();
@@ -211,8 +230,6 @@ public class ManagerDashboard extends JPanel {
         infoCard.add(infoRow("Description", hotel.getDescription()));
 
         body.add(ComfyGoGUI.scrollWrap(infoCard), BorderLayout.CENTER);
-        shell.add(body, BorderLayout.CENTER);
-        return shell;
     }
 
     private JPanel infoRow(String k, String v) {
@@ -273,25 +290,23 @@ public class ManagerDashboard extends JPanel {
             try {
                 double price = Double.parseDouble(priceField.getText().trim());
                 int rooms = Integer.parseInt(roomsField.getText().trim());
-
-                boolean success = mainFrame.getManagerService().addHotel(
-                    mainFrame.getCurrentUserId(),
-                    nameField.getText().trim(),
-                    locationField.getText().trim(),
-                    price,
-                    rooms,
-                    categoryField.getText().trim(),
-                    featuresField.getText().trim(),
-                    descField.getText().trim()
-                );
-
-                if (success) {
-                    JOptionPane.showMessageDialog(dialog, "Hotel added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    dialog.dispose();
-                    mainFrame.showPanel("MANAGER_DASHBOARD");
-                } else {
-                    JOptionPane.showMessageDialog(dialog, "Failed to add hotel. Check console logs.", "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                String name = nameField.getText().trim();
+                String location = locationField.getText().trim();
+                String category = categoryField.getText().trim();
+                String features = featuresField.getText().trim();
+                String description = descField.getText().trim();
+
+                tasks.runChange(() -> mainFrame.getManagerService().addHotel(
+                    mainFrame.getCurrentUserId(), name, location, price, rooms, category, features, description
+                ), success -> {
+                    if (success) {
+                        JOptionPane.showMessageDialog(dialog, "Hotel added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                        dialog.dispose();
+                        if (!tasks.isClosed()) mainFrame.showPanel("MANAGER_DASHBOARD");
+                    } else {
+                        JOptionPane.showMessageDialog(dialog, "Failed to add hotel. Check console logs.", "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, addBtn);
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Please enter valid numbers for price and rooms!", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -327,13 +342,15 @@ public class ManagerDashboard extends JPanel {
         body.setOpaque(false);
         body.setBorder(new EmptyBorder(20, 0, 0, 0));
 
-        String[] cols = {"Booking ID", "Dates", "Rooms", "Status", "Amount", "Payment ID"};
-        DefaultTableModel model = new DefaultTableModel(cols, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Pages in as the manager scrolls, so a hotel with years of bookings opens instantly
+        PagedTableModel<Booking> model = new PagedTableModel<Booking>(tasks, "bookings")
+            .column("Booking ID", Booking::getBookingId)
+            .column("Dates", b -> b.getCheckInDate() + " to " + b.getCheckOutDate())
+            .column("Rooms", b -> b.getNumberOfRooms() + " rooms")
+            .column("Status", Booking::getBookingStatus)
+            .column("Amount", b -> String.format("BDT %.2f", b.getTotalPrice()))
+            .column("Payment ID", b -> "PayID " + b.getPaymentId())
+            .whenEmpty(() -> JOptionPane.showMessageDialog(mainFrame, "No bookings found.", "Info", JOptionPane.INFORMATION_MESSAGE));
 
         JTable table = createStyledTable(model);
         JScrollPane sp = new JScrollPane(table);
@@ -345,35 +362,18 @@ public class ManagerDashboard extends JPanel {
         card.add(sp, BorderLayout.CENTER);
 
         JButton refreshBtn = ComfyGoGUI.createStyledButton("Refresh", ComfyGoGUI.PRIMARY);
-        refreshBtn.addActionListener(e -> {
-            Hotel hotel = mainFrame.getHotelService().getHotelByManagerId(mainFrame.getCurrentUserId());
-            model.setRowCount(0);
-
-            if (hotel == null) {
-                JOptionPane.showMessageDialog(mainFrame, "No hotel found for this manager.\nAdd your hotel first.", "Info", JOptionPane.INFORMATION_MESSAGE);
-                return;
-            }
-
-            List<String> bookings = mainFrame.getManagerService().getHotelBookings(hotel.getHotelId());
-            if (bookings == null || bookings.isEmpty()) {
-                JOptionPane.showMessageDialog(mainFrame, "No bookings found.", "Info", JOptionPane.INFORMATION_MESSAGE);
-                return;
-            }
-
-            for (String b : bookings) {
-                String[] parts = b.split("\\|");
-                if (parts.length >= 6) {
-                    model.addRow(new Object[]{
-                        parts[0].trim(),
-                        parts[1].trim(),
-                        parts[2].trim(),
-                        parts[3].trim(),
-                        parts[4].trim(),
-                        parts[5].trim()
-                    });
+        refreshBtn.addActionListener(e -> tasks.run("hotel-for-bookings",
+            () -> mainFrame.getHotelService().getHotelByManagerId(mainFrame.getCurrentUserId()),
+            hotel -> {
+                if (hotel == null) {
+                    model.clear();
+                    JOptionPane.showMessageDialog(mainFrame, "No hotel found for this manager.\nAdd your hotel first.", "Info", JOptionPane.INFORMATION_MESSAGE);
+                    return;
                 }
-            }
-        });
+
+                String hotelId = hotel.getHotelId();
+                model.load(page -> mainFrame.getManagerService().getHotelBookingPage(hotelId, page));
+            }, refreshBtn));
 
         JPanel actions = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 15));
         actions.setBackground(ComfyGoGUI.CARD_BG);
@@ -386,7 +386,7 @@ public class ManagerDashboard extends JPanel {
     }
 
     // -------------------- STYLED TABLE METHOD --------------------
-    private JTable createStyledTable(DefaultTableModel model) {
+    private JTable createStyledTable(TableModel model) {
         JTable table = new JTable(model);
         table.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         table.setForeground(ComfyGoGUI.TEXT_PRIMARY);
@@ -459,9 +459,10 @@ public class ManagerDashboard extends JPanel {
         updateRoomsBtn.addActionListener(e -> {
             try {
                 int rooms = Integer.parseInt(roomsField.getText().trim());
-                boolean ok = mainFrame.getHotelService().updateRoomAvailabilityForManager(mainFrame.getCurrentUserId(), rooms);
-                if (ok) JOptionPane.showMessageDialog(mainFrame, "Room availability updated!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                else JOptionPane.showMessageDialog(mainFrame, "Failed to update rooms!", "Error", JOptionPane.ERROR_MESSAGE);
+                tasks.runChange(() -> mainFrame.getHotelService().updateRoomAvailabilityForManager(mainFrame.getCurrentUserId(), rooms), ok -> {
+                    if (ok) JOptionPane.showMessageDialog(mainFrame, "Room availability updated!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    else JOptionPane.showMessageDialog(mainFrame, "Failed to update rooms!", "Error", JOptionPane.ERROR_MESSAGE);
+                }, updateRoomsBtn);
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(mainFrame, "Please enter a valid number!", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -493,9 +494,10 @@ public class ManagerDashboard extends JPanel {
         updatePriceBtn.addActionListener(e -> {
             try {
                 double price = Double.parseDouble(priceField.getText().trim());
-                boolean ok = mainFrame.getHotelService().updateHotelPriceForManager(mainFrame.getCurrentUserId(), price);
-                if (ok) JOptionPane.showMessageDialog(mainFrame, "Price updated!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                else JOptionPane.showMessageDialog(mainFrame, "Failed to update price!", "Error", JOptionPane.ERROR_MESSAGE);
+                tasks.runChange(() -> mainFrame.getHotelService().updateHotelPriceForManager(mainFrame.getCurrentUserId(), price), ok -> {
+                    if (ok) JOptionPane.showMessageDialog(mainFrame, "Price updated!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    else JOptionPane.showMessageDialog(mainFrame, "Failed to update price!", "Error", JOptionPane.ERROR_MESSAGE);
+                }, updatePriceBtn);
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(mainFrame, "Please enter a valid price!", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -526,12 +528,13 @@ public class ManagerDashboard extends JPanel {
         ratingsArea.setBorder(new EmptyBorder(20, 20, 20, 20));
         ratingsArea.setText("Hotel ratings and reviews will appear here.\n");
 
-        Hotel hotel = mainFrame.getHotelService().getHotelByManagerId(mainFrame.getCurrentUserId());
-        if (hotel != null) {
-            ratingsArea.append("Current Rating: " + hotel.getRating() + " / 5\n");
-        } else {
-            ratingsArea.append("No hotel found.\n");
-        }
+        tasks.run("ratings", () -> mainFrame.getHotelService().getHotelByManagerId(mainFrame.getCurrentUserId()), hotel -> {
+            if (hotel != null) {
+                ratingsArea.append("Current Rating: " + hotel.getRating() + " / 5\n");
+            } else {
+                ratingsArea.append("No hotel found.\n");
+            }
+        });
 
         JPanel card = new JPanel(new BorderLayout());
         card.setBackground(ComfyGoGUI.CARD_BG);
@@ -7,11 +7,7 @@ import java.util.List;
 
 public class ManagerService {
 
-    private final Connection conn;
-
-    public ManagerService(Connection conn) {
-        this.conn = conn;
-    }
+    public ManagerService() {}
 
     // Backward-compatible: your GUI may call this older signature (no description)
     public boolean addHotel(String managerId, String hotelName, String location,
@@ -27,8 +23,6 @@ public class ManagerService {
                             String roomCategory, String features,
                             String description) {
 
-        if (conn == null) return false;
-
         managerId = safeTrim(managerId);
         hotelName = safeTrim(hotelName);
         location = safeTrim(location);
@@ -52,9 +46,9 @@ public class ManagerService {
             return false;
         }
 
-        try {
+        try (Connection conn = Db.getConnection()) {
             // Optional business rule: one manager can add only one hotel
-            if (hasHotelForManager(managerId)) {
+            if (hasHotelForManager(conn, managerId)) {
                 System.out.println("You already have a hotel added. One manager can add only one hotel.");
                 return false;
             }
@@ -81,6 +75,7 @@ public class ManagerService {
 
                 ps.executeUpdate();
             }
+            HotelService.invalidateCatalog();
 
             System.out.println("Hotel added successfully!");
             System.out.println("Hotel ID: " + hotelId);
@@ -93,14 +88,13 @@ public class ManagerService {
     }
 
     public Hotel getManagerHotel(String managerId) {
-        if (conn == null) return null;
-
         managerId = safeTrim(managerId);
         if (managerId == null) return null;
 
         String sql = "SELECT * FROM hotels WHERE managerid = ? LIMIT 1";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, managerId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
@@ -126,75 +120,68 @@ public class ManagerService {
     }
 
     public List<String> getHotelBookings(String hotelId) {
-        List<String> bookings = new ArrayList<>();
-        if (conn == null) return bookings;
-
-        hotelId = safeTrim(hotelId);
-        if (hotelId == null) return bookings;
-
-        // Booking table stores hotelname+hotellocation, so first read those from hotels by hotelId
-        String sql =
-                "SELECT bookingid, hotelname, hotellocation, checkindate, checkoutdate, numberofrooms, " +
-                "bookingstatus, totalprice, paymentid " +
-                "FROM booking " +
-                "WHERE hotelname = (SELECT hotelname FROM hotels WHERE hotelid = ? LIMIT 1) " +
-                "  AND hotellocation = (SELECT hotellocation FROM hotels WHERE hotelid = ? LIMIT 1) " +
-                "ORDER BY checkindate DESC";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, hotelId);
-            ps.setString(2, hotelId);
+        return getHotelBookings(hotelId, PageRequest.first(PageRequest.MAX_SIZE)).getItems();
+    }
 
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    String row =
-                            rs.getString("bookingid") + " | " +
-                            rs.getDate("checkindate") + " to " + rs.getDate("checkoutdate") + " | " +
-                            rs.getInt("numberofrooms") + " rooms | " +
-                            rs.getString("bookingstatus") + " | " +
-                            "BDT " + rs.getDouble("totalprice") + " | " +
-                            "PayID " + rs.getString("paymentid");
-                    bookings.add(row);
-                }
-            }
+    /** One page of a hotel's bookings as display lines, latest check-in first. */
+    public Page<String> getHotelBookings(String hotelId, PageRequest page) {
+        Page<Booking> bookings;
+        try {
+            bookings = getHotelBookingPage(hotelId, page);
         } catch (SQLException e) {
             System.out.println("Failed to fetch bookings: " + e.getMessage());
+            return new Page.Builder<String>(page).build();
         }
+        List<String> rows = new ArrayList<>();
+        for (Booking b : bookings.getItems()) {
+            rows.add(b.getBookingId() + " | " +
+                     b.getCheckInDate() + " to " + b.getCheckOutDate() + " | " +
+                     b.getNumberOfRooms() + " rooms | " +
+                     b.getBookingStatus() + " | " +
+                     "BDT " + b.getTotalPrice() + " | " +
+                     "PayID " + b.getPaymentId());
+        }
+        return new Page<>(rows, bookings.getNextCursor());
+    }
 
-        return bookings;
+    /**
+     * One page of a hotel's bookings, latest check-in first (keyset on checkindate, bookingid).
+     * Throws on database errors rather than returning a page that looks empty.
+     */
+    public Page<Booking> getHotelBookingPage(String hotelId, PageRequest page) throws SQLException {
+        try (Connection conn = Db.getConnection()) {
+            return Booking.getBookingsByHotel(safeTrim(hotelId), page, conn);
+        }
     }
 
     // NOTE: Cancellation should go through HotelService because it also cancels payment + restores rooms.
     public boolean cancelBookingForManager(String managerId, String bookingId) {
-        if (conn == null) return false;
-
         managerId = safeTrim(managerId);
         bookingId = safeTrim(bookingId);
         if (managerId == null || bookingId == null) return false;
 
-        HotelService hs = new HotelService(conn);
+        HotelService hs = new HotelService();
         return hs.cancelHotelBookingForManager(managerId, bookingId);
     }
 
     public void displayHotelStats(String hotelId) {
-        if (conn == null) return;
-
         hotelId = safeTrim(hotelId);
         if (hotelId == null) return;
 
+        // Index lookups only: booking by hotelid, ratings by (ratingtype, targetname).
+        // Both columns use a case-insensitive collation, so plain '=' replaces UPPER().
         String sql =
                 "SELECT " +
+                "  (SELECT COUNT(*) FROM booking b WHERE b.hotelid = h.hotelid) AS totalbookings, " +
                 "  (SELECT COUNT(*) FROM booking b " +
-                "     WHERE b.hotelname = h.hotelname AND b.hotellocation = h.hotellocation) AS totalbookings, " +
-                "  (SELECT COUNT(*) FROM booking b " +
-                "     WHERE b.hotelname = h.hotelname AND b.hotellocation = h.hotellocation " +
-                "       AND UPPER(b.bookingstatus) = 'CONFIRMED') AS confirmedbookings, " +
+                "     WHERE b.hotelid = h.hotelid AND b.bookingstatus = 'CONFIRMED') AS confirmedbookings, " +
                 "  (SELECT AVG(r.rating) FROM ratings r " +
-                "     WHERE UPPER(r.ratingtype) = 'HOTEL' AND r.targetname = h.hotelname) AS avgrating, " +
+                "     WHERE r.ratingtype = 'HOTEL' AND r.targetname = h.hotelname) AS avgrating, " +
                 "  h.roomavailability, h.totalrooms " +
                 "FROM hotels h WHERE h.hotelid = ?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, hotelId);
 
             try (ResultSet rs = ps.executeQuery()) {
@@ -215,8 +202,6 @@ public class ManagerService {
     }
 
     public boolean updateHotelFeatures(String hotelId, String newFeatures) {
-        if (conn == null) return false;
-
         hotelId = safeTrim(hotelId);
         newFeatures = safeTrim(newFeatures);
         if (hotelId == null) return false;
@@ -224,11 +209,16 @@ public class ManagerService {
 
         String sql = "UPDATE hotels SET hotelfeatures = ? WHERE hotelid = ?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, newFeatures);
             ps.setString(2, hotelId);
             boolean ok = ps.executeUpdate() > 0;
-            if (ok) System.out.println("Hotel features updated!");
+            if (ok) {
+                String features = newFeatures;
+                HotelService.catalog().patch(hotelId, h -> h.setFeatures(features));
+                System.out.println("Hotel features updated!");
+            }
             return ok;
         } catch (SQLException e) {
             System.out.println("Update failed: " + e.getMessage());
@@ -237,8 +227,6 @@ public class ManagerService {
     }
 
     public boolean updateHotelDescription(String hotelId, String newDescription) {
-        if (conn == null) return false;
-
         hotelId = safeTrim(hotelId);
         newDescription = safeTrim(newDescription);
         if (hotelId == null) return false;
@@ -246,11 +234,16 @@ public class ManagerService {
 
         String sql = "UPDATE hotels SET hoteldescription = ? WHERE hotelid = ?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, newDescription);
             ps.setString(2, hotelId);
             boolean ok = ps.executeUpdate() > 0;
-            if (ok) System.out.println("Hotel description updated!");
+            if (ok) {
+                String description = newDescription;
+                HotelService.catalog().patch(hotelId, h -> h.setDescription(description));
+                System.out.println("Hotel description updated!");
+            }
             return ok;
         } catch (SQLException e) {
             System.out.println("Update failed: " + e.getMessage());
@@ -258,7 +251,7 @@ public class ManagerService {
         }
     }
 
-    private boolean hasHotelForManager(String managerId) throws SQLException {
+    private boolean hasHotelForManager(Connection conn, String managerId) throws SQLException {
         String sql = "SELECT 1 FROM hotels WHERE managerid = ? LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, managerId);
@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** One page of a list plus the cursor for the next page (null when this is the last one). */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    Page(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != null; }
+
+    /**
+     * Collects one page from rows read in list order. Queries fetch size + 1 rows; the extra
+     * row only tells us there is another page.
+     */
+    static final class Builder<T> {
+        private final int size;
+        private final List<T> items = new ArrayList<>();
+        private String lastCursor;
+        private boolean more;
+
+        Builder(PageRequest request) {
+            this.size = request.getSize();
+        }
+
+        /** Rows to fetch: one more than the page size. */
+        int fetchSize() {
+            return size + 1;
+        }
+
+        /** Adds a row with its cursor; false once the page is full (stop reading). */
+        boolean add(T item, String cursor) {
+            if (items.size() >= size) {
+                more = true;
+                return false;
+            }
+            items.add(item);
+            lastCursor = cursor;
+            return true;
+        }
+
+        Page<T> build() {
+            return new Page<>(items, more ? lastCursor : null);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Which page of a list to fetch: a page size plus an opaque cursor from the previous
+ * {@link Page} (null for the first page).
+ *
+ * Lists are paged by keyset ("seek"), not OFFSET: every list is ordered by (sort key DESC,
+ * id DESC) and the cursor holds the last row's key and id, so the next page starts with an
+ * index range scan right after it. Page 1000 costs the same as page 1.
+ *
+ * The cursor records the key's type and is parsed once, here. A cursor that doesn't decode
+ * (corrupt or from an older build) is ignored and the request starts at the first page.
+ */
+public final class PageRequest {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 500;
+
+    private static final char SEP = '\u001F';
+
+    // Key type tags, first character of a decoded cursor
+    private static final char NULL_KEY = 'N';
+    private static final char DOUBLE_KEY = 'F';
+    private static final char TIMESTAMP_KEY = 'T';
+    private static final char DATE_KEY = 'D';
+    private static final char STRING_KEY = 'S';
+
+    private final int size;
+    private final String cursor;
+    private final Object afterKey;  // null on the first page, or when the last key was NULL
+    private final String afterId;   // null on the first page
+
+    private PageRequest(int size, String cursor) {
+        this.size = Math.max(1, Math.min(size, MAX_SIZE));
+        this.cursor = cursor;
+
+        Object key = null;
+        String id = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+                int sep = raw.indexOf(SEP);
+                if (sep < 1 || sep == raw.length() - 1) throw new IllegalArgumentException("no key/id");
+                key = parseKey(raw.charAt(0), raw.substring(1, sep));
+                id = raw.substring(sep + 1);
+            } catch (IllegalArgumentException e) { // also NumberFormatException
+                System.out.println("Ignoring malformed page cursor, starting from the first page.");
+                key = null;
+                id = null;
+            }
+        }
+        this.afterKey = key;
+        this.afterId = id;
+    }
+
+    private static Object parseKey(char type, String k) {
+        switch (type) {
+            case NULL_KEY:      return null;
+            case DOUBLE_KEY:    return Double.valueOf(k);
+            case TIMESTAMP_KEY: return new Timestamp(Long.parseLong(k));
+            case DATE_KEY:      return Date.valueOf(k);
+            case STRING_KEY:    return k;
+            default: throw new IllegalArgumentException("unknown key type " + type);
+        }
+    }
+
+    public static PageRequest first(int size) {
+        return new PageRequest(size, null);
+    }
+
+    /** The page after the one whose {@link Page#getNextCursor()} was cursor. */
+    public static PageRequest after(String cursor, int size) {
+        return new PageRequest(size, cursor);
+    }
+
+    public int getSize() { return size; }
+    public String getCursor() { return cursor; }
+    public boolean isFirst() { return afterId == null; }
+
+    String afterId() { return afterId; }
+    String afterKey() { return afterKey == null ? null : afterKey.toString(); }
+
+    // Already parsed; null on the first page or if the cursor's key is of another type
+    Double afterDouble() { return afterKey instanceof Double d ? d : null; }
+    Timestamp afterTimestamp() { return afterKey instanceof Timestamp t ? t : null; }
+    Date afterDate() { return afterKey instanceof Date d ? d : null; }
+
+    // -------------------- Cursor encoding --------------------
+
+    /** Cursor for a row with the given sort key (Double, Timestamp, Date or String) and id. */
+    static String cursor(Object key, String id) {
+        String k;
+        if (key == null) k = String.valueOf(NULL_KEY);
+        else if (key instanceof Timestamp t) k = TIMESTAMP_KEY + Long.toString(t.getTime());
+        else if (key instanceof Date d) k = DATE_KEY + d.toString();
+        else if (key instanceof Number n) k = DOUBLE_KEY + Double.toString(n.doubleValue());
+        else k = STRING_KEY + key.toString();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((k + SEP + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // -------------------- SQL --------------------
+
+    /**
+     * Seek predicate for ORDER BY keyColumn DESC, idColumn DESC ("TRUE" on the first page).
+     * MySQL sorts NULL keys last in DESC order, so those rows come after every non-null key.
+     */
+    String seekDesc(String keyColumn, String idColumn) {
+        if (isFirst()) return "TRUE";
+        if (afterKey == null) return "(" + keyColumn + " IS NULL AND " + idColumn + " < ?)";
+        return "(" + keyColumn + " < ? OR (" + keyColumn + " = ? AND " + idColumn + " < ?) OR " + keyColumn + " IS NULL)";
+    }
+
+    /** Binds what {@link #seekDesc} added, starting at index; returns the next free index. */
+    int bindSeek(PreparedStatement ps, int index, Object typedKey) throws SQLException {
+        if (isFirst()) return index;
+        if (afterKey != null) {
+            ps.setObject(index++, typedKey);
+            ps.setObject(index++, typedKey);
+        }
+        ps.setString(index++, afterId);
+        return index;
+    }
+}
@@ -0,0 +1,233 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Table model over a paged list ({@link Page}), for tables that can grow to tens of thousands
+ * of rows.
+ *
+ * Rows are fetched a page at a time on the screen's {@link UiTasks}. A page is only fetched when
+ * the table asks for one of its cells, and the next one when the user scrolls onto the last
+ * loaded page. Only the most recently viewed pages are kept; an evicted page is fetched again
+ * from its saved cursor if it scrolls back into view. Cells are read straight from the row
+ * objects through the column functions. A page added at the end fires one insert event, and
+ * pages fetched again are repainted together in one update event.
+ *
+ * A page whose fetch fails shows "Failed to load" and is not retried until {@link #reload}, so
+ * a broken connection doesn't turn every repaint into another query and error dialog.
+ *
+ * All methods must be called on the EDT.
+ */
+final class PagedTableModel<T> extends AbstractTableModel {
+
+    /** Fetches one page; called on a worker thread. */
+    interface Source<T> {
+        Page<T> fetch(PageRequest request) throws Exception;
+    }
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_CACHED_PAGES = 20;
+
+    private final UiTasks tasks;
+    private final String name;
+    private final int pageSize;
+    private final int cachedPages;
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<Function<T, ?>> columnValues = new ArrayList<>();
+
+    private Source<T> source;
+    private Runnable whenEmpty;
+    // Cursor that fetches page i; null for page 0
+    private final List<String> pageCursors = new ArrayList<>();
+    private final Map<Integer, List<T>> pages;
+    private final Set<Integer> loading = new HashSet<>();
+    private final Set<Integer> failed = new HashSet<>();
+    private int rowCount;
+    private int generation;
+
+    // Rows updated since the last flush, fired as one event
+    private int dirtyFrom = -1;
+    private int dirtyTo = -1;
+
+    /** name keys this table's fetches in tasks, so each table needs its own. */
+    PagedTableModel(UiTasks tasks, String name) {
+        this.tasks = tasks;
+        this.name = name;
+
+        Properties props = Db.config();
+        this.pageSize = (int) Math.max(1, Math.min(PageRequest.MAX_SIZE,
+                Db.longProp(props, "ui.table.pageSize", DEFAULT_PAGE_SIZE)));
+        this.cachedPages = (int) Math.max(2, Db.longProp(props, "ui.table.cachedPages", DEFAULT_CACHED_PAGES));
+
+        // Access order, so the least recently viewed page is dropped first
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > cachedPages;
+            }
+        };
+    }
+
+    PagedTableModel<T> column(String header, Function<T, ?> value) {
+        columnNames.add(header);
+        columnValues.add(value);
+        return this;
+    }
+
+    /** Runs once the first page comes back with no rows. */
+    PagedTableModel<T> whenEmpty(Runnable action) {
+        this.whenEmpty = action;
+        return this;
+    }
+
+    // -------------------- Loading --------------------
+
+    /** Drops all rows and starts over from the first page of source. */
+    void load(Source<T> source) {
+        clear();
+        this.source = source;
+        pageCursors.add(null);
+        request(0);
+    }
+
+    /** Fetches the current source again from the top. */
+    void reload() {
+        if (source != null) load(source);
+    }
+
+    void clear() {
+        generation++;
+        for (Integer page : loading) tasks.cancel(taskKey(page));
+        loading.clear();
+        failed.clear();
+        pages.clear();
+        pageCursors.clear();
+        source = null;
+        dirtyFrom = dirtyTo = -1;
+        if (rowCount > 0) {
+            rowCount = 0;
+            fireTableDataChanged();
+        }
+    }
+
+    /** The row object, or null while its page is being fetched. */
+    T getRow(int row) {
+        List<T> items = pageFor(row);
+        int offset = row % pageSize;
+        return items != null && offset < items.size() ? items.get(offset) : null;
+    }
+
+    private List<T> pageFor(int row) {
+        if (row < 0 || row >= rowCount) return null;
+
+        int page = row / pageSize;
+        List<T> items = pages.get(page);
+        if (items == null) {
+            request(page);
+        } else if ((page + 1) * pageSize >= rowCount && page + 1 < pageCursors.size()) {
+            // On the last loaded page and there is another one: fetch it ahead of the scroll
+            request(page + 1);
+        }
+        return items;
+    }
+
+    private void request(int page) {
+        if (source == null || page >= pageCursors.size() || failed.contains(page) || !loading.add(page)) return;
+
+        Source<T> from = source;
+        int gen = generation;
+        PageRequest request = PageRequest.after(pageCursors.get(page), pageSize);
+        tasks.run(taskKey(page), () -> from.fetch(request), result -> {
+            loading.remove(page);
+            if (gen == generation) onPage(page, result);
+        }, error -> {
+            loading.remove(page);
+            if (gen == generation) onFailed(page);
+        });
+    }
+
+    private void onFailed(int page) {
+        failed.add(page);
+        int first = page * pageSize;
+        // A page past the end has no rows to mark; the error dialog has already said so
+        if (first < rowCount) markDirty(first, Math.min(first + pageSize, rowCount) - 1);
+    }
+
+    private void onPage(int page, Page<T> result) {
+        List<T> items = result.getItems();
+        pages.put(page, items);
+
+        int first = page * pageSize;
+        int end = first + items.size();
+        if (page == pageCursors.size() - 1 && end > rowCount) {
+            // A new page at the end
+            if (result.hasMore()) pageCursors.add(result.getNextCursor());
+            int oldCount = rowCount;
+            rowCount = end;
+            fireTableRowsInserted(oldCount, rowCount - 1);
+        } else if (!items.isEmpty()) {
+            markDirty(first, Math.min(end, rowCount) - 1);
+        }
+
+        if (page == 0 && items.isEmpty() && whenEmpty != null) whenEmpty.run();
+    }
+
+    /** Coalesces repainting pages that came back into one update event per EDT turn. */
+    private void markDirty(int from, int to) {
+        boolean scheduled = dirtyFrom >= 0;
+        dirtyFrom = scheduled ? Math.min(dirtyFrom, from) : from;
+        dirtyTo = scheduled ? Math.max(dirtyTo, to) : to;
+        if (!scheduled) SwingUtilities.invokeLater(this::flush);
+    }
+
+    private void flush() {
+        if (dirtyFrom < 0) return;
+        int from = dirtyFrom;
+        int to = Math.min(dirtyTo, rowCount - 1);
+        dirtyFrom = dirtyTo = -1;
+        if (from <= to) fireTableRowsUpdated(from, to);
+    }
+
+    private String taskKey(int page) {
+        return name + ":" + page;
+    }
+
+    // -------------------- TableModel --------------------
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames.get(column);
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        T item = getRow(row);
+        if (item == null) {
+            if (column != 0) return null;
+            return failed.contains(row / pageSize) ? "Failed to load" : "Loading...";
+        }
+        return columnValues.get(column).apply(item);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+}
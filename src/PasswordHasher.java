@@ -0,0 +1,211 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Password hashing (PBKDF2-HMAC-SHA256) on a dedicated, bounded thread pool.
+ *
+ * Stored format:  $pbkdf2-sha256$v=1$i=<iterations>$<salt b64>$<hash b64>
+ * Legacy format:  <salt b64>:<sha256 b64>   (verify only; flagged for rehash)
+ *
+ * Config (config.properties):
+ *   auth.pbkdf2.iterations=600000   (pick with: java PasswordHasher <target ms>)
+ *   auth.hashThreads=<cores / 2>
+ *   auth.hashQueue=64               (extra requests are refused rather than queued forever)
+ */
+public final class PasswordHasher {
+
+    /** Outcome of a check: whether it matched, and whether the stored value should be replaced. */
+    public record Verification(boolean matches, boolean needsRehash) {
+        static final Verification FAILED = new Verification(false, false);
+    }
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final int FORMAT_VERSION = 1;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int DEFAULT_ITERATIONS = 600_000;
+    private static final long TASK_TIMEOUT_SEC = 30L;
+
+    private static final SecureRandom RAND = new SecureRandom();
+    private static volatile PasswordHasher shared;
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHasher(int iterations, int threads, int queueSize) {
+        if (iterations < 1) throw new IllegalArgumentException("iterations must be >= 1");
+
+        this.iterations = iterations;
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                Math.max(1, threads), Math.max(1, threads), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                r -> {
+                    Thread t = new Thread(r, "comfygo-hash-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /** Process-wide hasher built from config.properties. */
+    public static PasswordHasher shared() {
+        PasswordHasher h = shared;
+        if (h != null) return h;
+
+        synchronized (PasswordHasher.class) {
+            if (shared == null) {
+                Properties props = Db.config();
+                shared = new PasswordHasher(
+                        (int) Db.longProp(props, "auth.pbkdf2.iterations", DEFAULT_ITERATIONS),
+                        (int) Db.longProp(props, "auth.hashThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                        (int) Db.longProp(props, "auth.hashQueue", 64));
+            }
+            return shared;
+        }
+    }
+
+    /** Hashes on the hash pool; throws if the pool is saturated or hashing fails. */
+    public String hash(String password) throws Exception {
+        return await(executor.submit(() -> hashNow(password, iterations)));
+    }
+
+    /** Verifies on the hash pool. A saturated pool counts as a failed check. */
+    public Verification verify(String password, String stored) {
+        if (password == null || stored == null) return Verification.FAILED;
+        try {
+            return await(executor.submit(() -> verifyNow(password, stored)));
+        } catch (Exception e) {
+            System.out.println("Password check unavailable: " + e.getMessage());
+            return Verification.FAILED;
+        }
+    }
+
+    /**
+     * Re-hashes in the background and hands the new value to store. Skipped silently when the
+     * pool is busy; the next successful login tries again.
+     */
+    public void rehashLater(String password, Consumer<String> store) {
+        try {
+            executor.execute(() -> {
+                try {
+                    store.accept(hashNow(password, iterations));
+                } catch (GeneralSecurityException e) {
+                    System.out.println("Rehash failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    public int getIterations() { return iterations; }
+
+    // -------------------- Hashing (runs on the pool) --------------------
+
+    private static String hashNow(String password, int iterations) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        RAND.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        return PREFIX + "v=" + FORMAT_VERSION + "$i=" + iterations + "$"
+                + Base64.getEncoder().encodeToString(salt) + "$" + Base64.getEncoder().encodeToString(hash);
+    }
+
+    private Verification verifyNow(String password, String stored) throws GeneralSecurityException {
+        try {
+            return verifyFormat(password, stored);
+        } catch (IllegalArgumentException e) {
+            return Verification.FAILED; // malformed stored value
+        }
+    }
+
+    private Verification verifyFormat(String password, String stored) throws GeneralSecurityException {
+        if (stored.startsWith(PREFIX)) {
+            // $pbkdf2-sha256$v=1$i=N$salt$hash -> ["", "pbkdf2-sha256", "v=1", "i=N", salt, hash]
+            String[] parts = stored.split("\\$");
+            if (parts.length != 6 || !parts[2].startsWith("v=") || !parts[3].startsWith("i=")) return Verification.FAILED;
+
+            int version = Integer.parseInt(parts[2].substring(2));
+            int storedIterations = Integer.parseInt(parts[3].substring(2));
+            byte[] salt = Base64.getDecoder().decode(parts[4]);
+            byte[] expected = Base64.getDecoder().decode(parts[5]);
+
+            boolean ok = MessageDigest.isEqual(pbkdf2(password, salt, storedIterations), expected);
+            return new Verification(ok, ok && (version < FORMAT_VERSION || storedIterations < iterations));
+        }
+
+        if (stored.contains(":")) {
+            String[] parts = stored.split(":", 2);
+            byte[] salt = Base64.getDecoder().decode(parts[0]);
+            byte[] expected = Base64.getDecoder().decode(parts[1]);
+
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            boolean ok = MessageDigest.isEqual(md.digest(password.getBytes(StandardCharsets.UTF_8)), expected);
+            return new Verification(ok, ok);
+        }
+
+        return Verification.FAILED;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static <T> T await(Future<T> f) throws Exception {
+        try {
+            return f.get(TASK_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception cause) ? cause : e;
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            throw e;
+        }
+    }
+
+    // -------------------- Calibration --------------------
+
+    /**
+     * Prints the iteration count that takes about the given number of milliseconds on this host.
+     * Usage: java PasswordHasher [targetMs=250]
+     */
+    public static void main(String[] args) throws Exception {
+        long targetMs = args.length > 0 ? Long.parseLong(args[0]) : 250L;
+        byte[] salt = new byte[SALT_BYTES];
+        RAND.nextBytes(salt);
+
+        // Warm up the JIT, then time a fixed probe and scale linearly
+        for (int i = 0; i < 5; i++) pbkdf2("calibration", salt, 20_000);
+
+        int probe = 100_000;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long t0 = System.nanoTime();
+            pbkdf2("calibration", salt, probe);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+
+        double perIterationNs = (double) best / probe;
+        long iterations = Math.max(10_000L, Math.round(targetMs * 1_000_000.0 / perIterationNs / 1000.0) * 1000L);
+        System.out.printf("%d iterations ~ %.1f ms per hash on this host%n", probe, best / 1_000_000.0);
+        System.out.println("auth.pbkdf2.iterations=" + iterations);
+    }
+}
@@ -6,13 +6,23 @@ import java.sql.Timestamp;
 
 public class RatingService {
 
-    private final Connection conn;
+    public RatingService() {}
 
-    public RatingService(Connection conn) {
-        this.conn = conn;
+    public boolean submitRating(String userId, String ratingType, String targetName, int rating, String review) {
+        if (!isValid(userId, ratingType, targetName, rating, review)) return false;
+
+        try (Connection conn = Db.getConnection()) {
+            String ratingId = insertRating(conn, userId, ratingType, targetName, rating, review);
+            if (ratingId == null) return false;
+            System.out.println("Rating submitted successfully! Rating ID: " + ratingId);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Rating submission failed: " + e.getMessage());
+            return false;
+        }
     }
 
-    public boolean submitRating(String userId, String ratingType, String targetName, int rating, String review) {
+    private static boolean isValid(String userId, String ratingType, String targetName, int rating, String review) {
         if (userId == null || userId.trim().isEmpty()) {
             System.out.println("Login required!");
             return false;
@@ -33,13 +43,18 @@ public class RatingService {
             System.out.println("Review text is too long (max 500 characters)");
             return false;
         }
+        return true;
+    }
 
+    /** Inserts one ratings row; the rating ID, or null if none could be generated. */
+    private static String insertRating(Connection conn, String userId, String ratingType, String targetName,
+                                       int rating, String review) throws SQLException {
         String ratingId;
         try {
             ratingId = IdGenerator.uniqueNumericId(conn, "ratings", "ratingid", 12, 60);
         } catch (SQLException e) {
             System.out.println("Failed to generate rating ID: " + e.getMessage());
-            return false;
+            return null;
         }
 
         String sql = "INSERT INTO ratings (ratingid, userid, ratingtype, targetname, rating, review) VALUES (?, ?, ?, ?, ?, ?)";
@@ -54,11 +69,7 @@ public class RatingService {
             ps.setString(6, rv);
 
             ps.executeUpdate();
-            System.out.println("Rating submitted successfully! Rating ID: " + ratingId);
-            return true;
-        } catch (SQLException e) {
-            System.out.println("Rating submission failed: " + e.getMessage());
-            return false;
+            return ratingId;
         }
     }
 
@@ -70,8 +81,48 @@ public class RatingService {
         return submitRating(userId, "SPOT", spotName, rating, review);
     }
 
-    public boolean rateGuide(String userId, String guideName, int rating, String review) {
-        return submitRating(userId, "GUIDE", guideName, rating, review);
+    /**
+     * Records the rating and folds it into guides.rating / totalratings in one transaction,
+     * then re-indexes the guide so its ranking and cached daily rate follow the new average.
+     * A guide with no ratings yet has totalratings 0, so the first rating becomes the average.
+     */
+    public boolean rateGuide(String userId, String guideId, int rating, String review) {
+        if (!isValid(userId, "GUIDE", guideId, rating, review)) return false;
+
+        // MySQL applies SET left to right, so rating still sees the old totalratings
+        String sql = "UPDATE guides SET " +
+                     "rating = (COALESCE(rating, 0) * COALESCE(totalratings, 0) + ?) / (COALESCE(totalratings, 0) + 1), " +
+                     "totalratings = COALESCE(totalratings, 0) + 1 WHERE guideid = ?";
+        try (Connection conn = Db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String ratingId = insertRating(conn, userId, "GUIDE", guideId, rating, review);
+                if (ratingId == null) {
+                    conn.rollback();
+                    return false;
+                }
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, rating);
+                    ps.setString(2, guideId.trim());
+                    if (ps.executeUpdate() != 1) {
+                        conn.rollback();
+                        System.out.println("Guide not found!");
+                        return false;
+                    }
+                }
+                conn.commit();
+                System.out.println("Rating submitted successfully! Rating ID: " + ratingId);
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("Rating submission failed: " + e.getMessage());
+            return false;
+        }
+
+        GuideService.guideIndex().put(new GuideService().getGuideById(guideId));
+        return true;
     }
 
     public void displayRatings(String ratingType, String targetName) {
@@ -80,7 +131,8 @@ public class RatingService {
                 "WHERE ratingtype = ? AND targetname = ? " +
                 "ORDER BY ratingdate DESC LIMIT 10";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ratingType.trim().toUpperCase());
             ps.setString(2, targetName.trim());
             try (ResultSet rs = ps.executeQuery()) {
@@ -113,7 +165,8 @@ public class RatingService {
 
     public double getAverageRating(String ratingType, String targetName) {
         String sql = "SELECT AVG(rating) AS avgrating FROM ratings WHERE ratingtype = ? AND targetname = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ratingType.trim().toUpperCase());
             ps.setString(2, targetName.trim());
             try (ResultSet rs = ps.executeQuery()) {
@@ -127,7 +180,8 @@ public class RatingService {
 
     public int getRatingCount(String ratingType, String targetName) {
         String sql = "SELECT COUNT(*) AS cnt FROM ratings WHERE ratingtype = ? AND targetname = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ratingType.trim().toUpperCase());
             ps.setString(2, targetName.trim());
             try (ResultSet rs = ps.executeQuery()) {
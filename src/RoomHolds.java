@@ -0,0 +1,248 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived room holds taken while a tourist is checking out.
+ *
+ * Placing a hold takes the rooms right away, exactly like a booking would: the hotel counter,
+ * or every night of the stay for hotels with a room calendar. The hold is also written to
+ * room_holds. Converting it into a booking deletes that row in the booking transaction, and
+ * expiry deletes it and gives the rooms back. Whoever deletes the row first wins, so a hold is
+ * converted or released exactly once, even across app instances.
+ *
+ * Live holds are kept in a ConcurrentHashMap and expired by a {@link TimerWheel}. The same wheel
+ * runs {@link #sweepExpired()} once per TTL, which releases expired rows nobody here is tracking:
+ * holds placed by an instance that has since stopped, or whose release failed earlier.
+ */
+final class RoomHolds {
+
+    record Hold(String token, String userId, String hotelId, String roomType,
+                LocalDate checkIn, LocalDate checkOut, int numRooms, long expiresAt) {
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    // Marker filed on the expiry wheel to run the periodic sweep; never stored in room_holds
+    private static final Hold SWEEP = new Hold("sweep", null, null, null, null, null, 0, Long.MAX_VALUE);
+
+    private final long ttlMs;
+    private final ConcurrentHashMap<String, Hold> holds = new ConcurrentHashMap<>();
+    private final TimerWheel<Hold> expiry = new TimerWheel<>("comfygo-holds", 1000L, 1024, this::onDeadline);
+
+    /** The first sweep runs on the timer thread right away, then once per ttlMs. */
+    RoomHolds(long ttlMs) {
+        this.ttlMs = ttlMs;
+        expiry.schedule(SWEEP, System.currentTimeMillis());
+    }
+
+    long getTtlMs() { return ttlMs; }
+
+    int getActiveCount() { return holds.size(); }
+
+    // -------------------- Place / look up --------------------
+
+    /** Takes the rooms and records the hold; null if they are no longer free. */
+    Hold place(String userId, String hotelId, String roomType, LocalDate ci, LocalDate co, int numRooms)
+            throws SQLException {
+        Hold hold = new Hold(UUID.randomUUID().toString(), userId, hotelId, roomType, ci, co, numRooms,
+                System.currentTimeMillis() + ttlMs);
+
+        String sql = "INSERT INTO room_holds " +
+                     "(holdid, userid, hotelid, roomtype, checkindate, checkoutdate, numberofrooms, expiresat) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = Db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!reserve(conn, hold)) {
+                    conn.rollback();
+                    return null;
+                }
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, hold.token());
+                    ps.setString(2, hold.userId());
+                    ps.setString(3, hold.hotelId());
+                    ps.setString(4, hold.roomType());
+                    ps.setDate(5, java.sql.Date.valueOf(hold.checkIn()));
+                    ps.setDate(6, java.sql.Date.valueOf(hold.checkOut()));
+                    ps.setInt(7, hold.numRooms());
+                    ps.setTimestamp(8, new Timestamp(hold.expiresAt()));
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            }
+        }
+
+        applyToMemory(hold, true);
+        track(hold);
+        return hold;
+    }
+
+    /** The live hold for token, from memory or (after a restart) from room_holds; null if gone. */
+    Hold get(String token) {
+        if (token == null) return null;
+
+        Hold hold = holds.get(token);
+        if (hold == null) hold = loadOne(token);
+        return hold == null || hold.isExpired() ? null : hold;
+    }
+
+    // -------------------- Convert / release --------------------
+
+    /**
+     * Deletes the hold row inside the caller's booking transaction. False if it already expired
+     * or was used, in which case the caller must roll back. Call {@link #forget} after commit.
+     */
+    boolean consume(Connection conn, Hold hold) throws SQLException {
+        String sql = "DELETE FROM room_holds WHERE holdid = ? AND expiresat > ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, hold.token());
+            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    void forget(Hold hold) {
+        holds.remove(hold.token(), hold);
+    }
+
+    /** Gives the rooms back now; false if the hold was already converted or released. */
+    boolean release(Hold hold) {
+        try (Connection conn = Db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                boolean deleted;
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM room_holds WHERE holdid = ?")) {
+                    ps.setString(1, hold.token());
+                    deleted = ps.executeUpdate() == 1;
+                }
+                if (!deleted) {
+                    conn.rollback();
+                    forget(hold);
+                    return false;
+                }
+                unreserve(conn, hold);
+                conn.commit();
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to release room hold: " + e.getMessage());
+            // Leave it tracked; the next deadline tries again
+            expiry.schedule(hold, System.currentTimeMillis() + 30_000L);
+            return false;
+        }
+
+        forget(hold);
+        applyToMemory(hold, false);
+        return true;
+    }
+
+    /**
+     * Releases every expired row in room_holds through {@link #release}, so a hold another
+     * instance is releasing at the same moment is still given back only once.
+     */
+    void sweepExpired() {
+        String sql = "SELECT * FROM room_holds WHERE expiresat <= ?";
+        List<Hold> found = new ArrayList<>();
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) found.add(mapHold(rs));
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to sweep expired room holds: " + e.getMessage());
+            return;
+        }
+
+        for (Hold hold : found) release(hold);
+    }
+
+    void close() {
+        expiry.close();
+    }
+
+    // -------------------- Internal helpers --------------------
+
+    private void track(Hold hold) {
+        if (holds.putIfAbsent(hold.token(), hold) == null) expiry.schedule(hold, hold.expiresAt());
+    }
+
+    private void onDeadline(Hold hold) {
+        if (hold == SWEEP) {
+            try {
+                sweepExpired();
+            } finally {
+                expiry.schedule(SWEEP, System.currentTimeMillis() + ttlMs);
+            }
+            return;
+        }
+        if (holds.get(hold.token()) == hold) release(hold);
+    }
+
+    private Hold loadOne(String token) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT * FROM room_holds WHERE holdid = ? LIMIT 1")) {
+            ps.setString(1, token);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Hold hold = mapHold(rs);
+                track(hold);
+                return holds.get(token);
+            }
+        } catch (SQLException e) {
+            System.out.println("Room hold lookup failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean reserve(Connection conn, Hold h) throws SQLException {
+        return h.roomType() == null
+                ? HotelService.reserveRooms(conn, h.hotelId(), h.numRooms())
+                : HotelService.inventory().reserve(conn, h.hotelId(), h.roomType(), h.checkIn(), h.checkOut(), h.numRooms());
+    }
+
+    private static void unreserve(Connection conn, Hold h) throws SQLException {
+        if (h.roomType() == null) HotelService.releaseRooms(conn, h.hotelId(), h.numRooms());
+        else HotelService.inventory().release(conn, h.hotelId(), h.roomType(), h.checkIn(), h.checkOut(), h.numRooms());
+    }
+
+    /** Mirrors a committed reserve (taken = true) or release in the in-memory caches. */
+    private static void applyToMemory(Hold h, boolean taken) {
+        int delta = taken ? -h.numRooms() : h.numRooms();
+        if (h.roomType() == null) {
+            HotelService.catalog().patch(h.hotelId(), c -> c.setRoomAvailability(Math.max(0, c.getRoomAvailability() + delta)));
+        } else if (taken) {
+            HotelService.inventory().applyReserved(h.hotelId(), h.roomType(), h.checkIn(), h.checkOut(), h.numRooms());
+        } else {
+            HotelService.inventory().applyReleased(h.hotelId(), h.roomType(), h.checkIn(), h.checkOut(), h.numRooms());
+        }
+    }
+
+    private static Hold mapHold(ResultSet rs) throws SQLException {
+        return new Hold(
+                rs.getString("holdid"),
+                rs.getString("userid"),
+                rs.getString("hotelid"),
+                rs.getString("roomtype"),
+                rs.getDate("checkindate").toLocalDate(),
+                rs.getDate("checkoutdate").toLocalDate(),
+                rs.getInt("numberofrooms"),
+                rs.getTimestamp("expiresat").getTime());
+    }
+}
@@ -0,0 +1,387 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-night room inventory for hotels that list their rooms in the rooms table.
+ *
+ * Capacity per (hotel, room type) is the number of in-service rooms (rooms.isavailable).
+ * Nights already sold are counted in room_nights, one row per hotel/type/night. In memory each
+ * type keeps an int[] of booked counts over a rolling horizon starting today, so "how many
+ * rooms are free between ci and co" is a max over the nights in between.
+ *
+ * The database is the authority: {@link #reserve} takes every night in one guarded UPDATE
+ * inside the caller's transaction. Memory is updated after commit ({@link #applyReserved} /
+ * {@link #applyReleased}) and reloaded per hotel after a TTL to pick up other instances.
+ *
+ * A hotel that starts listing rooms may already have bookings made against its single room
+ * counter (booking.roomtype NULL). Loading its calendar adopts the ones still running: each is
+ * given a room type and its remaining nights are added to room_nights, so they can't be sold
+ * again. For these hotels hotels.roomavailability is kept at tonight's free rooms on each load.
+ */
+final class RoomInventory {
+
+    /** One room type's calendar; booked[i] is the count for night baseDay + i. */
+    static final class TypeCalendar {
+        final String roomType;
+        final double pricePerNight;
+        final int capacity;
+        final int[] booked;
+
+        TypeCalendar(String roomType, double pricePerNight, int capacity, int horizonDays) {
+            this.roomType = roomType;
+            this.pricePerNight = pricePerNight;
+            this.capacity = capacity;
+            this.booked = new int[horizonDays];
+        }
+    }
+
+    private static final class HotelCalendar {
+        final long baseDay;
+        final long expiresAt;
+        // Cheapest type first
+        final Map<String, TypeCalendar> types;
+
+        HotelCalendar(long baseDay, long expiresAt, Map<String, TypeCalendar> types) {
+            this.baseDay = baseDay;
+            this.expiresAt = expiresAt;
+            this.types = types;
+        }
+    }
+
+    private final int horizonDays;
+    private final long ttlMs;
+    private final ConcurrentHashMap<String, HotelCalendar> hotels = new ConcurrentHashMap<>();
+
+    RoomInventory(int horizonDays, long ttlMs) {
+        this.horizonDays = Math.max(1, horizonDays);
+        this.ttlMs = ttlMs;
+    }
+
+    int getHorizonDays() { return horizonDays; }
+
+    // -------------------- Reads (memory) --------------------
+
+    /** True if the hotel lists rooms, i.e. bookings go through this calendar. */
+    boolean isManaged(String hotelId) {
+        HotelCalendar c = calendar(hotelId);
+        return c != null && !c.types.isEmpty();
+    }
+
+    /** Free rooms of each type for every night in [ci, co); empty if unmanaged or out of range. */
+    List<Hotel.Room> availability(String hotelId, LocalDate ci, LocalDate co) {
+        List<Hotel.Room> out = new ArrayList<>();
+        HotelCalendar c = calendar(hotelId);
+        if (c == null) return out;
+
+        for (TypeCalendar t : c.types.values()) {
+            int free = free(c, t, ci, co);
+            if (free >= 0) out.add(new Hotel.Room(t.roomType, t.pricePerNight, t.capacity, free));
+        }
+        return out;
+    }
+
+    /** Free rooms of roomType across [ci, co), or -1 if unknown. O(nights). */
+    int free(String hotelId, String roomType, LocalDate ci, LocalDate co) {
+        HotelCalendar c = calendar(hotelId);
+        TypeCalendar t = c == null ? null : c.types.get(roomType);
+        return t == null ? -1 : free(c, t, ci, co);
+    }
+
+    /**
+     * The type to book: preferred if given, otherwise the cheapest type with numRooms free for
+     * the whole stay. Null if nothing fits.
+     */
+    String pickType(String hotelId, String preferred, LocalDate ci, LocalDate co, int numRooms) {
+        HotelCalendar c = calendar(hotelId);
+        if (c == null) return null;
+
+        if (preferred != null) {
+            TypeCalendar t = c.types.get(preferred);
+            return t != null && free(c, t, ci, co) >= numRooms ? preferred : null;
+        }
+        for (TypeCalendar t : c.types.values()) {
+            if (free(c, t, ci, co) >= numRooms) return t.roomType;
+        }
+        return null;
+    }
+
+    /** True if [ci, co) starts today or later and ends inside the horizon. */
+    boolean inHorizon(LocalDate ci, LocalDate co) {
+        long today = LocalDate.now().toEpochDay();
+        return ci.toEpochDay() >= today && co.toEpochDay() <= today + horizonDays;
+    }
+
+    private int free(HotelCalendar c, TypeCalendar t, LocalDate ci, LocalDate co) {
+        int from = (int) (ci.toEpochDay() - c.baseDay);
+        int to = (int) (co.toEpochDay() - c.baseDay);
+        if (from < 0 || to > t.booked.length || from >= to) return -1;
+
+        int maxBooked = 0;
+        synchronized (t) {
+            for (int i = from; i < to; i++) maxBooked = Math.max(maxBooked, t.booked[i]);
+        }
+        return Math.max(0, t.capacity - maxBooked);
+    }
+
+    // -------------------- Writes (database, inside the caller's transaction) --------------------
+
+    /**
+     * Books numRooms of roomType for every night in [ci, co), or nothing: false means at least
+     * one night is full and the caller must roll back.
+     */
+    boolean reserve(Connection conn, String hotelId, String roomType, LocalDate ci, LocalDate co, int numRooms)
+            throws SQLException {
+        int capacity = capacity(conn, hotelId, roomType);
+        int nights = (int) (co.toEpochDay() - ci.toEpochDay());
+        if (capacity < numRooms || nights <= 0) return false;
+
+        // Make sure every night has a row, so the guarded UPDATE below sees all of them
+        String seedSql = "INSERT IGNORE INTO room_nights (hotelid, roomtype, night, booked) VALUES (?, ?, ?, 0)";
+        try (PreparedStatement ps = conn.prepareStatement(seedSql)) {
+            for (LocalDate d = ci; d.isBefore(co); d = d.plusDays(1)) {
+                ps.setString(1, hotelId);
+                ps.setString(2, roomType);
+                ps.setDate(3, Date.valueOf(d));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        String sql = "UPDATE room_nights SET booked = booked + ? " +
+                     "WHERE hotelid = ? AND roomtype = ? AND night >= ? AND night < ? AND booked + ? <= ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, numRooms);
+            ps.setString(2, hotelId);
+            ps.setString(3, roomType);
+            ps.setDate(4, Date.valueOf(ci));
+            ps.setDate(5, Date.valueOf(co));
+            ps.setInt(6, numRooms);
+            ps.setInt(7, capacity);
+            return ps.executeUpdate() == nights;
+        }
+    }
+
+    /** Gives back numRooms of roomType for [ci, co). */
+    void release(Connection conn, String hotelId, String roomType, LocalDate ci, LocalDate co, int numRooms)
+            throws SQLException {
+        String sql = "UPDATE room_nights SET booked = GREATEST(booked - ?, 0) " +
+                     "WHERE hotelid = ? AND roomtype = ? AND night >= ? AND night < ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, numRooms);
+            ps.setString(2, hotelId);
+            ps.setString(3, roomType);
+            ps.setDate(4, Date.valueOf(ci));
+            ps.setDate(5, Date.valueOf(co));
+            ps.executeUpdate();
+        }
+    }
+
+    private static int capacity(Connection conn, String hotelId, String roomType) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM rooms WHERE hotelid = ? AND roomtype = ? AND isavailable = TRUE";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, hotelId);
+            ps.setString(2, roomType);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // -------------------- Memory updates (after commit) --------------------
+
+    void applyReserved(String hotelId, String roomType, LocalDate ci, LocalDate co, int numRooms) {
+        adjust(hotelId, roomType, ci, co, numRooms);
+    }
+
+    void applyReleased(String hotelId, String roomType, LocalDate ci, LocalDate co, int numRooms) {
+        adjust(hotelId, roomType, ci, co, -numRooms);
+    }
+
+    /** Drops one hotel's calendar, e.g. after its rooms changed; the next read reloads it. */
+    void invalidate(String hotelId) {
+        if (hotelId != null) hotels.remove(hotelId.trim());
+    }
+
+    private void adjust(String hotelId, String roomType, LocalDate ci, LocalDate co, int delta) {
+        HotelCalendar c = hotels.get(hotelId);
+        TypeCalendar t = c == null ? null : c.types.get(roomType);
+        if (t == null) return; // not loaded; the next load reads it from the database
+
+        int from = (int) Math.max(0, ci.toEpochDay() - c.baseDay);
+        int to = (int) Math.min(t.booked.length, co.toEpochDay() - c.baseDay);
+        synchronized (t) {
+            for (int i = from; i < to; i++) t.booked[i] = Math.max(0, t.booked[i] + delta);
+        }
+    }
+
+    // -------------------- Loading --------------------
+
+    private HotelCalendar calendar(String hotelId) {
+        if (hotelId == null) return null;
+        String id = hotelId.trim();
+
+        HotelCalendar c = hotels.get(id);
+        long today = LocalDate.now().toEpochDay();
+        if (c != null && System.currentTimeMillis() < c.expiresAt && c.baseDay == today) return c;
+
+        HotelCalendar fresh = load(id, today);
+        if (fresh == null) return c; // keep serving the old one if the database is unreachable
+        hotels.put(id, fresh);
+        return fresh;
+    }
+
+    private HotelCalendar load(String hotelId, long today) {
+        String typesSql = "SELECT roomtype, COUNT(*) AS capacity, MIN(roomprice) AS price FROM rooms " +
+                          "WHERE hotelid = ? AND isavailable = TRUE AND roomtype IS NOT NULL " +
+                          "GROUP BY roomtype ORDER BY price, roomtype";
+        String nightsSql = "SELECT roomtype, night, booked FROM room_nights " +
+                           "WHERE hotelid = ? AND night >= ? AND night < ?";
+
+        Map<String, TypeCalendar> types = new LinkedHashMap<>();
+        try (Connection conn = Db.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(typesSql)) {
+                ps.setString(1, hotelId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String type = rs.getString("roomtype");
+                        types.put(type, new TypeCalendar(type, rs.getDouble("price"), rs.getInt("capacity"), horizonDays));
+                    }
+                }
+            }
+            if (!types.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(nightsSql)) {
+                    ps.setString(1, hotelId);
+                    ps.setDate(2, Date.valueOf(LocalDate.ofEpochDay(today)));
+                    ps.setDate(3, Date.valueOf(LocalDate.ofEpochDay(today + horizonDays)));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            TypeCalendar t = types.get(rs.getString("roomtype"));
+                            int i = (int) (rs.getDate("night").toLocalDate().toEpochDay() - today);
+                            if (t != null && i >= 0 && i < horizonDays) t.booked[i] = rs.getInt("booked");
+                        }
+                    }
+                }
+                adoptCounterBookings(conn, hotelId, today, types);
+                syncRoomAvailability(conn, hotelId, types);
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to load room calendar: " + e.getMessage());
+            return null;
+        }
+
+        return new HotelCalendar(today, System.currentTimeMillis() + ttlMs, Collections.unmodifiableMap(types));
+    }
+
+    /**
+     * Moves the hotel's running counter bookings onto the calendar, one short transaction each.
+     * The booking row is claimed with a guarded UPDATE, so concurrent loads adopt it once.
+     */
+    private void adoptCounterBookings(Connection conn, String hotelId, long today,
+                                      Map<String, TypeCalendar> types) throws SQLException {
+        String findSql = "SELECT bookingid, checkindate, checkoutdate, numberofrooms FROM booking " +
+                         "WHERE hotelid = ? AND roomtype IS NULL AND checkoutdate > ? AND numberofrooms > 0 " +
+                         "AND bookingstatus IN (?, ?)";
+        List<Object[]> legacy = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(findSql)) {
+            ps.setString(1, hotelId);
+            ps.setDate(2, Date.valueOf(LocalDate.ofEpochDay(today)));
+            ps.setString(3, HotelService.BOOKING_COMPLETED);
+            ps.setString(4, HotelService.BOOKING_CONFIRMED);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    legacy.add(new Object[]{rs.getString(1), rs.getDate(2).toLocalDate(),
+                                            rs.getDate(3).toLocalDate(), rs.getInt(4)});
+                }
+            }
+        }
+        if (legacy.isEmpty()) return;
+
+        String claimSql = "UPDATE booking SET roomtype = ? WHERE bookingid = ? AND roomtype IS NULL";
+        String nightSql = "INSERT INTO room_nights (hotelid, roomtype, night, booked) VALUES (?, ?, ?, ?) " +
+                          "ON DUPLICATE KEY UPDATE booked = booked + VALUES(booked)";
+        int adopted = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (Object[] b : legacy) {
+                LocalDate from = (LocalDate) b[1];
+                if (from.toEpochDay() < today) from = LocalDate.ofEpochDay(today);
+                LocalDate to = (LocalDate) b[2];
+                int rooms = (Integer) b[3];
+                TypeCalendar t = typeFor(types, today, from, to, rooms);
+
+                try (PreparedStatement ps = conn.prepareStatement(claimSql)) {
+                    ps.setString(1, t.roomType);
+                    ps.setString(2, (String) b[0]);
+                    if (ps.executeUpdate() != 1) {
+                        conn.rollback(); // adopted elsewhere or cancelled meanwhile
+                        continue;
+                    }
+                }
+                // Already sold, so recorded even past capacity
+                try (PreparedStatement ps = conn.prepareStatement(nightSql)) {
+                    for (LocalDate d = from; d.isBefore(to); d = d.plusDays(1)) {
+                        ps.setString(1, hotelId);
+                        ps.setString(2, t.roomType);
+                        ps.setDate(3, Date.valueOf(d));
+                        ps.setInt(4, rooms);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                conn.commit();
+                adopted++;
+
+                int end = (int) Math.min(horizonDays, to.toEpochDay() - today);
+                for (int i = (int) (from.toEpochDay() - today); i < end; i++) t.booked[i] += rooms;
+            }
+        } catch (SQLException e) {
+            try { conn.rollback(); } catch (SQLException ignored) {}
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        if (adopted > 0) System.out.println("Moved " + adopted + " room booking(s) of hotel " + hotelId + " onto its room calendar");
+    }
+
+    /** Cheapest type with rooms free for the stay, else the type with the most rooms. */
+    private TypeCalendar typeFor(Map<String, TypeCalendar> types, long today, LocalDate from, LocalDate to, int rooms) {
+        int lo = (int) (from.toEpochDay() - today);
+        int hi = (int) Math.min(horizonDays, to.toEpochDay() - today);
+        TypeCalendar largest = null;
+        for (TypeCalendar t : types.values()) {
+            int maxBooked = 0;
+            for (int i = lo; i < hi; i++) maxBooked = Math.max(maxBooked, t.booked[i]);
+            if (t.capacity - maxBooked >= rooms) return t;
+            if (largest == null || t.capacity > largest.capacity) largest = t;
+        }
+        return largest;
+    }
+
+    /** Keeps the hotel's single counter at tonight's free rooms, for screens that still show it. */
+    private static void syncRoomAvailability(Connection conn, String hotelId, Map<String, TypeCalendar> types)
+            throws SQLException {
+        int free = 0;
+        for (TypeCalendar t : types.values()) free += Math.max(0, t.capacity - t.booked[0]);
+
+        String sql = "UPDATE hotels SET roomavailability = ? WHERE hotelid = ? AND roomavailability <> ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, free);
+            ps.setString(2, hotelId);
+            ps.setInt(3, free);
+            if (ps.executeUpdate() == 0) return;
+        }
+        int tonight = free;
+        HotelService.catalog().patch(hotelId, h -> h.setRoomAvailability(tonight));
+    }
+}
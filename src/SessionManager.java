@@ -1,24 +1,37 @@
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.Timestamp;
 import java.util.UUID;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory sessions, one per user, also indexed by token.
+ *
+ * Lookups go straight to ConcurrentHashMaps and never lock. Idle sessions are expired in the
+ * background by a {@link TimerWheel}: each session sits in the wheel at its current deadline,
+ * and when that passes the session is either expired or filed again at its new deadline.
+ *
+ * Lifecycle events are written to session_logs by a shared {@link AsyncBatchWriter}
+ * (config prefix "sessionlog", see AsyncBatchWriter.fromConfig); call {@link #shutdown()}
+ * before the connection pool closes.
+ */
 public class SessionManager {
 
-    private final Connection conn;
-
     // key = userId
-    private final Map<String, SessionData> activeSessions =
-            Collections.synchronizedMap(new HashMap<>());
+    private final ConcurrentHashMap<String, SessionData> activeSessions = new ConcurrentHashMap<>();
+    // key = sessionToken
+    private final ConcurrentHashMap<String, SessionData> sessionsByToken = new ConcurrentHashMap<>();
 
     private static final long SESSION_TIMEOUT_MS = 30L * 60L * 1000L; // 30 minutes
+    // Activity is recorded at most this often per session, to keep reads write-free
+    private static final long ACTIVITY_RESOLUTION_MS = 1000L;
 
-    public SessionManager(Connection conn) {
-        this.conn = conn;
-    }
+    private record SessionEvent(String eventType, String userId, String details, Timestamp at) {}
+
+    private static volatile AsyncBatchWriter<SessionEvent> logWriter;
+
+    private final TimerWheel<SessionData> expiry =
+            new TimerWheel<>("comfygo-session", 1000L, 512, this::onDeadline);
+
+    public SessionManager() {}
 
     public static class SessionData {
         private final String userId;
@@ -26,7 +39,7 @@ public class SessionManager {
         private final String userName;
 
         private final long createdAt;
-        private long lastActivityAt;
+        private volatile long lastActivityAt;
 
         private final String sessionToken;
 
@@ -48,7 +61,10 @@ public class SessionManager {
 
         public String getSessionToken() { return sessionToken; }
 
-        public void updateActivity() { lastActivityAt = System.currentTimeMillis(); }
+        public void updateActivity() {
+            long now = System.currentTimeMillis();
+            if (now - lastActivityAt >= ACTIVITY_RESOLUTION_MS) lastActivityAt = now;
+        }
 
         public boolean isExpired() {
             return (System.currentTimeMillis() - lastActivityAt) > SESSION_TIMEOUT_MS;
@@ -57,66 +73,135 @@ public class SessionManager {
         public long getDurationMinutes() {
             return (System.currentTimeMillis() - createdAt) / (60L * 1000L);
         }
+
+        long getDeadline() {
+            return lastActivityAt + SESSION_TIMEOUT_MS;
+        }
     }
 
-    public synchronized String createSession(String userId, String userRole, String userName) {
+    public String createSession(String userId, String userRole, String userName) {
         if (userId == null || userId.isBlank()) return null;
 
-        SessionData existing = activeSessions.get(userId);
-        if (existing != null) destroySession(userId);
-
         SessionData s = new SessionData(userId, userRole, userName);
-        activeSessions.put(userId, s);
+        sessionsByToken.put(s.getSessionToken(), s);
+
+        SessionData previous = activeSessions.put(userId, s);
+        if (previous != null) {
+            sessionsByToken.remove(previous.getSessionToken(), previous);
+            logSessionEvent("SESSION_DESTROYED", userId, "Duration(min): " + previous.getDurationMinutes());
+        }
 
+        expiry.schedule(s, s.getDeadline());
         logSessionEvent("SESSION_CREATED", userId, "Token: " + s.getSessionToken());
         return s.getSessionToken();
     }
 
-    public synchronized SessionData getSession(String userId) {
+    public SessionData getSession(String userId) {
         if (userId == null || userId.isBlank()) return null;
+        return touch(activeSessions.get(userId));
+    }
 
-        SessionData s = activeSessions.get(userId);
-        if (s == null) return null;
+    /** Looks a session up by its token alone. */
+    public SessionData getSessionByToken(String token) {
+        if (token == null) return null;
+        return touch(sessionsByToken.get(token));
+    }
+
+    public boolean verifySession(String userId, String token) {
+        if (userId == null || token == null) return false;
+        SessionData s = getSessionByToken(token);
+        return s != null && userId.equals(s.getUserId());
+    }
+
+    public void destroySession(String userId) {
+        if (userId == null || userId.isBlank()) return;
+
+        SessionData removed = activeSessions.remove(userId);
+        if (removed != null) {
+            sessionsByToken.remove(removed.getSessionToken(), removed);
+            logSessionEvent("SESSION_DESTROYED", userId, "Duration(min): " + removed.getDurationMinutes());
+        }
+    }
+
+    /** Expired sessions are removed in the background; this forces a full sweep now. */
+    public void clearExpiredSessions() {
+        for (SessionData s : activeSessions.values()) {
+            if (s.isExpired()) expire(s);
+        }
+    }
+
+    public int getActiveSessionCount() {
+        return activeSessions.size();
+    }
+
+    /** Stops the background expiry thread. */
+    public void close() {
+        expiry.close();
+    }
 
+    // -------------------- Expiry --------------------
+
+    private SessionData touch(SessionData s) {
+        if (s == null) return null;
         if (s.isExpired()) {
-            destroySession(userId);
+            expire(s);
             return null;
         }
-
         s.updateActivity();
         return s;
     }
 
-    public synchronized boolean verifySession(String userId, String token) {
-        if (token == null) return false;
-        SessionData s = getSession(userId);
-        return s != null && token.equals(s.getSessionToken());
-    }
+    private void onDeadline(SessionData s) {
+        if (activeSessions.get(s.getUserId()) != s) return; // replaced or destroyed already
 
-    public synchronized void destroySession(String userId) {
-        if (userId == null || userId.isBlank()) return;
+        if (s.isExpired()) expire(s);
+        else expiry.schedule(s, s.getDeadline()); // active since it was filed
+    }
 
-        SessionData removed = activeSessions.remove(userId);
-        if (removed != null) {
-            logSessionEvent("SESSION_DESTROYED", userId, "Duration(min): " + removed.getDurationMinutes());
+    private void expire(SessionData s) {
+        // Conditional removes: a newer session for the same user must survive
+        if (activeSessions.remove(s.getUserId(), s)) {
+            sessionsByToken.remove(s.getSessionToken(), s);
+            logSessionEvent("SESSION_EXPIRED", s.getUserId(), "Duration(min): " + s.getDurationMinutes());
         }
     }
 
-    public synchronized void clearExpiredSessions() {
-        activeSessions.entrySet().removeIf(e -> e.getValue() == null || e.getValue().isExpired());
+    // -------------------- Session log --------------------
+
+    /** Flushes queued session events and stops the writer. */
+    public static void shutdown() {
+        synchronized (SessionManager.class) {
+            if (logWriter != null) logWriter.close();
+        }
     }
 
+    public static long getLogQueuedCount() { return logWriter().getSubmittedCount(); }
+    public static long getLogFlushedCount() { return logWriter().getWrittenCount(); }
+    public static long getLogDroppedCount() { return logWriter().getDroppedCount(); }
+
     private void logSessionEvent(String eventType, String userId, String details) {
-        if (conn == null) return;
-
-        String sql = "INSERT INTO session_logs (eventtype, userid, details) VALUES (?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, eventType);
-            ps.setString(2, userId);
-            ps.setString(3, details);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("Failed to log session event: " + e.getMessage());
+        logWriter().submit(new SessionEvent(eventType, userId, details, new Timestamp(System.currentTimeMillis())));
+    }
+
+    private static AsyncBatchWriter<SessionEvent> logWriter() {
+        AsyncBatchWriter<SessionEvent> w = logWriter;
+        if (w != null) return w;
+
+        synchronized (SessionManager.class) {
+            if (logWriter == null) {
+                logWriter = AsyncBatchWriter.fromConfig(
+                        "sessionlog",
+                        "INSERT INTO session_logs (eventtype, userid, details, timestamp) VALUES (?, ?, ?, ?)",
+                        (ps, e) -> {
+                            ps.setString(1, e.eventType());
+                            ps.setString(2, e.userId());
+                            ps.setString(3, e.details());
+                            ps.setTimestamp(4, e.at());
+                        },
+                        e -> e.at() + "\t" + e.eventType() + "\t" + e.userId() + "\t" + e.details(),
+                        null);
+            }
+            return logWriter;
         }
     }
-}
\ No newline at end of file
+}
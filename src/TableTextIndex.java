@@ -0,0 +1,101 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link TrigramIndex} over text columns of one table, loaded lazily and rebuilt after a TTL.
+ *
+ * The load query must return the key in column 1 and the text fields after it. Writes made
+ * through the app call {@link #put}/{@link #remove} so they are searchable at once; writes from
+ * anywhere else show up on the next rebuild.
+ */
+final class TableTextIndex {
+
+    private static final long RETRY_AFTER_FAILURE_MS = 5_000L;
+
+    private final String name;
+    private final String loadSql;
+    private final long ttlMs;
+    private final TrigramIndex index = new TrigramIndex();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile boolean loaded;
+    private volatile long expiresAt;
+
+    TableTextIndex(String name, String loadSql, long ttlMs) {
+        this.name = name;
+        this.loadSql = loadSql;
+        this.ttlMs = ttlMs;
+    }
+
+    /** Ranked keys for query, best first. */
+    List<TrigramIndex.Hit> search(String query, int limit) {
+        ensureFresh();
+        return index.search(query, limit);
+    }
+
+    void put(String key, String... fields) {
+        index.put(key, fields);
+    }
+
+    void remove(String key) {
+        index.remove(key);
+    }
+
+    /** Forces a rebuild on the next search. */
+    void invalidate() {
+        expiresAt = 0L;
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    private void ensureFresh() {
+        if (loaded && System.currentTimeMillis() < expiresAt) return;
+
+        // One thread rebuilds; the rest search the current index unless there is none yet
+        if (loaded) {
+            if (!reloadLock.tryLock()) return;
+        } else {
+            reloadLock.lock();
+        }
+        try {
+            if (loaded && System.currentTimeMillis() < expiresAt) return;
+            reload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void reload() {
+        Map<String, String> docs = new HashMap<>();
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(loadSql);
+             ResultSet rs = ps.executeQuery()) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                List<String> fields = new ArrayList<>(columns - 1);
+                for (int c = 2; c <= columns; c++) {
+                    String v = rs.getString(c);
+                    if (v != null) fields.add(v);
+                }
+                docs.put(rs.getString(1), String.join(" ", fields));
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to load " + name + " search index: " + e.getMessage());
+            expiresAt = System.currentTimeMillis() + Math.min(ttlMs, RETRY_AFTER_FAILURE_MS);
+            return;
+        }
+
+        index.replaceAll(docs);
+        loaded = true;
+        expiresAt = System.currentTimeMillis() + ttlMs;
+    }
+}
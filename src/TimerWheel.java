@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: deadlines are dropped into one of a fixed number of slots by
+ * (deadline / tickMs) mod slots, and a background thread visits one slot per tick.
+ * Scheduling is O(1) and lock-free; each entry is looked at once per wheel revolution.
+ *
+ * There is no cancel. Handlers get every item whose deadline passed and decide for
+ * themselves whether it is still relevant (and may schedule it again).
+ */
+public final class TimerWheel<T> {
+
+    private static final class Entry<T> {
+        final T item;
+        final long tick;
+
+        Entry(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+
+    private final long tickMs;
+    private final int mask;
+    private final List<Queue<Entry<T>>> slots;
+    private final Consumer<T> onExpire;
+    private final ScheduledExecutorService ticker;
+
+    // Next tick the ticker will process; written only by the ticker thread
+    private volatile long nextTick;
+
+    public TimerWheel(String name, long tickMs, int slotCount, Consumer<T> onExpire) {
+        if (tickMs < 1) throw new IllegalArgumentException("tickMs must be >= 1");
+        if (slotCount < 1 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("slotCount must be a power of two");
+        }
+
+        this.tickMs = tickMs;
+        this.mask = slotCount - 1;
+        this.onExpire = onExpire;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) slots.add(new ConcurrentLinkedQueue<>());
+        this.nextTick = System.currentTimeMillis() / tickMs;
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.ticker.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Hands item to the expiry handler once deadlineMs has passed (within one tick). */
+    public void schedule(T item, long deadlineMs) {
+        // Never file into a slot the ticker has already passed for this round
+        long tick = Math.max((deadlineMs + tickMs - 1) / tickMs, nextTick);
+        slots.get((int) (tick & mask)).add(new Entry<>(item, tick));
+    }
+
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    private void advance() {
+        long nowTick = System.currentTimeMillis() / tickMs;
+        long tick = nextTick;
+
+        while (tick <= nowTick) {
+            Iterator<Entry<T>> it = slots.get((int) (tick & mask)).iterator();
+            while (it.hasNext()) {
+                Entry<T> e = it.next();
+                if (e.tick > tick) continue; // due in a later revolution
+                it.remove();
+                try {
+                    onExpire.accept(e.item);
+                } catch (RuntimeException ex) {
+                    System.out.println("Timer handler failed: " + ex.getMessage());
+                }
+            }
+            tick++;
+            nextTick = tick;
+        }
+    }
+}
@@ -4,17 +4,43 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class TouristDashboard extends JPanel {
     private final ComfyGoGUI mainFrame;
     private final JPanel contentPanel;
     private final CardLayout contentLayout;
+    // Hotel id for each row of the hotels table, in row order
+    private final List<String> hotelRowIds = new ArrayList<>();
+    // Guide id for each row of the guides table, in row order
+    private final List<String> guideRowIds = new ArrayList<>();
+    // Rooms held since 'Calculate Total', and the hotel|in|out|rooms they were held for
+    private String hotelHoldToken;
+    private String hotelHoldKey;
+    // Fee quote from 'Calculate Total Fee' for the selected guide and days; booking charges it
+    private FeeQuotes.Quote guideQuote;
+    // Database work for this screen; cancelled when the dashboard is closed
+    private final UiTasks tasks;
+    // Screens are built the first time they are shown (or prefetched); EDT only
+    private final Map<String, Supplier<JPanel>> panelFactories = new LinkedHashMap<>();
+    private final Map<String, JPanel> builtPanels = new HashMap<>();
+    private final Map<String, Long> tabStarted = new HashMap<>();
+    private final long createdAt = System.nanoTime();
+    private boolean painted;
+    private Runnable reloadBookings;
+
+    /** What the hotel booking task hands back to the form; hotel is null if it no longer exists. */
+    private record HotelBookingResult(Hotel hotel, double totalPrice, boolean success) {}
 
     public TouristDashboard(ComfyGoGUI mainFrame) {
         this.mainFrame = mainFrame;
+        this.tasks = new UiTasks(this);
         setLayout(new BorderLayout());
         setBackground(ComfyGoGUI.BACKGROUND);
 
@@ -25,16 +51,80 @@ public class TouristDashboard extends JPanel {
         contentPanel = new JPanel(contentLayout);
         contentPanel.setBackground(ComfyGoGUI.BACKGROUND);
 
-        contentPanel.add(createHomePanel(), "HOME");
-        contentPanel.add(createHotelsPanel(), "HOTELS");
-        contentPanel.add(createSpotsPanel(), "SPOTS");
-        contentPanel.add(createGuidesPanel(), "GUIDES");
-        contentPanel.add(createTransportPanel(), "TRANSPORT");
-        contentPanel.add(createBookingsPanel(), "BOOKINGS");
-        contentPanel.add(createRatingsPanel(), "RATINGS");
+        panelFactories.put("HOME", this::createHomePanel);
+        panelFactories.put("HOTELS", this::createHotelsPanel);
+        panelFactories.put("SPOTS", this::createSpotsPanel);
+        panelFactories.put("GUIDES", this::createGuidesPanel);
+        panelFactories.put("TRANSPORT", this::createTransportPanel);
+        panelFactories.put("BOOKINGS", this::createBookingsPanel);
+        panelFactories.put("RATINGS", this::createRatingsPanel);
 
         add(contentPanel, BorderLayout.CENTER);
-        contentLayout.show(contentPanel, "HOME");
+        showPanel("HOME");
+    }
+
+    // -------------------- Lazy screens --------------------
+
+    // Screens that load data; their load time runs until the first result arrives
+    private static final List<String> DATA_TABS = List.of("HOTELS", "SPOTS", "GUIDES", "BOOKINGS");
+    private static final String DEFAULT_PREFETCH = "HOTELS,BOOKINGS";
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (painted) return;
+        painted = true;
+        System.out.println("Tourist dashboard first paint after " + millisSince(createdAt) + " ms");
+        SwingUtilities.invokeLater(this::prefetch);
+    }
+
+    private void showPanel(String name) {
+        ensurePanel(name);
+        contentLayout.show(contentPanel, name);
+    }
+
+    /** Shows My Bookings with fresh rows (a booking was just made). */
+    private void showBookings() {
+        if (!ensurePanel("BOOKINGS")) reloadBookings.run();
+        contentLayout.show(contentPanel, "BOOKINGS");
+    }
+
+    /** Builds the named screen unless it exists; true if it was built now. */
+    private boolean ensurePanel(String name) {
+        if (builtPanels.containsKey(name)) return false;
+
+        long start = System.nanoTime();
+        if (DATA_TABS.contains(name)) tabStarted.put(name, start);
+        JPanel panel = panelFactories.get(name).get();
+        builtPanels.put(name, panel);
+        contentPanel.add(panel, name);
+        System.out.println("Tab " + name + " built in " + millisSince(start) + " ms");
+        return true;
+    }
+
+    /**
+     * Builds the screens the tourist usually opens next (ui.prefetch), one per EDT turn so
+     * input is never held up for long. Their queries then run side by side on the worker pool.
+     */
+    private void prefetch() {
+        String tabs = Db.config().getProperty("ui.prefetch", DEFAULT_PREFETCH);
+        for (String tab : tabs.split(",")) {
+            String name = tab.trim().toUpperCase();
+            if (!panelFactories.containsKey(name)) continue;
+            SwingUtilities.invokeLater(() -> {
+                if (isDisplayable()) ensurePanel(name);
+            });
+        }
+    }
+
+    /** Called when a screen's first data arrives; reports it once. */
+    private void tabLoaded(String name) {
+        Long start = tabStarted.remove(name);
+        if (start != null) System.out.println("Tab " + name + " loaded in " + millisSince(start) + " ms");
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
     }
 
     private JPanel createSidebar() {
@@ -103,6 +193,9 @@ public class TouristDashboard extends JPanel {
 
         sidebar.add(Box.createVerticalGlue());
 
+        sidebar.add(tasks.indicator());
+        sidebar.add(Box.createRigidArea(new Dimension(0, 12)));
+
         JButton logoutBtn = ComfyGoGUI.createStyledButton("Logout", ComfyGoGUI.DANGER);
         logoutBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
         logoutBtn.setMaximumSize(new Dimension(240, 50));
@@ -135,7 +228,7 @@ public class TouristDashboard extends JPanel {
             }
         });
 
-        btn.addActionListener(e -> contentLayout.show(contentPanel, panel));
+        btn.addActionListener(e -> showPanel(panel));
         return btn;
     }
 
@@ -320,8 +413,16 @@ public class TouristDashboard extends JPanel {
         splitPanel.add(leftPanel);
         splitPanel.add(bookingFormPanel);
 
-        Runnable loadAll = () -> updateHotelTable(model, mainFrame.getHotelService().getAllHotels());
-        Runnable doSearch = () -> updateHotelTable(model, mainFrame.getHotelService().searchHotelsByLocation(locationField.getText().trim()));
+        Runnable loadAll = () -> tasks.run("hotels", () -> mainFrame.getHotelService().getAllHotels(),
+            hotels -> {
+                updateHotelTable(model, hotels);
+                tabLoaded("HOTELS");
+            }, searchBtn, showAllBtn);
+        Runnable doSearch = () -> {
+            String query = locationField.getText().trim();
+            tasks.run("hotels", () -> mainFrame.getHotelService().searchHotelsByLocation(query),
+                hotels -> updateHotelTable(model, hotels), searchBtn, showAllBtn);
+        };
 
         loadAll.run();
         searchBtn.addActionListener(e -> doSearch.run());
@@ -335,7 +436,9 @@ public class TouristDashboard extends JPanel {
 
     private void updateHotelTable(DefaultTableModel model, List<Hotel> hotels) {
         model.setRowCount(0);
+        hotelRowIds.clear();
         for (Hotel h : hotels) {
+            hotelRowIds.add(h.getHotelId());
             model.addRow(new Object[]{
                 h.getHotelName(),
                 h.getHotelLocation(),
@@ -346,6 +449,18 @@ public class TouristDashboard extends JPanel {
         }
     }
 
+    private void releaseHotelHold() {
+        String token = hotelHoldToken;
+        hotelHoldToken = null;
+        hotelHoldKey = null;
+        if (token != null) UiTasks.submit(() -> mainFrame.getHotelService().releaseRoomHold(token));
+    }
+
+    private String selectedHotelId(JTable hotelTable) {
+        int row = hotelTable.getSelectedRow();
+        return row >= 0 && row < hotelRowIds.size() ? hotelRowIds.get(row) : null;
+    }
+
     private JPanel createHotelBookingForm(JTable hotelTable, DefaultTableModel hotelModel) {
         JPanel card = createCard();
         card.setLayout(new BorderLayout());
@@ -397,6 +512,11 @@ public class TouristDashboard extends JPanel {
         calculateBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
         calculateBtn.setMaximumSize(new Dimension(Integer.MAX_VALUE, 50));
 
+        JButton bookBtn = ComfyGoGUI.createStyledButton("Confirm Booking & Pay", ComfyGoGUI.SUCCESS);
+        bookBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
+        bookBtn.setMaximumSize(new Dimension(Integer.MAX_VALUE, 55));
+        bookBtn.setFont(new Font("Segoe UI", Font.BOLD, 16));
+
         calculateBtn.addActionListener(e -> {
             int selectedRow = hotelTable.getSelectedRow();
             if (selectedRow < 0) {
@@ -418,8 +538,34 @@ public class TouristDashboard extends JPanel {
                     double pricePerNight = Double.parseDouble(priceStr);
                     int rooms = (int) roomsSpinner.getValue();
                     double total = pricePerNight * rooms * days;
+                    String totalText = String.format("Total: BDT %.2f (%d nights, %d rooms)", total, days, rooms);
+
+                    // Hold the rooms now so they cannot go while the payment details are typed in
+                    String hotelId = selectedHotelId(hotelTable);
+                    String key = hotelId + "|" + checkIn + "|" + checkOut + "|" + rooms;
+                    if (days > 0 && hotelId != null && (!key.equals(hotelHoldKey) || hotelHoldToken == null)) {
+                        releaseHotelHold();
+                        totalLabel.setText("Checking rooms...");
+                        tasks.run(() -> mainFrame.getHotelService().placeRoomHold(
+                            mainFrame.getCurrentUserId(), hotelId, checkIn, checkOut, rooms), token -> {
+                            if (token != null && !hotelId.equals(selectedHotelId(hotelTable))) {
+                                // Selection moved on while we waited
+                                UiTasks.submit(() -> mainFrame.getHotelService().releaseRoomHold(token));
+                                return;
+                            }
+                            hotelHoldToken = token;
+                            hotelHoldKey = token == null ? null : key;
+                            if (token == null) {
+                                totalLabel.setText("Not enough rooms for those dates");
+                                JOptionPane.showMessageDialog(mainFrame, "Not enough rooms are free for those dates.", "Unavailable", JOptionPane.WARNING_MESSAGE);
+                                return;
+                            }
+                            totalLabel.setText(totalText);
+                        }, calculateBtn, bookBtn);
+                        return;
+                    }
 
-                    totalLabel.setText(String.format("Total: BDT %.2f (%d nights, %d rooms)", total, days, rooms));
+                    totalLabel.setText(totalText);
                 } catch (Exception ex) {
                     totalLabel.setText("Invalid dates!");
                     JOptionPane.showMessageDialog(mainFrame, "Invalid date format! Use YYYY-MM-DD", "Error", JOptionPane.ERROR_MESSAGE);
@@ -447,11 +593,6 @@ public class TouristDashboard extends JPanel {
         amountField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 45));
         amountField.setAlignmentX(Component.LEFT_ALIGNMENT);
 
-        JButton bookBtn = ComfyGoGUI.createStyledButton("Confirm Booking & Pay", ComfyGoGUI.SUCCESS);
-        bookBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
-        bookBtn.setMaximumSize(new Dimension(Integer.MAX_VALUE, 55));
-        bookBtn.setFont(new Font("Segoe UI", Font.BOLD, 16));
-
         bookBtn.addActionListener(e -> {
             int selectedRow = hotelTable.getSelectedRow();
             if (selectedRow < 0) {
@@ -470,19 +611,7 @@ public class TouristDashboard extends JPanel {
 
             try {
                 String hotelName = String.valueOf(hotelModel.getValueAt(selectedRow, 0));
-                Hotel selectedHotel = null;
-                List<Hotel> allHotels = mainFrame.getHotelService().getAllHotels();
-                for (Hotel h : allHotels) {
-                    if (h.getHotelName().equals(hotelName)) {
-                        selectedHotel = h;
-                        break;
-                    }
-                }
-
-                if (selectedHotel == null) {
-                    JOptionPane.showMessageDialog(mainFrame, "Hotel not found!", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
+                String hotelId = selectedHotelId(hotelTable);
 
                 double paidAmount = Double.parseDouble(amountStr);
                 int rooms = (int) roomsSpinner.getValue();
@@ -490,40 +619,62 @@ public class TouristDashboard extends JPanel {
                     java.time.LocalDate.parse(checkIn),
                     java.time.LocalDate.parse(checkOut)
                 );
-                double totalPrice = selectedHotel.getPricePerNight() * rooms * days;
                 String paymentMethod = (String) methodCombo.getSelectedItem();
 
-                boolean success = mainFrame.getHotelService().bookHotelWithPayment(
-                    mainFrame.getCurrentUserId(),
-                    selectedHotel.getHotelId(),
-                    checkIn,
-                    checkOut,
-                    rooms,
-                    totalPrice,
-                    paymentMethod,
-                    paidAmount
-                );
-
-                if (success) {
-                    JOptionPane.showMessageDialog(mainFrame,
-                        String.format("Booking Confirmed!\n\nHotel: %s\nCheck-in: %s\nCheck-out: %s\nRooms: %d\nTotal: BDT %.2f\nPaid: BDT %.2f\n\nThank you for booking with ComfyGo!",
-                            hotelName, checkIn, checkOut, rooms, totalPrice, paidAmount),
-                        "Success",
-                        JOptionPane.INFORMATION_MESSAGE);
-
-                    checkInField.setText(java.time.LocalDate.now().plusDays(1).toString());
-                    checkOutField.setText(java.time.LocalDate.now().plusDays(3).toString());
-                    roomsSpinner.setValue(1);
-                    amountField.setText("");
-                    totalLabel.setText("Total: BDT 0.00");
-                    hotelTable.clearSelection();
-                    selectedHotelLabel.setText("Select a hotel from the table");
-                    priceLabel.setText("");
-
-                    contentLayout.show(contentPanel, "BOOKINGS");
-                } else {
-                    JOptionPane.showMessageDialog(mainFrame, "Booking failed! Please check console for details.", "Booking Failed", JOptionPane.ERROR_MESSAGE);
-                }
+                String key = hotelId + "|" + checkIn + "|" + checkOut + "|" + rooms;
+                String holdToken = hotelHoldToken != null && key.equals(hotelHoldKey) ? hotelHoldToken : null;
+
+                tasks.runChange(() -> {
+                    Hotel selectedHotel = hotelId == null ? null : mainFrame.getHotelService().getHotelById(hotelId);
+                    if (selectedHotel == null) return new HotelBookingResult(null, 0, false);
+
+                    double totalPrice = selectedHotel.getPricePerNight() * rooms * days;
+                    boolean success = holdToken != null
+                        ? mainFrame.getHotelService().bookHeldRooms(
+                            mainFrame.getCurrentUserId(), holdToken, totalPrice, paymentMethod, paidAmount)
+                        : mainFrame.getHotelService().bookHotelWithPayment(
+                            mainFrame.getCurrentUserId(),
+                            selectedHotel.getHotelId(),
+                            checkIn,
+                            checkOut,
+                            rooms,
+                            totalPrice,
+                            paymentMethod,
+                            paidAmount
+                        );
+                    return new HotelBookingResult(selectedHotel, totalPrice, success);
+                }, result -> {
+                    if (result.hotel() == null) {
+                        JOptionPane.showMessageDialog(mainFrame, "Hotel not found!", "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    double totalPrice = result.totalPrice();
+
+                    if (result.success()) {
+                        if (holdToken != null && holdToken.equals(hotelHoldToken)) {
+                            hotelHoldToken = null; // used up by the booking
+                            hotelHoldKey = null;
+                        }
+                        JOptionPane.showMessageDialog(mainFrame,
+                            String.format("Booking Confirmed!\n\nHotel: %s\nCheck-in: %s\nCheck-out: %s\nRooms: %d\nTotal: BDT %.2f\nPaid: BDT %.2f\n\nThank you for booking with ComfyGo!",
+                                hotelName, checkIn, checkOut, rooms, totalPrice, paidAmount),
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+
+                        checkInField.setText(java.time.LocalDate.now().plusDays(1).toString());
+                        checkOutField.setText(java.time.LocalDate.now().plusDays(3).toString());
+                        roomsSpinner.setValue(1);
+                        amountField.setText("");
+                        totalLabel.setText("Total: BDT 0.00");
+                        hotelTable.clearSelection();
+                        selectedHotelLabel.setText("Select a hotel from the table");
+                        priceLabel.setText("");
+
+                        showBookings();
+                    } else {
+                        JOptionPane.showMessageDialog(mainFrame, "Booking failed! Please check console for details.", "Booking Failed", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, bookBtn, calculateBtn);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(mainFrame, "Invalid input: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -532,6 +683,7 @@ public class TouristDashboard extends JPanel {
         hotelTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = hotelTable.getSelectedRow();
+                releaseHotelHold();
                 if (selectedRow >= 0) {
                     String hotelName = String.valueOf(hotelModel.getValueAt(selectedRow, 0));
                     String location = String.valueOf(hotelModel.getValueAt(selectedRow, 1));
@@ -593,8 +745,6 @@ public class TouristDashboard extends JPanel {
         body.setOpaque(false);
         body.setBorder(new EmptyBorder(20, 0, 0, 0));
 
-        List<TouristSpot> spots = mainFrame.getSpotService().getAllSpots();
-
         JPanel cardsPanel = new JPanel(new GridLayout(0, 3, 20, 20));
         cardsPanel.setOpaque(false);
 
@@ -609,12 +759,18 @@ public class TouristDashboard extends JPanel {
             new Color(149, 165, 166)
         };
 
-        int colorIndex = 0;
-        for (TouristSpot spot : spots) {
-            JPanel spotCard = createSpotCard(spot, divisionColors[colorIndex % divisionColors.length]);
-            cardsPanel.add(spotCard);
-            colorIndex++;
-        }
+        tasks.run("spots", () -> mainFrame.getSpotService().getAllSpots(), spots -> {
+            cardsPanel.removeAll();
+            int colorIndex = 0;
+            for (TouristSpot spot : spots) {
+                JPanel spotCard = createSpotCard(spot, divisionColors[colorIndex % divisionColors.length]);
+                cardsPanel.add(spotCard);
+                colorIndex++;
+            }
+            cardsPanel.revalidate();
+            cardsPanel.repaint();
+            tabLoaded("SPOTS");
+        });
 
         JScrollPane scrollPane = new JScrollPane(cardsPanel);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
@@ -765,16 +921,21 @@ public class TouristDashboard extends JPanel {
             }
         };
 
-        List<Guide> guides = mainFrame.getGuideService().getAvailableGuides();
-        for (Guide g : guides) {
-            model.addRow(new Object[]{
-                g.getGuideName(),
-                g.getSpecialization(),
-                g.getGuideDivision(),
-                g.getYearExperience() + " years",
-                g.getRating() + "/5"
-            });
-        }
+        tasks.run("guides", () -> mainFrame.getGuideService().getAvailableGuides(), guides -> {
+            model.setRowCount(0);
+            guideRowIds.clear();
+            for (Guide g : guides) {
+                guideRowIds.add(g.getGuideId());
+                model.addRow(new Object[]{
+                    g.getGuideName(),
+                    g.getSpecialization(),
+                    g.getGuideDivision(),
+                    g.getYearExperience() + " years",
+                    g.getRating() + "/5"
+                });
+            }
+            tabLoaded("GUIDES");
+        });
 
         JTable table = createStyledTable(model);
         JScrollPane tableScroll = new JScrollPane(table);
@@ -870,7 +1031,7 @@ public class TouristDashboard extends JPanel {
         JTextField feeField = ComfyGoGUI.createStyledTextField();
         feeField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 45));
         feeField.setAlignmentX(Component.LEFT_ALIGNMENT);
-        feeField.setText("500");
+        feeField.setEditable(false);
 
         JLabel totalFeeLabel = new JLabel("Total Fee: BDT 0.00");
         totalFeeLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
@@ -881,15 +1042,34 @@ public class TouristDashboard extends JPanel {
         calculateFeeBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
         calculateFeeBtn.setMaximumSize(new Dimension(Integer.MAX_VALUE, 50));
 
+        // A quote is only good for the guide and days it was made for
+        Runnable clearQuote = () -> {
+            tasks.cancel("guideQuote");
+            guideQuote = null;
+            feeField.setText("");
+            totalFeeLabel.setText("Total Fee: BDT 0.00");
+        };
+        daysSpinner.addChangeListener(e -> clearQuote.run());
+
         calculateFeeBtn.addActionListener(e -> {
-            try {
-                int days = (int) daysSpinner.getValue();
-                double feePerDay = Double.parseDouble(feeField.getText().trim());
-                double total = days * feePerDay;
-                totalFeeLabel.setText(String.format("Total Fee: BDT %.2f (%d days)", total, days));
-            } catch (NumberFormatException ex) {
-                totalFeeLabel.setText("Invalid fee amount!");
+            int selectedRow = guideTable.getSelectedRow();
+            String guideId = selectedRow >= 0 && selectedRow < guideRowIds.size() ? guideRowIds.get(selectedRow) : null;
+            if (guideId == null) {
+                JOptionPane.showMessageDialog(mainFrame, "Please select a guide first!", "No Guide Selected", JOptionPane.WARNING_MESSAGE);
+                return;
             }
+            int days = (int) daysSpinner.getValue();
+
+            tasks.run("guideQuote", () -> mainFrame.getGuideService().quoteFee(guideId, days), quote -> {
+                guideQuote = quote;
+                if (quote == null) {
+                    feeField.setText("");
+                    totalFeeLabel.setText("Guide is not available!");
+                    return;
+                }
+                feeField.setText(String.format("%.2f", quote.dailyRate()));
+                totalFeeLabel.setText(String.format("Total Fee: BDT %.2f (%d days)", quote.total(), days));
+            }, calculateFeeBtn);
         });
 
         JSeparator sep = new JSeparator();
@@ -924,56 +1104,49 @@ public class TouristDashboard extends JPanel {
 
             try {
                 String guideName = String.valueOf(guideModel.getValueAt(selectedRow, 0));
-                Guide selectedGuide = null;
-                List<Guide> allGuides = mainFrame.getGuideService().getAvailableGuides();
-                for (Guide g : allGuides) {
-                    if (g.getGuideName().equals(guideName)) {
-                        selectedGuide = g;
-                        break;
-                    }
-                }
-
-                if (selectedGuide == null) {
+                String guideId = selectedRow < guideRowIds.size() ? guideRowIds.get(selectedRow) : null;
+                if (guideId == null) {
                     JOptionPane.showMessageDialog(mainFrame, "Guide not found!", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-
                 int days = (int) daysSpinner.getValue();
-                double feePerDay = Double.parseDouble(feeField.getText().trim());
-                double totalFee = days * feePerDay;
+                FeeQuotes.Quote quote = guideQuote;
+                if (quote == null || quote.isExpired() || !quote.guideId().equals(guideId) || quote.days() != days) {
+                    JOptionPane.showMessageDialog(mainFrame, "Please calculate the total fee first!", "Missing Information", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
                 String paymentMethod = (String) paymentCombo.getSelectedItem();
 
-                boolean success = mainFrame.getGuideService().bookGuideWithPayment(
+                tasks.runChange(() -> mainFrame.getGuideService().bookGuideWithPayment(
                     mainFrame.getCurrentUserId(),
-                    selectedGuide.getGuideId(),
+                    guideId,
                     location,
                     days,
                     startDate,
-                    totalFee,
+                    quote.token(),
                     paymentMethod,
-                    totalFee
-                );
-
-                if (success) {
-                    JOptionPane.showMessageDialog(mainFrame,
-                        String.format("Guide Booking Confirmed!\n\nGuide: %s\nLocation: %s\nDuration: %d days\nStart Date: %s\nTotal Fee: BDT %.2f\n\nThank you for booking with ComfyGo!",
-                            guideName, location, days, startDate, totalFee),
-                        "Success",
-                        JOptionPane.INFORMATION_MESSAGE);
-
-                    locationField.setText("");
-                    startDateField.setText(java.time.LocalDate.now().plusDays(2).toString());
-                    daysSpinner.setValue(1);
-                    feeField.setText("500");
-                    totalFeeLabel.setText("Total Fee: BDT 0.00");
-                    guideTable.clearSelection();
-                    selectedGuideLabel.setText("No guide selected");
-                    guideDetailsLabel.setText("Click on a guide from the table");
-
-                    contentLayout.show(contentPanel, "BOOKINGS");
-                } else {
-                    JOptionPane.showMessageDialog(mainFrame, "Booking failed! Please try again.", "Booking Failed", JOptionPane.ERROR_MESSAGE);
-                }
+                    quote.total()
+                ), success -> {
+                    if (success) {
+                        JOptionPane.showMessageDialog(mainFrame,
+                            String.format("Guide Booking Confirmed!\n\nGuide: %s\nLocation: %s\nDuration: %d days\nStart Date: %s\nTotal Fee: BDT %.2f\n\nThank you for booking with ComfyGo!",
+                                guideName, location, days, startDate, quote.total()),
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+
+                        locationField.setText("");
+                        startDateField.setText(java.time.LocalDate.now().plusDays(2).toString());
+                        daysSpinner.setValue(1);
+                        clearQuote.run();
+                        guideTable.clearSelection();
+                        selectedGuideLabel.setText("No guide selected");
+                        guideDetailsLabel.setText("Click on a guide from the table");
+
+                        showBookings();
+                    } else {
+                        JOptionPane.showMessageDialog(mainFrame, "Booking failed! Please try again.", "Booking Failed", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, bookGuideBtn);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(mainFrame, "Invalid input: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -982,6 +1155,7 @@ public class TouristDashboard extends JPanel {
         guideTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = guideTable.getSelectedRow();
+                clearQuote.run();
                 if (selectedRow >= 0) {
                     String guideName = String.valueOf(guideModel.getValueAt(selectedRow, 0));
                     String specialization = String.valueOf(guideModel.getValueAt(selectedRow, 1));
@@ -1411,6 +1585,11 @@ public class TouristDashboard extends JPanel {
         passengersSpinner.setMaximumSize(new Dimension(Integer.MAX_VALUE, 45));
         passengersSpinner.setAlignmentX(Component.LEFT_ALIGNMENT);
 
+        JLabel seatsLabel = createFormLabel("Preferred Seats (optional, e.g. A1, A2)");
+        JTextField seatsField = ComfyGoGUI.createStyledTextField();
+        seatsField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 45));
+        seatsField.setAlignmentX(Component.LEFT_ALIGNMENT);
+
         JLabel totalLabel = new JLabel("Total Fare: BDT 0.00");
         totalLabel.setFont(new Font("Segoe UI", Font.BOLD, 22));
         totalLabel.setForeground(new Color(76, 175, 80));
@@ -1440,6 +1619,13 @@ public class TouristDashboard extends JPanel {
                 double total = basePrice * passengers;
 
                 totalLabel.setText(String.format("Total Fare: BDT %.2f (%d passengers)", total, passengers));
+
+                String vehicleName = selectedVehicle.getText().replace("Selected: ", "");
+                String date = dateField.getText().trim();
+                tasks.run("seatsLeft:" + transportType, () -> mainFrame.getTransportService().getAvailableSeats(
+                    transportType, from, to, date, vehicleName
+                ), left -> totalLabel.setText(String.format("Total Fare: BDT %.2f (%d passengers, %d seats left)",
+                    total, passengers, left)));
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(mainFrame, "Error calculating fare!", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -1492,43 +1678,43 @@ public class TouristDashboard extends JPanel {
                 double totalFare = basePrice * passengers;
                 String paymentMethod = (String) paymentCombo.getSelectedItem();
 
-                String seatNumbers = generateSeatNumbers(passengers);
+                String preferredSeats = seatsField.getText().trim();
 
-                boolean success = mainFrame.getTransportService().bookTransport(
+                tasks.runChange(() -> mainFrame.getTransportService().bookTickets(
                     mainFrame.getCurrentUserId(),
                     transportType,
                     from,
                     to,
                     date,
-                    java.time.LocalDateTime.now().toString(),
                     passengers,
-                    seatNumbers,
+                    preferredSeats,
                     totalFare,
                     vehicleName,
                     "ComfyGo " + transportType,
                     false,
                     null
-                );
-
-                if (success) {
-                    JOptionPane.showMessageDialog(mainFrame,
-                        String.format("Booking Confirmed!\n\n%s: %s\nRoute: %s to %s\nDate: %s\nPassengers: %d\nSeats: %s\nTotal Fare: BDT %.2f\nPayment: %s\n\nHave a safe journey!",
-                            transportType, vehicleName, from, to, date, passengers, seatNumbers, totalFare, paymentMethod),
-                        "Success",
-                        JOptionPane.INFORMATION_MESSAGE);
-
-                    fromCombo.setSelectedIndex(0);
-                    toCombo.setSelectedIndex(0);
-                    dateField.setText(java.time.LocalDate.now().plusDays(1).toString());
-                    passengersSpinner.setValue(1);
-                    totalLabel.setText("Total Fare: BDT 0.00");
-                    selectedVehicle.setText("Select a " + transportType.toLowerCase() + " type");
-                    hiddenPrice.setText("0");
-
-                    contentLayout.show(contentPanel, "BOOKINGS");
-                } else {
-                    JOptionPane.showMessageDialog(mainFrame, "Booking failed! Please try again.", "Booking Failed", JOptionPane.ERROR_MESSAGE);
-                }
+                ), tickets -> {
+                    if (tickets != null) {
+                        JOptionPane.showMessageDialog(mainFrame,
+                            String.format("Booking Confirmed!\n\nTicket ID: %s\n%s: %s\nRoute: %s to %s\nDate: %s\nPassengers: %d\nSeats: %s\nTotal Fare: BDT %.2f\nPayment: %s\n\nHave a safe journey!",
+                                tickets.get(0).ticketId(), transportType, vehicleName, from, to, date, passengers, tickets.get(0).seatNumbers(), totalFare, paymentMethod),
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+
+                        fromCombo.setSelectedIndex(0);
+                        toCombo.setSelectedIndex(0);
+                        dateField.setText(java.time.LocalDate.now().plusDays(1).toString());
+                        passengersSpinner.setValue(1);
+                        seatsField.setText("");
+                        totalLabel.setText("Total Fare: BDT 0.00");
+                        selectedVehicle.setText("Select a " + transportType.toLowerCase() + " type");
+                        hiddenPrice.setText("0");
+
+                        showBookings();
+                    } else {
+                        JOptionPane.showMessageDialog(mainFrame, "Booking failed! Please try again.", "Booking Failed", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, bookBtn);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(mainFrame, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -1553,6 +1739,10 @@ public class TouristDashboard extends JPanel {
         formPanel.add(passengersLabel);
         formPanel.add(Box.createRigidArea(new Dimension(0, 8)));
         formPanel.add(passengersSpinner);
+        formPanel.add(Box.createRigidArea(new Dimension(0, 15)));
+        formPanel.add(seatsLabel);
+        formPanel.add(Box.createRigidArea(new Dimension(0, 8)));
+        formPanel.add(seatsField);
         formPanel.add(Box.createRigidArea(new Dimension(0, 18)));
         formPanel.add(calculateBtn);
         formPanel.add(Box.createRigidArea(new Dimension(0, 12)));
@@ -1575,16 +1765,6 @@ public class TouristDashboard extends JPanel {
         return card;
     }
 
-    private String generateSeatNumbers(int count) {
-        StringBuilder seats = new StringBuilder();
-        int startSeat = (int) (Math.random() * 20) + 1;
-        for (int i = 0; i < count; i++) {
-            if (i > 0) seats.append(", ");
-            seats.append("A").append(startSeat + i);
-        }
-        return seats.toString();
-    }
-
     private JPanel createBookingsPanel() {
         JPanel shell = screenShell("My Bookings");
         JPanel body = new JPanel(new BorderLayout());
@@ -1599,53 +1779,6 @@ public class TouristDashboard extends JPanel {
             }
         };
 
-        List<Booking> hotelBookings = Booking.getBookingsByUser(
-            mainFrame.getCurrentUserId(), 
-            mainFrame.getConnection()
-        );
-        
-        for (Booking b : hotelBookings) {
-            model.addRow(new Object[]{
-                b.getBookingId(),
-                "Hotel",
-                b.getHotelName(),
-                b.getCheckInDate(),
-                b.getNumberOfRooms() + " rooms",
-                "BDT " + String.format("%.2f", b.getTotalPrice()),
-                b.getBookingStatus(),
-                b.getPaymentId() != null ? "Paid" : "Pending"
-            });
-        }
-
-        try {
-            String sql = "SELECT gb.bookingid, g.guidename, gb.tourlocation, gb.tourdurationdays, " +
-                        "gb.guidefee, gb.tourstatus, gb.paymentstatus " +
-                        "FROM guidebooking gb " +
-                        "LEFT JOIN guides g ON gb.guideid = g.guideid " +
-                        "WHERE gb.userid = ? " +
-                        "ORDER BY gb.bookingdate DESC";
-            
-            PreparedStatement ps = mainFrame.getConnection().prepareStatement(sql);
-            ps.setString(1, mainFrame.getCurrentUserId());
-            
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    model.addRow(new Object[]{
-                        rs.getString("bookingid"),
-                        "Guide",
-                        rs.getString("guidename"),
-                        rs.getString("tourlocation"),
-                        rs.getInt("tourdurationdays") + " days",
-                        "BDT " + String.format("%.2f", rs.getDouble("guidefee")),
-                        rs.getString("tourstatus"),
-                        rs.getString("paymentstatus")
-                    });
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error loading guide bookings: " + e.getMessage());
-        }
-
         JTable table = createStyledTable(model);
         JScrollPane sp = new JScrollPane(table);
         sp.setBorder(BorderFactory.createEmptyBorder());
@@ -1661,47 +1794,15 @@ public class TouristDashboard extends JPanel {
         JButton viewBtn = ComfyGoGUI.createStyledButton("View Details", ComfyGoGUI.INFO);
         JButton cancelBtn = ComfyGoGUI.createStyledButton("Cancel Booking", ComfyGoGUI.DANGER);
 
-        refreshBtn.addActionListener(e -> {
+        Runnable load = () -> tasks.run("bookings", () -> loadBookingRows(mainFrame.getCurrentUserId()), rows -> {
             model.setRowCount(0);
-            
-            List<Booking> updated = Booking.getBookingsByUser(
-                mainFrame.getCurrentUserId(), 
-                mainFrame.getConnection()
-            );
-            
-            for (Booking b : updated) {
-                model.addRow(new Object[]{
-                    b.getBookingId(), "Hotel", b.getHotelName(), b.getCheckInDate(),
-                    b.getNumberOfRooms() + " rooms", "BDT " + String.format("%.2f", b.getTotalPrice()),
-                    b.getBookingStatus(), b.getPaymentId() != null ? "Paid" : "Pending"
-                });
-            }
-            
-            try {
-                String sql = "SELECT gb.bookingid, g.guidename, gb.tourlocation, gb.tourdurationdays, " +
-                            "gb.guidefee, gb.tourstatus, gb.paymentstatus " +
-                            "FROM guidebooking gb " +
-                            "LEFT JOIN guides g ON gb.guideid = g.guideid " +
-                            "WHERE gb.userid = ? " +
-                            "ORDER BY gb.bookingdate DESC";
-                
-                PreparedStatement ps = mainFrame.getConnection().prepareStatement(sql);
-                ps.setString(1, mainFrame.getCurrentUserId());
-                
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        model.addRow(new Object[]{
-                            rs.getString("bookingid"), "Guide", rs.getString("guidename"),
-                            rs.getString("tourlocation"), rs.getInt("tourdurationdays") + " days",
-                            "BDT " + String.format("%.2f", rs.getDouble("guidefee")),
-                            rs.getString("tourstatus"), rs.getString("paymentstatus")
-                        });
-                    }
-                }
-            } catch (Exception ex) {
-                System.out.println("Error refreshing guide bookings: " + ex.getMessage());
-            }
-        });
+            for (Object[] row : rows) model.addRow(row);
+            tabLoaded("BOOKINGS");
+        }, refreshBtn, cancelBtn);
+        reloadBookings = load;
+        load.run();
+
+        refreshBtn.addActionListener(e -> load.run());
 
         viewBtn.addActionListener(e -> {
             int row = table.getSelectedRow();
@@ -1730,32 +1831,22 @@ public class TouristDashboard extends JPanel {
                 JOptionPane.YES_NO_OPTION);
 
             if (confirm == JOptionPane.YES_OPTION) {
-                boolean success = false;
-                
-                if (type.equals("Hotel")) {
-                    success = mainFrame.getHotelService().cancelHotelBookingForUser(
-                        mainFrame.getCurrentUserId(), 
-                        bookingId
-                    );
-                } else if (type.equals("Guide")) {
-                    try {
-                        String sql = "UPDATE guidebooking SET tourstatus = 'CANCELLED', paymentstatus = 'CANCELLED' " +
-                                    "WHERE bookingid = ? AND userid = ?";
-                        PreparedStatement ps = mainFrame.getConnection().prepareStatement(sql);
-                        ps.setString(1, bookingId);
-                        ps.setString(2, mainFrame.getCurrentUserId());
-                        success = ps.executeUpdate() > 0;
-                    } catch (Exception ex) {
-                        System.out.println("Error cancelling guide booking: " + ex.getMessage());
+                String userId = mainFrame.getCurrentUserId();
+                tasks.runChange(() -> {
+                    if (type.equals("Hotel")) {
+                        return mainFrame.getHotelService().cancelHotelBookingForUser(userId, bookingId);
+                    } else if (type.equals("Guide")) {
+                        return mainFrame.getGuideService().cancelGuideBookingForUser(userId, bookingId);
                     }
-                }
-
-                if (success) {
-                    JOptionPane.showMessageDialog(mainFrame, "Booking cancelled successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    refreshBtn.doClick();
-                } else {
-                    JOptionPane.showMessageDialog(mainFrame, "Failed to cancel booking!", "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                    return false;
+                }, success -> {
+                    if (success) {
+                        JOptionPane.showMessageDialog(mainFrame, "Booking cancelled successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                        load.run();
+                    } else {
+                        JOptionPane.showMessageDialog(mainFrame, "Failed to cancel booking!", "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, cancelBtn);
             }
         });
 
@@ -1769,42 +1860,88 @@ public class TouristDashboard extends JPanel {
         return shell;
     }
 
-    private void showBookingDetails(String bookingId, String type) {
-        if (type.equals("Hotel")) {
-            Booking booking = Booking.getBookingById(bookingId, mainFrame.getConnection());
-            if (booking == null) {
-                JOptionPane.showMessageDialog(mainFrame, "Booking not found!", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
+    /** Hotel and guide bookings as table rows; runs on a worker thread. */
+    private List<Object[]> loadBookingRows(String userId) {
+        List<Object[]> rows = new ArrayList<>();
+
+        try (Connection conn = Db.getConnection()) {
+            for (Booking b : Booking.getBookingsByUser(userId, conn)) {
+                rows.add(new Object[]{
+                    b.getBookingId(),
+                    "Hotel",
+                    b.getHotelName(),
+                    b.getCheckInDate(),
+                    b.getNumberOfRooms() + " rooms",
+                    "BDT " + String.format("%.2f", b.getTotalPrice()),
+                    b.getBookingStatus(),
+                    b.getPaymentId() != null ? "Paid" : "Pending"
+                });
             }
+        } catch (Exception e) {
+            System.out.println("Error loading hotel bookings: " + e.getMessage());
+        }
+
+        for (GuideService.GuideBookingInfo g : mainFrame.getGuideService().getBookingsForTourist(userId)) {
+            rows.add(new Object[]{
+                g.getBookingId(),
+                "Guide",
+                g.getGuideName(),
+                g.getTourLocation(),
+                g.getTourDurationDays() + " days",
+                "BDT " + String.format("%.2f", g.getGuideFee()),
+                g.getTourStatus(),
+                g.getPaymentStatus()
+            });
+        }
+        return rows;
+    }
 
-            String details = String.format(
-                "Hotel Booking Details\n\n" +
-                "Booking ID: %s\n" +
-                "Hotel: %s\n" +
-                "Location: %s\n" +
-                "Check-In: %s\n" +
-                "Check-Out: %s\n" +
-                "Rooms: %d\n" +
-                "Total Price: BDT %.2f\n" +
-                "Status: %s\n" +
-                "Payment ID: %s",
-                booking.getBookingId(),
-                booking.getHotelName(),
-                booking.getHotelLocation(),
-                booking.getCheckInDate(),
-                booking.getCheckOutDate(),
-                booking.getNumberOfRooms(),
-                booking.getTotalPrice(),
-                booking.getBookingStatus(),
-                booking.getPaymentId()
-            );
-
-            JOptionPane.showMessageDialog(mainFrame, details, "Booking Details", JOptionPane.INFORMATION_MESSAGE);
+    private void showBookingDetails(String bookingId, String type) {
+        if (type.equals("Hotel")) {
+            tasks.run(() -> {
+                try (Connection conn = Db.getConnection()) {
+                    return Booking.getBookingById(bookingId, conn);
+                } catch (Exception ex) {
+                    System.out.println("Error loading booking: " + ex.getMessage());
+                    return null;
+                }
+            }, booking -> showHotelBookingDetails(booking));
         } else {
             JOptionPane.showMessageDialog(mainFrame, "Guide booking details feature coming soon!", "Info", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
+    private void showHotelBookingDetails(Booking booking) {
+        if (booking == null) {
+            JOptionPane.showMessageDialog(mainFrame, "Booking not found!", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        String details = String.format(
+            "Hotel Booking Details\n\n" +
+            "Booking ID: %s\n" +
+            "Hotel: %s\n" +
+            "Location: %s\n" +
+            "Check-In: %s\n" +
+            "Check-Out: %s\n" +
+            "Rooms: %d\n" +
+            "Total Price: BDT %.2f\n" +
+            "Status: %s\n" +
+            "Payment ID: %s",
+            booking.getBookingId(),
+            booking.getHotelName(),
+            booking.getHotelLocation(),
+            booking.getCheckInDate(),
+            booking.getCheckOutDate(),
+            booking.getNumberOfRooms(),
+            booking.getTotalPrice(),
+            booking.getBookingStatus(),
+            booking.getPaymentId()
+        );
+
+        JOptionPane.showMessageDialog(mainFrame, details, "Booking Details", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     private JPanel createRatingsPanel() {
         JPanel shell = screenShell("Rate & Review");
         JPanel body = new JPanel(new BorderLayout());
@@ -1879,38 +2016,27 @@ public class TouristDashboard extends JPanel {
                 return;
             }
 
-            boolean success = false;
-            if (type.equals("Hotel")) {
-                success = mainFrame.getRatingService().rateHotel(
-                    mainFrame.getCurrentUserId(),
-                    id,
-                    rating,
-                    review
-                );
-            } else {
-                success = mainFrame.getRatingService().rateGuide(
-                    mainFrame.getCurrentUserId(),
-                    id,
-                    rating,
-                    review
-                );
-            }
-
-            if (success) {
-                JOptionPane.showMessageDialog(mainFrame,
-                    "Thank you for your rating!\n\nYour feedback helps improve our services.",
-                    "Success",
-                    JOptionPane.INFORMATION_MESSAGE);
-
-                idField.setText("");
-                ratingSpinner.setValue(5);
-                reviewArea.setText("");
-            } else {
-                JOptionPane.showMessageDialog(mainFrame,
-                    "Failed to submit rating!\n\nPlease check the ID and try again.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            String userId = mainFrame.getCurrentUserId();
+            tasks.runChange(() -> type.equals("Hotel")
+                    ? mainFrame.getRatingService().rateHotel(userId, id, rating, review)
+                    : mainFrame.getRatingService().rateGuide(userId, id, rating, review),
+                success -> {
+                    if (success) {
+                        JOptionPane.showMessageDialog(mainFrame,
+                            "Thank you for your rating!\n\nYour feedback helps improve our services.",
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+
+                        idField.setText("");
+                        ratingSpinner.setValue(5);
+                        reviewArea.setText("");
+                    } else {
+                        JOptionPane.showMessageDialog(mainFrame,
+                            "Failed to submit rating!\n\nPlease check the ID and try again.",
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    }
+                }, submitBtn);
         });
 
         card.add(title);
@@ -76,7 +76,9 @@ public class TouristSpot {
                 ps.setDouble(8, rating);
                 ps.setString(9, bestSeason);
                 ps.setString(10, visitingHours);
-                return ps.executeUpdate() > 0;
+                boolean ok = ps.executeUpdate() > 0;
+                if (ok) TouristSpotService.indexSpot(this);
+                return ok;
             }
         } catch (SQLException e) {
             System.out.println("Error creating spot: " + e.getMessage());
@@ -134,7 +136,9 @@ public class TouristSpot {
             ps.setString(8, bestSeason);
             ps.setString(9, visitingHours);
             ps.setString(10, spotId);
-            return ps.executeUpdate() > 0;
+            boolean ok = ps.executeUpdate() > 0;
+            if (ok) TouristSpotService.indexSpot(this);
+            return ok;
         } catch (SQLException e) {
             System.out.println("Error updating spot: " + e.getMessage());
             return false;
@@ -148,7 +152,9 @@ public class TouristSpot {
         String sql = "DELETE FROM touristspots WHERE spotid = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, spotId);
-            return ps.executeUpdate() > 0;
+            boolean ok = ps.executeUpdate() > 0;
+            if (ok) TouristSpotService.unindexSpot(spotId);
+            return ok;
         } catch (SQLException e) {
             System.out.println("Error deleting spot: " + e.getMessage());
             return false;
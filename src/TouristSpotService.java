@@ -2,41 +2,78 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TouristSpotService {
 
-    private final Connection conn;
+    // Name/district search is answered from memory; see TableTextIndex
+    private static final int SEARCH_LIMIT = 200;
+    private static volatile TableTextIndex searchIndex;
 
-    public TouristSpotService(Connection conn) {
-        this.conn = conn;
+    public TouristSpotService() {}
+
+    static TableTextIndex searchIndex() {
+        TableTextIndex idx = searchIndex;
+        if (idx != null) return idx;
+
+        synchronized (TouristSpotService.class) {
+            if (searchIndex == null) {
+                searchIndex = new TableTextIndex("spot",
+                        "SELECT spotid, spotname, district FROM touristspots",
+                        Db.longProp(Db.config(), "search.spots.ttlMs", 60_000L));
+            }
+            return searchIndex;
+        }
+    }
+
+    /** Keeps the search index in step with TouristSpot create/update. */
+    static void indexSpot(TouristSpot spot) {
+        searchIndex().put(spot.getSpotId(), spot.getSpotName(), spot.getDistrict());
+    }
+
+    static void unindexSpot(String spotId) {
+        searchIndex().remove(spotId);
     }
 
     public List<TouristSpot> getAllSpots() {
-        List<TouristSpot> spots = new ArrayList<>();
-        String sql = "SELECT * FROM touristspots ORDER BY rating DESC LIMIT 50";
+        return getAllSpots(PageRequest.first(PageRequest.DEFAULT_SIZE)).getItems();
+    }
 
-        try (Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
+    /** One page of all spots, highest rated first (keyset on rating, spotid). */
+    public Page<TouristSpot> getAllSpots(PageRequest page) {
+        Page.Builder<TouristSpot> out = new Page.Builder<>(page);
+        String sql = "SELECT * FROM touristspots WHERE " + page.seekDesc("rating", "spotid") +
+                     " ORDER BY rating DESC, spotid DESC LIMIT ?";
 
-            while (rs.next()) {
-                spots.add(mapSpot(rs));
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = page.bindSeek(ps, 1, page.afterDouble());
+            ps.setInt(i, out.fetchSize());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String cursor = PageRequest.cursor(rs.getObject("rating"), rs.getString("spotid"));
+                    if (!out.add(mapSpot(rs), cursor)) break;
+                }
             }
 
         } catch (SQLException e) {
             System.out.println("Failed to fetch spots: " + e.getMessage());
         }
 
-        return spots;
+        return out.build();
     }
 
     public List<TouristSpot> searchSpotsByDivision(String division) {
         List<TouristSpot> spots = new ArrayList<>();
         String sql = "SELECT * FROM touristspots WHERE division = ? ORDER BY rating DESC";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, division == null ? "" : division.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) spots.add(mapSpot(rs));
@@ -52,7 +89,8 @@ public class TouristSpotService {
         List<TouristSpot> spots = new ArrayList<>();
         String sql = "SELECT * FROM touristspots WHERE district = ? ORDER BY rating DESC";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, district == null ? "" : district.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) spots.add(mapSpot(rs));
@@ -64,11 +102,39 @@ public class TouristSpotService {
         return spots;
     }
 
+    /** Fuzzy match on spot name and district (typos allowed), best match first. */
+    public List<TouristSpot> searchSpots(String query) {
+        List<TouristSpot> spots = new ArrayList<>();
+        List<TrigramIndex.Hit> hits = searchIndex().search(query == null ? "" : query.trim(), SEARCH_LIMIT);
+        if (hits.isEmpty()) return spots;
+
+        Map<String, Double> scores = new HashMap<>(hits.size() * 2);
+        for (TrigramIndex.Hit hit : hits) scores.put(hit.key(), hit.score());
+
+        String sql = "SELECT * FROM touristspots WHERE spotid IN (" + String.join(",", Collections.nCopies(hits.size(), "?")) + ")";
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < hits.size(); i++) ps.setString(i + 1, hits.get(i).key());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) spots.add(mapSpot(rs));
+            }
+        } catch (SQLException e) {
+            System.out.println("Search failed: " + e.getMessage());
+        }
+
+        spots.sort((a, b) -> {
+            int byScore = Double.compare(scores.getOrDefault(b.getSpotId(), 0.0), scores.getOrDefault(a.getSpotId(), 0.0));
+            return byScore != 0 ? byScore : Double.compare(b.getRating(), a.getRating());
+        });
+        return spots;
+    }
+
     public TouristSpot getSpotById(String spotId) {
         if (spotId == null || spotId.trim().isEmpty()) return null;
 
         String sql = "SELECT * FROM touristspots WHERE spotid = ? LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, spotId.trim());
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return mapSpot(rs);
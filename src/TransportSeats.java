@@ -0,0 +1,639 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Seats on each transport departure.
+ *
+ * A departure is one route (type, from, to) on one date in one ticket class. It has
+ * transport.availableseats seats for the route, or transport.seatsPerDeparture if the route has
+ * no row there. Seats are numbered 1..capacity and labelled by row, four to a row: A1-A4, B1-B4...
+ *
+ * Two things are kept in the database, both written inside the caller's transaction:
+ * - transport_departures.seatsleft, taken with a guarded decrement ({@link #reserve}), so a
+ *   departure never goes below zero and a trip gets all of its legs or none;
+ * - transport_seats, one row per sold seat, whose primary key stops two bookings (on any
+ *   instance) from getting the same seat.
+ *
+ * In memory every departure that has been looked at has a {@link SeatMap}: one bit per seat in
+ * an AtomicLongArray. Bookers claim seats there with compare-and-set before they open their
+ * transaction, so hundreds of them on one busy departure each pick different seats without
+ * locking, and "seats left" is a counter read. Claims are given back if the booking rolls back.
+ * Maps are reloaded after a TTL to pick up other instances: one booker reloads while the rest
+ * keep using the old map, and claims still in flight are carried over into the new one.
+ *
+ * Tickets sold before seats were tracked have a NULL ticketclass and no transport_seats rows.
+ * Those bookings never said which class they used, so each one is counted against every class
+ * of its route and date: it is taken off seatsleft when a departure row is first created, and
+ * its seats are marked in every class's map (its own seat labels where free). That can leave a
+ * few seats unsold on old departures, but never sells one twice.
+ */
+final class TransportSeats {
+
+    record Departure(String type, String from, String to, LocalDate date, String ticketClass) {}
+
+    /** Seats claimed in memory for one ticket, until its booking commits or rolls back. */
+    record Claim(Departure departure, String ticketId, int[] seats) {
+
+        String labels() {
+            StringBuilder sb = new StringBuilder();
+            for (int seat : seats) {
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(label(seat));
+            }
+            return sb.toString();
+        }
+    }
+
+    /** One departure's seats; bit s - 1 is set while seat s is taken. Lock-free. */
+    static final class SeatMap {
+        final int capacity;
+        private final AtomicLongArray words;
+        private final AtomicInteger left;
+
+        SeatMap(int capacity) {
+            this.capacity = capacity;
+            this.words = new AtomicLongArray((capacity + 63) >>> 6);
+            this.left = new AtomicInteger(capacity);
+        }
+
+        int seatsLeft() {
+            return left.get();
+        }
+
+        boolean isTaken(int seat) {
+            return (words.get((seat - 1) >>> 6) & bit(seat)) != 0;
+        }
+
+        /** Takes seat; false if it is taken or doesn't exist. */
+        boolean claim(int seat) {
+            if (seat < 1 || seat > capacity) return false;
+            int i = (seat - 1) >>> 6;
+            long bit = bit(seat);
+            for (;;) {
+                long w = words.get(i);
+                if ((w & bit) != 0) return false;
+                if (words.compareAndSet(i, w, w | bit)) {
+                    left.decrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        void free(int seat) {
+            if (seat < 1 || seat > capacity) return;
+            int i = (seat - 1) >>> 6;
+            long bit = bit(seat);
+            for (;;) {
+                long w = words.get(i);
+                if ((w & bit) == 0) return;
+                if (words.compareAndSet(i, w, w & ~bit)) {
+                    left.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Takes n seats: the preferred ones if they are n free seats, otherwise the first n
+         * adjacent free seats, otherwise the first n free seats. Null if fewer than n are left.
+         */
+        int[] allocate(int n, int[] preferred) {
+            if (n <= 0) return null;
+            if (preferred != null && preferred.length == n && claimAll(preferred)) return preferred.clone();
+
+            while (left.get() >= n) {
+                int[] seats = findRun(n);
+                if (seats == null) seats = findAny(n);
+                if (seats == null) return null;
+                if (claimAll(seats)) return seats;
+                // Someone took one of them first; look again
+            }
+            return null;
+        }
+
+        private boolean claimAll(int[] seats) {
+            for (int i = 0; i < seats.length; i++) {
+                if (!claim(seats[i])) {
+                    for (int j = 0; j < i; j++) free(seats[j]);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int[] findRun(int n) {
+            int run = 0;
+            for (int seat = 1; seat <= capacity; seat++) {
+                run = isTaken(seat) ? 0 : run + 1;
+                if (run == n) {
+                    int[] seats = new int[n];
+                    for (int k = 0; k < n; k++) seats[k] = seat - n + 1 + k;
+                    return seats;
+                }
+            }
+            return null;
+        }
+
+        private int[] findAny(int n) {
+            int[] seats = new int[n];
+            int found = 0;
+            for (int seat = 1; seat <= capacity && found < n; seat++) {
+                if (!isTaken(seat)) seats[found++] = seat;
+            }
+            return found == n ? seats : null;
+        }
+
+        private static long bit(int seat) {
+            return 1L << ((seat - 1) & 63);
+        }
+    }
+
+    // Lock departures in one fixed order, so two opposite round trips can't deadlock
+    private static final Comparator<Departure> LOCK_ORDER = Comparator
+            .comparing(Departure::type)
+            .thenComparing(Departure::from)
+            .thenComparing(Departure::to)
+            .thenComparing(Departure::date)
+            .thenComparing(Departure::ticketClass);
+
+    private static final int SEATS_PER_ROW = 4;
+
+    /**
+     * One departure's current map. Claiming takes the read lock, so bookers run side by side;
+     * swapping in a reloaded map takes the write lock, so no claim lands on the old map after
+     * the in-flight ones were copied over.
+     */
+    private static final class Slot {
+        final ReentrantReadWriteLock swap = new ReentrantReadWriteLock();
+        final ReentrantLock loading = new ReentrantLock();
+        // Claimed, not yet committed or rolled back
+        final Set<Claim> pending = ConcurrentHashMap.newKeySet();
+        volatile SeatMap map;
+        volatile long expiresAt;
+
+        SeatMap freshMap() {
+            SeatMap m = map;
+            return m != null && System.currentTimeMillis() < expiresAt ? m : null;
+        }
+    }
+
+    private final int defaultSeats;
+    private final long ttlMs;
+    private final ConcurrentHashMap<Departure, Slot> slots = new ConcurrentHashMap<>();
+
+    TransportSeats(int defaultSeats, long ttlMs) {
+        this.defaultSeats = Math.max(1, defaultSeats);
+        this.ttlMs = ttlMs;
+    }
+
+    // -------------------- Seat maps (memory) --------------------
+
+    /** Seats left on d; only goes to the database if d's map isn't loaded. */
+    int seatsLeft(Departure d) throws SQLException {
+        Slot slot = slots.get(d);
+        SeatMap map = slot == null ? null : slot.freshMap();
+        if (map != null) return map.seatsLeft();
+
+        try (Connection conn = Db.getConnection()) {
+            return seatMap(conn, d).seatsLeft();
+        }
+    }
+
+    /**
+     * Claims passengers seats on d for ticketId, preferring the seats labelled in preferred
+     * (e.g. "A1, A2"). Null if there aren't enough left.
+     */
+    Claim claim(Connection conn, Departure d, String ticketId, int passengers, String preferred) throws SQLException {
+        seatMap(conn, d);
+        Slot slot = slots.get(d);
+        if (slot == null) return null; // departed meanwhile
+
+        slot.swap.readLock().lock();
+        try {
+            int[] seats = slot.map.allocate(passengers, parseLabels(preferred));
+            if (seats == null) return null;
+            Claim c = new Claim(d, ticketId, seats);
+            slot.pending.add(c);
+            return c;
+        } finally {
+            slot.swap.readLock().unlock();
+        }
+    }
+
+    /** Gives back the seats of a claim whose booking did not commit. */
+    void unclaim(Claim c) {
+        Slot slot = slots.get(c.departure());
+        if (slot == null) return;
+
+        slot.swap.readLock().lock();
+        try {
+            // Not pending any more if a reload found its seats sold; then they aren't ours to free
+            if (slot.pending.remove(c)) {
+                for (int seat : c.seats()) slot.map.free(seat);
+            }
+        } finally {
+            slot.swap.readLock().unlock();
+        }
+    }
+
+    /** The claim's booking committed; its seats stay taken and are in transport_seats now. */
+    void settle(Claim c) {
+        Slot slot = slots.get(c.departure());
+        if (slot != null) slot.pending.remove(c);
+    }
+
+    /** Reloads d's map on next use, e.g. after another instance turned out to have sold a seat we claimed. */
+    void forget(Departure d) {
+        Slot slot = slots.get(d);
+        if (slot != null) slot.expiresAt = 0L;
+    }
+
+    private SeatMap seatMap(Connection conn, Departure d) throws SQLException {
+        Slot slot = slots.computeIfAbsent(d, k -> new Slot());
+        SeatMap map = slot.freshMap();
+        if (map != null) return map;
+
+        // One booker reloads; the rest keep claiming on the old map, which the database still checks
+        if (slot.map != null) {
+            if (!slot.loading.tryLock()) return slot.map;
+        } else {
+            slot.loading.lock();
+        }
+        try {
+            map = slot.freshMap();
+            if (map != null) return map;
+
+            SeatMap fresh = load(conn, d);
+            slot.swap.writeLock().lock();
+            try {
+                // Carry over claims still in flight. One whose seat is already sold has either
+                // committed or is about to fail on the seat key, so it is dropped.
+                for (Iterator<Claim> it = slot.pending.iterator(); it.hasNext(); ) {
+                    Claim c = it.next();
+                    boolean free = true;
+                    for (int seat : c.seats()) free &= seat >= 1 && seat <= fresh.capacity && !fresh.isTaken(seat);
+                    if (free) {
+                        for (int seat : c.seats()) fresh.claim(seat);
+                    } else {
+                        it.remove();
+                    }
+                }
+                slot.map = fresh;
+                slot.expiresAt = System.currentTimeMillis() + ttlMs;
+            } finally {
+                slot.swap.writeLock().unlock();
+            }
+        } finally {
+            slot.loading.unlock();
+        }
+
+        LocalDate today = LocalDate.now();
+        slots.keySet().removeIf(k -> k.date().isBefore(today));
+        return slot.map;
+    }
+
+    private SeatMap load(Connection conn, Departure d) throws SQLException {
+        int capacity = defaultSeats;
+        String capacitySql = "SELECT availableseats FROM transport " +
+                             "WHERE transporttype = ? AND departurelocation = ? AND arrivallocation = ?";
+        try (PreparedStatement ps = conn.prepareStatement(capacitySql)) {
+            ps.setString(1, d.type());
+            ps.setString(2, d.from());
+            ps.setString(3, d.to());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) capacity = Math.max(0, rs.getInt(1));
+            }
+        }
+
+        SeatMap map = new SeatMap(capacity);
+        String sql = "SELECT seatno FROM transport_seats " +
+                     "WHERE transporttype = ? AND departurelocation = ? AND arrivallocation = ? " +
+                     "AND departuredate = ? AND ticketclass = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindKey(ps, 1, d);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) map.claim(rs.getInt(1));
+            }
+        }
+
+        // Legacy tickets, in a fixed order so every instance marks the same seats
+        String legacySql = "SELECT numberofpassengers, seatnumber FROM transportbooking " +
+                           "WHERE bookingstatus = 'CONFIRMED' AND ticketclass IS NULL AND transporttype = ? " +
+                           "AND departurelocation = ? AND arrivallocation = ? AND departuredate = ? " +
+                           "ORDER BY ticketid";
+        try (PreparedStatement ps = conn.prepareStatement(legacySql)) {
+            ps.setString(1, d.type());
+            ps.setString(2, d.from());
+            ps.setString(3, d.to());
+            ps.setDate(4, Date.valueOf(d.date()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) map.allocate(rs.getInt(1), parseLabels(rs.getString(2)));
+            }
+        }
+        return map;
+    }
+
+    // -------------------- Writes (database, inside the caller's transaction) --------------------
+
+    /**
+     * Takes seats on every departure, or nothing: false means one of them has fewer than seats
+     * left and the caller must roll back.
+     */
+    boolean reserve(Connection conn, List<Departure> departures, int seats) throws SQLException {
+        if (seats <= 0 || departures.isEmpty()) return false;
+
+        List<Departure> ordered = new ArrayList<>(departures);
+        ordered.sort(LOCK_ORDER);
+
+        // Make sure every departure has a row, so the guarded UPDATE below sees all of them. A new
+        // row starts at capacity less the confirmed tickets already sold for it, legacy ones included
+        String seedSql = "INSERT IGNORE INTO transport_departures " +
+                         "(transporttype, departurelocation, arrivallocation, departuredate, ticketclass, seatsleft) " +
+                         "VALUES (?, ?, ?, ?, ?, GREATEST(0, COALESCE((SELECT t.availableseats FROM transport t " +
+                         "WHERE t.transporttype = ? AND t.departurelocation = ? AND t.arrivallocation = ?), ?) - " +
+                         "(SELECT COALESCE(SUM(b.numberofpassengers), 0) FROM transportbooking b " +
+                         "WHERE b.bookingstatus = 'CONFIRMED' AND b.transporttype = ? AND b.departurelocation = ? " +
+                         "AND b.arrivallocation = ? AND b.departuredate = ? " +
+                         "AND (b.ticketclass = ? OR b.ticketclass IS NULL))))";
+        try (PreparedStatement ps = conn.prepareStatement(seedSql)) {
+            for (Departure d : ordered) {
+                int i = bindKey(ps, 1, d);
+                ps.setString(i++, d.type());
+                ps.setString(i++, d.from());
+                ps.setString(i++, d.to());
+                ps.setInt(i++, defaultSeats);
+                bindKey(ps, i, d);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        String sql = "UPDATE transport_departures SET seatsleft = seatsleft - ? " +
+                     "WHERE transporttype = ? AND departurelocation = ? AND arrivallocation = ? " +
+                     "AND departuredate = ? AND ticketclass = ? AND seatsleft >= ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Departure d : ordered) {
+                ps.setInt(1, seats);
+                int i = bindKey(ps, 2, d);
+                ps.setInt(i, seats);
+                ps.addBatch();
+            }
+            for (int count : ps.executeBatch()) {
+                if (count != 1) return false;
+            }
+        }
+        return true;
+    }
+
+    /** A seat in {@link #assign} was already sold, e.g. by another instance. */
+    static final class SeatTakenException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        SeatTakenException(SQLException cause) {
+            super("Seat already sold: " + cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+        }
+    }
+
+    /**
+     * Records the claimed seats against their tickets. A seat already sold elsewhere fails the
+     * batch with a {@link SeatTakenException}; any other error is thrown as is.
+     */
+    void assign(Connection conn, List<Claim> claims) throws SQLException {
+        String sql = "INSERT INTO transport_seats (transporttype, departurelocation, arrivallocation, " +
+                     "departuredate, ticketclass, seatno, ticketid) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Claim c : claims) {
+                for (int seat : c.seats()) {
+                    int i = bindKey(ps, 1, c.departure());
+                    ps.setInt(i++, seat);
+                    ps.setString(i, c.ticketId());
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            // Only transport_seats rows are written here, so a duplicate is a seat
+            if (isDuplicateKey(e)) throw new SeatTakenException(e);
+            throw e;
+        }
+    }
+
+    static boolean isSeatTaken(SQLException e) {
+        return e instanceof SeatTakenException;
+    }
+
+    static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == 1062; // ER_DUP_ENTRY
+    }
+
+    /** Binds the five key columns from index i on; returns the next index. */
+    private static int bindKey(PreparedStatement ps, int i, Departure d) throws SQLException {
+        ps.setString(i++, d.type());
+        ps.setString(i++, d.from());
+        ps.setString(i++, d.to());
+        ps.setDate(i++, Date.valueOf(d.date()));
+        ps.setString(i++, d.ticketClass());
+        return i;
+    }
+
+    // -------------------- Seat labels --------------------
+
+    /** Seat 1 is A1, seat 5 is B1; rows after Z are AA, AB... */
+    static String label(int seat) {
+        int row = (seat - 1) / SEATS_PER_ROW;
+        return rowName(row) + ((seat - 1) % SEATS_PER_ROW + 1);
+    }
+
+    private static String rowName(int row) {
+        String letter = String.valueOf((char) ('A' + row % 26));
+        return row < 26 ? letter : rowName(row / 26 - 1) + letter;
+    }
+
+    /** Seat number of a label like "B3"; -1 if it isn't one. */
+    static int parseLabel(String label) {
+        String s = label.trim().toUpperCase();
+        int split = 0;
+        while (split < s.length() && s.charAt(split) >= 'A' && s.charAt(split) <= 'Z') split++;
+        if (split == 0 || split == s.length() || split > 3) return -1;
+
+        int row = 0;
+        for (int i = 0; i < split; i++) row = row * 26 + (s.charAt(i) - 'A' + 1);
+        int col;
+        try {
+            col = Integer.parseInt(s.substring(split));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (col < 1 || col > SEATS_PER_ROW) return -1;
+        return (row - 1) * SEATS_PER_ROW + col;
+    }
+
+    /** Seat numbers in a list like "A1, A2"; null if empty or any label is invalid or repeated. */
+    private static int[] parseLabels(String labels) {
+        if (labels == null || labels.isBlank()) return null;
+
+        String[] parts = labels.split("[,\\s]+");
+        int[] seats = new int[parts.length];
+        int n = 0;
+        for (String part : parts) {
+            if (part.isEmpty()) continue;
+            int seat = parseLabel(part);
+            if (seat < 0) return null;
+            seats[n++] = seat;
+        }
+        seats = Arrays.copyOf(seats, n);
+        return n == 0 || Arrays.stream(seats).distinct().count() != n ? null : seats;
+    }
+
+    // -------------------- Oversell check --------------------
+
+    /**
+     * Oversell check against the configured database: java TransportSeats [capacity] [threads] [ttlMs]
+     *
+     * Creates a throwaway route with capacity seats and has threads tourists book its departure
+     * through TransportService.bookTickets, 1-4 passengers at a time, until it is sold out. A
+     * short seat map TTL makes maps reload while claims are in flight. Then checks in the
+     * database that seatsleft is not negative, and that the tickets' passengers and the
+     * transport_seats rows both add up to capacity. The bench rows are removed afterwards.
+     */
+    public static void main(String[] args) throws Exception {
+        int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        long ttlMs = args.length > 2 ? Long.parseLong(args[2]) : 50L;
+        Db.config().setProperty("transport.seats.ttlMs", String.valueOf(ttlMs));
+
+        String tag = String.format("%07d", System.currentTimeMillis() % 10_000_000L);
+        String userId = "bench" + tag;
+        Departure d = new Departure("Bench", "Bench From " + tag, "Bench To " + tag,
+                LocalDate.now().plusDays(30), "Bench Class");
+        boolean ok = false;
+
+        try {
+            try (Connection conn = Db.getConnection()) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO users (userid, username, useremail, userpassword) VALUES (?, ?, ?, ?)")) {
+                    ps.setString(1, userId);
+                    ps.setString(2, "Bench Traveller");
+                    ps.setString(3, "bench.transport." + tag + "@example.com");
+                    ps.setString(4, "-");
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO transport (transporttype, departurelocation, arrivallocation, fare, availableseats) " +
+                        "VALUES (?, ?, ?, ?, ?)")) {
+                    ps.setString(1, d.type());
+                    ps.setString(2, d.from());
+                    ps.setString(3, d.to());
+                    ps.setDouble(4, 100.0);
+                    ps.setInt(5, capacity);
+                    ps.executeUpdate();
+                }
+            }
+
+            TransportService service = new TransportService();
+            AtomicInteger tickets = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> done = new ArrayList<>();
+            long t0 = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    // Give up after many misses in a row, so a bug shows up as a failed check, not a hang
+                    for (int misses = 0; misses < 1_000; ) {
+                        int passengers = 1 + rnd.nextInt(4);
+                        List<TransportService.Ticket> booked = service.bookTickets(userId, d.type(), d.from(), d.to(),
+                                d.date().toString(), passengers, null, 100.0 * passengers, d.ticketClass(),
+                                "Bench", false, null);
+                        if (booked != null) {
+                            tickets.incrementAndGet();
+                            misses = 0;
+                        } else if (service.getAvailableSeats(d.type(), d.from(), d.to(),
+                                d.date().toString(), d.ticketClass()) == 0) {
+                            return null;
+                        } else {
+                            misses++;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) f.get();
+            long elapsedMs = (System.nanoTime() - t0) / 1_000_000L;
+            pool.shutdown();
+
+            int seatsLeft;
+            int passengersSold;
+            int seatRows;
+            try (Connection conn = Db.getConnection()) {
+                seatsLeft = count(conn, "SELECT seatsleft FROM transport_departures WHERE transporttype = ? " +
+                        "AND departurelocation = ? AND arrivallocation = ? AND departuredate = ? AND ticketclass = ?", d);
+                passengersSold = count(conn, "SELECT COALESCE(SUM(numberofpassengers), 0) FROM transportbooking " +
+                        "WHERE transporttype = ? AND departurelocation = ? AND arrivallocation = ? " +
+                        "AND departuredate = ? AND ticketclass = ? AND bookingstatus = 'CONFIRMED'", d);
+                seatRows = count(conn, "SELECT COUNT(*) FROM transport_seats WHERE transporttype = ? " +
+                        "AND departurelocation = ? AND arrivallocation = ? AND departuredate = ? AND ticketclass = ?", d);
+            }
+
+            System.out.printf("%d seats, %d threads, map TTL %d ms: %d tickets in %d ms%n",
+                    capacity, threads, ttlMs, tickets.get(), elapsedMs);
+            System.out.println("seatsleft: " + seatsLeft + ", passengers sold: " + passengersSold
+                    + ", transport_seats rows: " + seatRows);
+            ok = seatsLeft >= 0 && passengersSold == capacity && seatRows == capacity;
+            System.out.println(ok ? "OK" : "OVERSOLD or seats lost");
+        } finally {
+            try (Connection conn = Db.getConnection()) {
+                // transport_seats rows go with their tickets (ON DELETE CASCADE)
+                String[] cleanup = {
+                        "DELETE FROM transportbooking WHERE userid = ?",
+                        "DELETE FROM transport_departures WHERE transporttype = ? AND departurelocation = ?",
+                        "DELETE FROM transport WHERE transporttype = ? AND departurelocation = ?",
+                        "DELETE FROM users WHERE userid = ?"};
+                for (String sql : cleanup) {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        if (sql.contains("userid")) {
+                            ps.setString(1, userId);
+                        } else {
+                            ps.setString(1, d.type());
+                            ps.setString(2, d.from());
+                        }
+                        ps.executeUpdate();
+                    }
+                }
+            } catch (SQLException e) {
+                System.out.println("Cleanup failed, remove route " + d.from() + " and user " + userId
+                        + " by hand: " + e.getMessage());
+            }
+            Db.closeConnection();
+        }
+        if (!ok) System.exit(1);
+    }
+
+    /** First column of the first row of a query keyed by d; -1 if there is no row. */
+    private static int count(Connection conn, String sql, Departure d) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindKey(ps, 1, d);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+}
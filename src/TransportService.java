@@ -1,19 +1,42 @@
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class TransportService {
-    private final Connection conn;
 
-    public TransportService(Connection conn) {
-        this.conn = conn;
+    /** One booked leg; a round trip has two. */
+    public record Ticket(String ticketId, String type, String from, String to, LocalDate date,
+                         int passengers, String seatNumbers, double fare, String ticketClass) {}
+
+    private static final int BOOKING_ATTEMPTS = 3;
+
+    // Seats per departure; see TransportSeats
+    private static volatile TransportSeats seats;
+
+    static TransportSeats seats() {
+        TransportSeats s = seats;
+        if (s != null) return s;
+
+        synchronized (TransportService.class) {
+            if (seats == null) {
+                seats = new TransportSeats(
+                        (int) Db.longProp(Db.config(), "transport.seatsPerDeparture", 40L),
+                        Db.longProp(Db.config(), "transport.seats.ttlMs", 30_000L));
+            }
+            return seats;
+        }
     }
 
+    public TransportService() {}
+
     public List<String> getAllRoutes() {
         List<String> routes = new ArrayList<>();
         String sql = "SELECT transporttype, departurelocation, arrivallocation, " +
                     "estimatedduration, fare FROM transport ORDER BY transporttype";
         
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = Db.getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -39,7 +62,8 @@ public class TransportService {
         String sql = "SELECT DISTINCT departurelocation FROM transport " +
                     "UNION SELECT DISTINCT arrivallocation FROM transport";
         
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = Db.getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -81,85 +105,176 @@ public class TransportService {
         return new RouteInfo("Unknown", 500.0);
     }
 
-    public int getAvailableSeats(String type, String from, String to, String date) {
-        String sql = "SELECT availableseats FROM transport " +
-                    "WHERE transporttype = ? AND departurelocation = ? AND arrivallocation = ?";
-        
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, type);
-            ps.setString(2, from);
-            ps.setString(3, to);
-            
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("availableseats");
-                }
-            }
+    /**
+     * Seats left on one departure (route, date, class). Answered from the departure's seat map
+     * in memory; 0 if the date is invalid or the seats can't be read.
+     */
+    public int getAvailableSeats(String type, String from, String to, String date, String ticketClass) {
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid travel date: " + date);
+            return 0;
+        }
+
+        try {
+            return seats().seatsLeft(new TransportSeats.Departure(type, from, to, day, seatClass(ticketClass)));
         } catch (SQLException e) {
             System.out.println("Error checking seats: " + e.getMessage());
+            return 0;
         }
-        
-        return 25;
     }
 
     public boolean bookTransport(String userId, String transportType, String from, String to,String date, String bookingTime, int passengers, String seatNumbers,double fare, String ticketClass, String provider,boolean isReturn, String returnDate) {
-        
+        return bookTickets(userId, transportType, from, to, date, passengers, seatNumbers, fare,
+                           ticketClass, provider, isReturn, returnDate) != null;
+    }
+
+    /**
+     * Books the outbound leg and, for a round trip, the return leg: seats on both departures
+     * and both tickets commit together or not at all. Each leg gets preferredSeats (e.g. "A1, A2")
+     * if they are all free, otherwise adjacent seats where possible. Returns the tickets with
+     * their seats, outbound first, or null if nothing was booked.
+     */
+    public List<Ticket> bookTickets(String userId, String transportType, String from, String to, String date,
+                                    int passengers, String preferredSeats, double fare, String ticketClass,
+                                    String provider, boolean isReturn, String returnDate) {
         if (userId == null || userId.trim().isEmpty()) {
             System.out.println("User ID required!");
-            return false;
+            return null;
+        }
+        if (passengers <= 0) {
+            System.out.println("At least one passenger required!");
+            return null;
         }
 
+        LocalDate outDate;
+        LocalDate backDate = null;
         try {
-            String ticketId = IdGenerator.uniqueNumericId(conn, "transportbooking", "ticketid", 12, 60);
-            
-            // FIXED: Match actual database columns
-            String sql = "INSERT INTO transportbooking (ticketid, userid, transporttype, " +
-                        "departurelocation, arrivallocation, departuredate, numberofpassengers, " +
-                        "seatnumber, fare, vehiclecompany, bookingstatus) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'CONFIRMED')";
-            
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, ticketId);
-                ps.setString(2, userId.trim());
-                ps.setString(3, transportType);
-                ps.setString(4, from);
-                ps.setString(5, to);
-                ps.setDate(6, java.sql.Date.valueOf(date));
-                ps.setInt(7, passengers);
-                ps.setString(8, seatNumbers);
-                ps.setDouble(9, fare);
-                ps.setString(10, provider);
-                
-                int rows = ps.executeUpdate();
-                
-                if (isReturn && returnDate != null && !returnDate.trim().isEmpty()) {
-                    String returnTicketId = IdGenerator.uniqueNumericId(conn, "transportbooking", "ticketid", 12, 60);
-                    
-                    try (PreparedStatement psReturn = conn.prepareStatement(sql)) {
-                        psReturn.setString(1, returnTicketId);
-                        psReturn.setString(2, userId.trim());
-                        psReturn.setString(3, transportType);
-                        psReturn.setString(4, to);
-                        psReturn.setString(5, from);
-                        psReturn.setDate(6, java.sql.Date.valueOf(returnDate));
-                        psReturn.setInt(7, passengers);
-                        psReturn.setString(8, seatNumbers);
-                        psReturn.setDouble(9, fare / 2);
-                        psReturn.setString(10, provider);
-                        
-                        psReturn.executeUpdate();
-                        System.out.println("Return trip booked! Ticket ID: " + returnTicketId);
+            outDate = LocalDate.parse(date.trim());
+            if (isReturn && returnDate != null && !returnDate.trim().isEmpty()) {
+                backDate = LocalDate.parse(returnDate.trim());
+            }
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid travel date: " + e.getParsedString());
+            return null;
+        }
+        if (backDate != null && backDate.isBefore(outDate)) {
+            System.out.println("Return date cannot be before the departure date!");
+            return null;
+        }
+
+        String seatClass = seatClass(ticketClass);
+        List<TransportSeats.Departure> departures = new ArrayList<>();
+        departures.add(new TransportSeats.Departure(transportType, from, to, outDate, seatClass));
+        if (backDate != null) {
+            departures.add(new TransportSeats.Departure(transportType, to, from, backDate, seatClass));
+        }
+
+        try (Connection conn = Db.getConnection()) {
+            List<String> ticketIds = newTicketIds(conn, departures.size());
+
+            conn.setAutoCommit(false);
+            for (int attempt = 1; ; attempt++) {
+                List<TransportSeats.Claim> claims = new ArrayList<>();
+                List<Ticket> booked = null;
+                try {
+                    // Seats are picked in memory first; the transaction only writes them down
+                    for (int i = 0; i < departures.size(); i++) {
+                        TransportSeats.Claim c = seats().claim(conn, departures.get(i), ticketIds.get(i),
+                                                               passengers, preferredSeats);
+                        if (c == null) {
+                            System.out.println("Not enough seats left for " + passengers + " passenger(s)!");
+                            return null;
+                        }
+                        claims.add(c);
+                    }
+                    booked = bookOnce(conn, userId, provider, passengers, fare, departures, claims);
+                    return booked;
+                } catch (SQLException e) {
+                    try { conn.rollback(); } catch (SQLException ignored) {}
+                    if (attempt < BOOKING_ATTEMPTS && TransportSeats.isSeatTaken(e)) {
+                        // Another instance sold one of these seats; start again from the database
+                        for (TransportSeats.Departure d : departures) seats().forget(d);
+                        continue;
+                    }
+                    if (attempt < BOOKING_ATTEMPTS && TransportSeats.isDuplicateKey(e)) {
+                        // A ticket ID is already in use, not a seat; retrying needs new IDs
+                        ticketIds = newTicketIds(conn, departures.size());
+                        continue;
+                    }
+                    System.out.println("Booking failed: " + e.getMessage());
+                    return null;
+                } finally {
+                    for (TransportSeats.Claim c : claims) {
+                        if (booked == null) seats().unclaim(c);
+                        else seats().settle(c);
                     }
                 }
-                
-                System.out.println("Transport booking successful! Ticket ID: " + ticketId);
-                return rows > 0;
             }
         } catch (SQLException e) {
             System.out.println("Booking failed: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            return null;
+        }
+    }
+
+    /** One fresh ticket ID per leg. */
+    private static List<String> newTicketIds(Connection conn, int count) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(IdGenerator.uniqueNumericId(conn, "transportbooking", "ticketid", 12, 60));
+        }
+        return ids;
+    }
+
+    /** One attempt at a trip, on a connection with autoCommit off. Null if seats ran out. */
+    private List<Ticket> bookOnce(Connection conn, String userId, String provider, int passengers, double fare,
+                                  List<TransportSeats.Departure> departures,
+                                  List<TransportSeats.Claim> claims) throws SQLException {
+        if (!seats().reserve(conn, departures, passengers)) {
+            conn.rollback();
+            System.out.println("Not enough seats left for " + passengers + " passenger(s)!");
+            return null;
         }
+
+        // Return leg at half fare, as before
+        List<Ticket> tickets = new ArrayList<>();
+        for (TransportSeats.Claim c : claims) {
+            TransportSeats.Departure d = c.departure();
+            tickets.add(new Ticket(c.ticketId(), d.type(), d.from(), d.to(), d.date(), passengers, c.labels(),
+                                   tickets.isEmpty() ? fare : fare / 2, d.ticketClass()));
+        }
+
+        String sql = "INSERT INTO transportbooking (ticketid, userid, transporttype, " +
+                    "departurelocation, arrivallocation, departuredate, numberofpassengers, " +
+                    "seatnumber, ticketclass, fare, vehiclecompany, bookingstatus) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'CONFIRMED')";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Ticket t : tickets) {
+                ps.setString(1, t.ticketId());
+                ps.setString(2, userId.trim());
+                ps.setString(3, t.type());
+                ps.setString(4, t.from());
+                ps.setString(5, t.to());
+                ps.setDate(6, java.sql.Date.valueOf(t.date()));
+                ps.setInt(7, t.passengers());
+                ps.setString(8, t.seatNumbers());
+                ps.setString(9, t.ticketClass());
+                ps.setDouble(10, t.fare());
+                ps.setString(11, provider);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        seats().assign(conn, claims);
+
+        conn.commit();
+        for (Ticket t : tickets) {
+            System.out.println("Transport booking successful! Ticket ID: " + t.ticketId()
+                    + " (" + t.from() + " -> " + t.to() + ", " + t.date() + ", seats " + t.seatNumbers() + ")");
+        }
+        return tickets;
     }
 
     public List<String> searchTransport(String type, String from, String to) {
@@ -168,7 +283,8 @@ public class TransportService {
                     "estimatedduration, fare FROM transport " +
                     "WHERE transporttype = ? AND departurelocation = ? AND arrivallocation = ?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, type);
             ps.setString(2, from);
             ps.setString(3, to);
@@ -192,13 +308,22 @@ public class TransportService {
     }
 
     public List<Map<String, Object>> getUserBookings(String userId) {
-        List<Map<String, Object>> bookings = new ArrayList<>();
+        return getUserBookings(userId, PageRequest.first(PageRequest.MAX_SIZE)).getItems();
+    }
+
+    /** One page of a user's tickets, latest departure first (keyset on departuredate, ticketid). */
+    public Page<Map<String, Object>> getUserBookings(String userId, PageRequest page) {
+        Page.Builder<Map<String, Object>> out = new Page.Builder<>(page);
         String sql = "SELECT ticketid, transporttype, departurelocation, arrivallocation, " +
                     "departuredate, numberofpassengers, fare, bookingstatus " +
-                    "FROM transportbooking WHERE userid = ? ORDER BY departuredate DESC";
+                    "FROM transportbooking WHERE userid = ? AND " + page.seekDesc("departuredate", "ticketid") +
+                    " ORDER BY departuredate DESC, ticketid DESC LIMIT ?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, userId);
+            int i = page.bindSeek(ps, 2, page.afterDate());
+            ps.setInt(i, out.fetchSize());
             
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -211,13 +336,17 @@ public class TransportService {
                     booking.put("passengers", rs.getInt("numberofpassengers"));
                     booking.put("fare", rs.getDouble("fare"));
                     booking.put("status", rs.getString("bookingstatus"));
-                    bookings.add(booking);
+                    if (!out.add(booking, PageRequest.cursor(booking.get("date"), (String) booking.get("ticketId")))) break;
                 }
             }
         } catch (SQLException e) {
             System.out.println("Error fetching bookings: " + e.getMessage());
         }
         
-        return bookings;
+        return out.build();
+    }
+
+    private static String seatClass(String ticketClass) {
+        return ticketClass == null ? "" : ticketClass.trim();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index for fuzzy, case-insensitive text search.
+ *
+ * Each document (key + one or more text fields) is lower-cased, split into words, and each
+ * word padded as "  word " is cut into 3-character grams, the same scheme as pg_trgm. A query
+ * is cut the same way; documents are ranked by how many of the query's grams they share, so
+ * partial words and single typos still match.
+ *
+ * Used by HotelCatalog (hotels), GuideService (guides) and TouristSpotService (spots).
+ * Reads share a read lock; put/remove/replaceAll take the write lock. Removing a document
+ * only tombstones its slot; searches skip dead slots, and the postings are compacted by the
+ * next replaceAll, or sooner once dead slots outnumber live ones.
+ */
+public final class TrigramIndex {
+
+    /** A matching document and its score in (0, 1]. */
+    public record Hit(String key, double score) {}
+
+    // Share of the query's grams a document must contain to count as a match
+    private static final double MIN_COVERAGE = 0.45;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[64]);
+
+    /** Adds or replaces one document. Fields are concatenated with spaces. */
+    public void put(String key, String... fields) {
+        if (key == null) return;
+        long[] grams = grams(join(fields));
+
+        lock.writeLock().lock();
+        try {
+            if (state.holds(key, grams)) return;
+            state.remove(key);
+            state.add(key, grams);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        if (key == null) return;
+
+        lock.writeLock().lock();
+        try {
+            state.remove(key);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Rebuilds from scratch (key -> text); the new index is built before the lock is taken. */
+    public void replaceAll(Map<String, String> docs) {
+        State fresh = new State();
+        for (Map.Entry<String, String> e : docs.entrySet()) {
+            if (e.getKey() != null) fresh.add(e.getKey(), grams(e.getValue()));
+        }
+
+        lock.writeLock().lock();
+        try {
+            state = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock; each rebuild is paid for by as many removals as live documents
+    private void compactIfSparse() {
+        if (state.dead > 64 && state.dead > state.slotByKey.size()) state = state.compacted();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return state.slotByKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Best matches first, at most limit of them. A blank query matches nothing. */
+    public List<Hit> search(String query, int limit) {
+        long[] q = grams(query);
+        if (q.length == 0 || limit <= 0) return new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            State s = state;
+            int[] shared = scratch.get();
+            if (shared.length < s.keys.length) {
+                shared = new int[s.keys.length];
+                scratch.set(shared);
+            }
+
+            // Count shared grams per document slot; remember which slots we touched
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            for (long g : q) {
+                IntList posting = s.postings.get(g);
+                if (posting == null) continue;
+                for (int i = 0; i < posting.size; i++) {
+                    int slot = posting.values[i];
+                    if (s.keys[slot] == null) continue; // removed, not compacted yet
+                    if (shared[slot]++ == 0) {
+                        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = slot;
+                    }
+                }
+            }
+
+            // Keep the best `limit` in a min-heap so only the winners are allocated and sorted
+            TopK top = new TopK(Math.min(limit, touchedCount));
+            int minShared = (int) Math.ceil(MIN_COVERAGE * q.length);
+            for (int i = 0; i < touchedCount; i++) {
+                int slot = touched[i];
+                int n = shared[slot];
+                shared[slot] = 0;
+                if (n < minShared) continue;
+
+                // Dice similarity breaks ties in favour of documents without much else in them
+                double coverage = (double) n / q.length;
+                double dice = 2.0 * n / (q.length + s.gramCount[slot]);
+                top.offer(slot, 0.75 * coverage + 0.25 * dice);
+            }
+            return top.drain(s.keys);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // -------------------- Gram extraction --------------------
+
+    private static String join(String... fields) {
+        if (fields == null) return "";
+        StringBuilder sb = new StringBuilder();
+        for (String f : fields) {
+            if (f != null) sb.append(f).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /** Distinct grams of text; letters and digits only, apostrophes dropped ("Cox's" -> "coxs"). */
+    static long[] grams(String text) {
+        if (text == null) return new long[0];
+
+        long[] out = new long[16];
+        int n = 0;
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c == '\'' || c == '\u2019') continue;
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                String w = "  " + word + " ";
+                for (int j = 0; j + 3 <= w.length(); j++) {
+                    if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                    out[n++] = ((long) w.charAt(j) << 32) | ((long) w.charAt(j + 1) << 16) | w.charAt(j + 2);
+                }
+                word.setLength(0);
+            }
+        }
+
+        // Sort and drop duplicates
+        Arrays.sort(out, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || out[i] != out[distinct - 1]) out[distinct++] = out[i];
+        }
+        return Arrays.copyOf(out, distinct);
+    }
+
+    // -------------------- Storage --------------------
+
+    private static final class State {
+        final Map<String, Integer> slotByKey = new HashMap<>();
+        final Map<Long, IntList> postings = new HashMap<>();
+        String[] keys = new String[64];
+        long[][] gramsBySlot = new long[64][];
+        int[] gramCount = new int[64];
+        int nextSlot;
+        // Removed slots still listed in postings; they are never reused before compaction
+        int dead;
+
+        boolean holds(String key, long[] grams) {
+            Integer slot = slotByKey.get(key);
+            return slot != null && Arrays.equals(gramsBySlot[slot], grams);
+        }
+
+        void add(String key, long[] grams) {
+            int slot = nextSlot++;
+            if (slot >= keys.length) {
+                int cap = keys.length * 2;
+                keys = Arrays.copyOf(keys, cap);
+                gramsBySlot = Arrays.copyOf(gramsBySlot, cap);
+                gramCount = Arrays.copyOf(gramCount, cap);
+            }
+            keys[slot] = key;
+            gramsBySlot[slot] = grams;
+            gramCount[slot] = grams.length;
+            slotByKey.put(key, slot);
+            for (long g : grams) postings.computeIfAbsent(g, k -> new IntList()).add(slot);
+        }
+
+        void remove(String key) {
+            Integer slot = slotByKey.remove(key);
+            if (slot == null) return;
+
+            keys[slot] = null;
+            gramsBySlot[slot] = null;
+            gramCount[slot] = 0;
+            dead++;
+        }
+
+        /** The live documents only, in fresh slots and postings. */
+        State compacted() {
+            State fresh = new State();
+            for (int slot = 0; slot < nextSlot; slot++) {
+                if (keys[slot] != null) fresh.add(keys[slot], gramsBySlot[slot]);
+            }
+            return fresh;
+        }
+    }
+
+    /** Bounded min-heap of (slot, score); the root is the weakest hit kept so far. */
+    private static final class TopK {
+        final int[] slots;
+        final double[] scores;
+        int size;
+
+        TopK(int capacity) {
+            slots = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        void offer(int slot, double score) {
+            if (slots.length == 0) return;
+            if (size < slots.length) {
+                int i = size++;
+                slots[i] = slot;
+                scores[i] = score;
+                siftUp(i);
+            } else if (score > scores[0]) {
+                slots[0] = slot;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        List<Hit> drain(String[] keys) {
+            List<Hit> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) out.add(new Hit(keys[slots[i]], scores[i]));
+            out.sort((a, b) -> Double.compare(b.score(), a.score()));
+            return out;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[parent] <= scores[i]) return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1, right = left + 1, min = i;
+                if (left < size && scores[left] < scores[min]) min = left;
+                if (right < size && scores[right] < scores[min]) min = right;
+                if (min == i) return;
+                swap(i, min);
+                i = min;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int ts = slots[a]; slots[a] = slots[b]; slots[b] = ts;
+            double tv = scores[a]; scores[a] = scores[b]; scores[b] = tv;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs a screen's database work off the Event Dispatch Thread.
+ *
+ * Work goes to a small shared pool of daemon threads; the result is handed back on the EDT.
+ * Each dashboard owns one UiTasks. Starting a task under a key that is still running supersedes
+ * the old one (e.g. a second search), and everything is cancelled once the owner leaves the
+ * screen. A cancelled task's result is simply dropped: a query already running finishes, but
+ * nothing touches the UI afterwards. Tasks that change data (bookings, cancellations, updates)
+ * go through {@link #runChange} instead: they are never cancelled, and their result is still
+ * shown after the screen is left.
+ *
+ * The pool's queue is bounded (ui.queue in config.properties). When it is full a new task is
+ * refused and the user is told to try again, rather than piling up work nobody waits for.
+ *
+ * While tasks run, the owner shows a wait cursor, the given busy components are disabled and
+ * {@link #indicator()} is visible.
+ */
+final class UiTasks {
+
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_QUEUE = 100;
+
+    private static volatile ExecutorService pool;
+
+    private final JComponent owner;
+    private final Map<String, Running> running = new HashMap<>(); // EDT only
+    private int keys; // EDT only
+    private final JProgressBar indicator = new JProgressBar();
+    private int active; // EDT only
+    private boolean closed; // EDT only
+
+    UiTasks(JComponent owner) {
+        this.owner = owner;
+
+        indicator.setIndeterminate(true);
+        indicator.setString("Loading...");
+        indicator.setStringPainted(true);
+        indicator.setVisible(false);
+        indicator.setAlignmentX(Component.CENTER_ALIGNMENT);
+        indicator.setMaximumSize(new Dimension(240, 22));
+
+        // Navigating away removes the dashboard from the frame
+        owner.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !owner.isDisplayable()) {
+                cancelAll();
+            }
+        });
+    }
+
+    /** True once the owner has left the screen; {@link #runChange} callbacks may still run then. */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /** Progress bar that is visible while any of this screen's tasks run. */
+    JComponent indicator() {
+        return indicator;
+    }
+
+    // -------------------- Running tasks --------------------
+
+    /** One submitted task; compared by identity so a superseded task cannot clear its successor. */
+    private static final class Running {
+        final Component[] busy;
+        final boolean keep; // changes data: never cancelled, result always shown
+        Future<?> future;
+        boolean ended;
+
+        Running(Component[] busy, boolean keep) {
+            this.busy = busy;
+            this.keep = keep;
+        }
+    }
+
+    /** Runs work in the background and passes its result to onDone on the EDT. Call on the EDT. */
+    <T> void run(Callable<T> work, Consumer<T> onDone, Component... busy) {
+        run("task-" + (++keys), work, onDone, busy);
+    }
+
+    /** Like {@link #run(Callable, Consumer, Component...)}, superseding a running task with the same key. */
+    <T> void run(String key, Callable<T> work, Consumer<T> onDone, Component... busy) {
+        start(key, work, onDone, null, busy, false);
+    }
+
+    /**
+     * Like {@link #run(String, Callable, Consumer, Component...)}, but a failure (the work threw,
+     * or the pool refused it) is also passed to onError on the EDT, after the user is told.
+     */
+    <T> void run(String key, Callable<T> work, Consumer<T> onDone, Consumer<Exception> onError, Component... busy) {
+        start(key, work, onDone, onError, busy, false);
+    }
+
+    /**
+     * Runs work that changes data, e.g. a booking or a cancellation. Once submitted it is not
+     * cancelled by {@link #cancelAll}, and onDone still runs if the user has left the screen
+     * meanwhile, so the outcome is never silently lost. Call on the EDT.
+     */
+    <T> void runChange(Callable<T> work, Consumer<T> onDone, Component... busy) {
+        start("change-" + (++keys), work, onDone, null, busy, true);
+    }
+
+    private <T> void start(String key, Callable<T> work, Consumer<T> onDone, Consumer<Exception> onError,
+                           Component[] busy, boolean keep) {
+        if (closed) return;
+        cancel(key);
+
+        started(busy);
+        Running r = new Running(busy, keep);
+        running.put(key, r);
+        try {
+            r.future = pool().submit(() -> {
+                T result = null;
+                Exception failure = null;
+                try {
+                    result = work.call();
+                } catch (Exception e) {
+                    failure = e;
+                }
+                T value = result;
+                Exception error = failure;
+                SwingUtilities.invokeLater(() -> finish(key, r, value, error, onDone, onError));
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(key, r);
+            end(r);
+            System.out.println("Background queue full, task refused: " + key);
+            JOptionPane.showMessageDialog(owner, "ComfyGo is busy right now. Please try again in a moment.",
+                    "Busy", JOptionPane.WARNING_MESSAGE);
+            if (onError != null) onError.accept(e);
+        }
+    }
+
+    /**
+     * Runs work on the pool with nothing to hand back, e.g. giving back a room hold. Unlike
+     * {@link #run}, it is not cancelled when the screen closes.
+     */
+    static void submit(Runnable work) {
+        try {
+            pool().execute(() -> {
+                try {
+                    work.run();
+                } catch (RuntimeException e) {
+                    System.out.println("Background task failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only used for clean-up that also expires on its own (room holds)
+            System.out.println("Background queue full, clean-up task dropped.");
+        }
+    }
+
+    void cancel(String key) {
+        Running r = running.get(key);
+        if (r == null || r.keep) return;
+        running.remove(key);
+        r.future.cancel(false);
+        end(r);
+    }
+
+    /**
+     * Drops every pending result except those of {@link #runChange} tasks; called automatically
+     * when the owner is removed.
+     */
+    void cancelAll() {
+        closed = true;
+        running.values().removeIf(r -> {
+            if (r.keep) return false;
+            r.future.cancel(false);
+            end(r);
+            return true;
+        });
+    }
+
+    private <T> void finish(String key, Running r, T value, Exception error,
+                            Consumer<T> onDone, Consumer<Exception> onError) {
+        end(r);
+        // Superseded or cancelled: someone else owns the UI now
+        if (!running.remove(key, r) || (closed && !r.keep)) return;
+
+        if (error != null) {
+            System.out.println("Background task failed: " + error.getMessage());
+            JOptionPane.showMessageDialog(owner, "Something went wrong: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            if (onError != null) onError.accept(error);
+            return;
+        }
+        onDone.accept(value);
+    }
+
+    private void started(Component[] busy) {
+        if (active++ == 0) {
+            owner.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            indicator.setVisible(true);
+        }
+        for (Component c : busy) c.setEnabled(false);
+    }
+
+    /** Undoes {@link #started} once per task, whether it finished or was cancelled first. */
+    private void end(Running r) {
+        if (r.ended) return;
+        r.ended = true;
+        for (Component c : r.busy) c.setEnabled(true);
+        if (--active == 0) {
+            owner.setCursor(Cursor.getDefaultCursor());
+            indicator.setVisible(false);
+        }
+    }
+
+    // -------------------- Worker pool --------------------
+
+    private static ExecutorService pool() {
+        ExecutorService p = pool;
+        if (p == null) {
+            synchronized (UiTasks.class) {
+                p = pool;
+                if (p == null) {
+                    Properties props = Db.config();
+                    int workers = (int) Math.max(1, Db.longProp(props, "ui.workers", DEFAULT_WORKERS));
+                    int queue = (int) Math.max(1, Db.longProp(props, "ui.queue", DEFAULT_QUEUE));
+                    AtomicInteger n = new AtomicInteger();
+                    // Default AbortPolicy: a full queue throws, and the submitter tells the user
+                    p = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), r -> {
+                        Thread t = new Thread(r, "comfygo-ui-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    ((ThreadPoolExecutor) p).allowCoreThreadTimeOut(true);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+}
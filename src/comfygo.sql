@@ -308,6 +308,136 @@ ALTER TABLE payment
 ALTER TABLE transportbooking
   CHANGE COLUMN arrivaldate issuedate DATE;
 
+-- ===== Rooms: per-night inventory (see RoomInventory) =====
+-- One row per hotel / room type / night that has been sold at least once.
+-- Capacity is the number of rooms rows of that type with isavailable = TRUE.
+CREATE TABLE IF NOT EXISTS room_nights (
+  hotelid VARCHAR(12) NOT NULL,
+  roomtype VARCHAR(50) NOT NULL,
+  night DATE NOT NULL,
+  booked INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (hotelid, roomtype, night),
+  CONSTRAINT fk_room_nights_hotel
+    FOREIGN KEY (hotelid) REFERENCES hotels(hotelid)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Room type a booking holds nights for (NULL = old single-counter booking)
+ALTER TABLE booking
+  ADD COLUMN roomtype VARCHAR(50) AFTER numberofrooms;
+
+-- ===== Booking -> hotel by id instead of hotelname + hotellocation =====
+ALTER TABLE booking
+  ADD COLUMN hotelid VARCHAR(12) AFTER paymentid,
+  ADD INDEX idx_booking_hotel (hotelid, checkindate),
+  ADD CONSTRAINT fk_booking_hotel
+    FOREIGN KEY (hotelid) REFERENCES hotels(hotelid)
+    ON DELETE SET NULL ON UPDATE CASCADE;
+
+-- Existing rows: run  java BookingHotelBackfill  (small batches, safe while the app is up)
+
+-- Manager stats look ratings up by type + name
+ALTER TABLE ratings
+  ADD INDEX idx_ratings_target (ratingtype, targetname);
+
+-- ===== Room holds during checkout (see RoomHolds) =====
+-- Rooms are already taken while a row exists; deleting it converts or releases the hold.
+CREATE TABLE IF NOT EXISTS room_holds (
+  holdid VARCHAR(36) PRIMARY KEY,
+  userid VARCHAR(12),
+  hotelid VARCHAR(12) NOT NULL,
+  roomtype VARCHAR(50),
+  checkindate DATE NOT NULL,
+  checkoutdate DATE NOT NULL,
+  numberofrooms INT NOT NULL,
+  expiresat TIMESTAMP NOT NULL,
+  CONSTRAINT fk_room_holds_hotel
+    FOREIGN KEY (hotelid) REFERENCES hotels(hotelid)
+    ON DELETE CASCADE ON UPDATE CASCADE,
+  INDEX idx_room_holds_expires (expiresat)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ===== Keyset paging (see PageRequest) =====
+-- Each list seeks on (owner, sort key); InnoDB appends the primary key as the tie-breaker.
+ALTER TABLE booking
+  ADD INDEX idx_booking_user_date (userid, bookingdate);
+
+ALTER TABLE transportbooking
+  ADD INDEX idx_transport_user_departure (userid, departuredate);
+
+ALTER TABLE guidebooking
+  ADD INDEX idx_guidebooking_guide_date (guideid, bookingdate);
+
+-- ===== Guide calendar (see GuideCalendar) =====
+-- Days a guide is booked, one row per guide and month: bit d-1 of busydays is day d.
+-- guides.isavailable now only says whether the guide takes bookings at all.
+CREATE TABLE IF NOT EXISTS guide_calendar (
+  guideid VARCHAR(12) NOT NULL,
+  month DATE NOT NULL,
+  busydays INT UNSIGNED NOT NULL DEFAULT 0,
+  PRIMARY KEY (guideid, month),
+  CONSTRAINT fk_guide_calendar_guide
+    FOREIGN KEY (guideid) REFERENCES guides(guideid)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- First day of the tour (NULL for bookings made before tours had dates)
+ALTER TABLE guidebooking
+  ADD COLUMN tourstartdate DATE AFTER bookingdate;
+
+-- ===== Transport: seats per departure (see TransportSeats) =====
+-- Routes read by the transport screens. availableseats is the seat count of one departure.
+CREATE TABLE IF NOT EXISTS transport (
+  transporttype VARCHAR(50) NOT NULL,
+  departurelocation VARCHAR(100) NOT NULL,
+  arrivallocation VARCHAR(100) NOT NULL,
+  estimatedduration VARCHAR(50),
+  fare DOUBLE,
+  availableseats INT NOT NULL DEFAULT 40,
+  PRIMARY KEY (transporttype, departurelocation, arrivallocation)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- One row per route / date / class that has been sold at least once.
+CREATE TABLE IF NOT EXISTS transport_departures (
+  transporttype VARCHAR(50) NOT NULL,
+  departurelocation VARCHAR(100) NOT NULL,
+  arrivallocation VARCHAR(100) NOT NULL,
+  departuredate DATE NOT NULL,
+  ticketclass VARCHAR(100) NOT NULL,
+  seatsleft INT NOT NULL,
+  PRIMARY KEY (transporttype, departurelocation, arrivallocation, departuredate, ticketclass)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+ALTER TABLE transportbooking
+  ADD COLUMN ticketclass VARCHAR(100) AFTER seatnumber;
+
+-- ===== Transport: seat numbers per departure (see TransportSeats) =====
+-- One row per sold seat; the key stops two tickets from getting the same seat.
+CREATE TABLE IF NOT EXISTS transport_seats (
+  transporttype VARCHAR(50) NOT NULL,
+  departurelocation VARCHAR(100) NOT NULL,
+  arrivallocation VARCHAR(100) NOT NULL,
+  departuredate DATE NOT NULL,
+  ticketclass VARCHAR(100) NOT NULL,
+  seatno SMALLINT NOT NULL,
+  ticketid VARCHAR(12) NOT NULL,
+  PRIMARY KEY (transporttype, departurelocation, arrivallocation, departuredate, ticketclass, seatno),
+  CONSTRAINT fk_transport_seats_ticket
+    FOREIGN KEY (ticketid) REFERENCES transportbooking(ticketid)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Room for every seat label of a ten-passenger ticket ("A1, A2, ...")
+ALTER TABLE transportbooking
+  MODIFY seatnumber VARCHAR(100);
+
+-- ===== ID leases (see IdGenerator) =====
+-- Each app instance leases the next block of IDs by bumping nextblock.
+CREATE TABLE IF NOT EXISTS id_blocks (
+  name VARCHAR(30) PRIMARY KEY,
+  nextblock BIGINT NOT NULL DEFAULT 0
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- =========================================================
 -- ===================== SEED DATA =========================
 -- =========================================================